@@ -0,0 +1,73 @@
+package com.squareup.cascading_helpers.benchmarks;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.ConcreteCall;
+import cascading.operation.Filter;
+import cascading.operation.Function;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import cascading.tuple.TupleEntryCollector;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Calls {@link cascading.operation.Function}s and {@link cascading.operation.Filter}s the way
+ * {@code TestHelpers} does, but without mocks, so that the harness
+ * itself costs next to nothing per tuple.
+ */
+final class Calls {
+  /* Utility. Don't instantiate. */
+  private Calls() {}
+
+  static final class FunctionHarness {
+    private final FlowProcess flowProcess;
+    private final Function function;
+    private final ConcreteCall call;
+    private final TupleEntry arguments;
+
+    @SuppressWarnings({"unchecked"})
+    FunctionHarness(FlowProcess flowProcess, Function function, Fields argumentFields,
+        final Blackhole blackhole) {
+      this.flowProcess = flowProcess;
+      this.function = function;
+      this.call = new ConcreteCall();
+      this.arguments = new TupleEntry(argumentFields);
+      call.setArguments(arguments);
+      call.setOutputCollector(new TupleEntryCollector() {
+        @Override protected void collect(TupleEntry tupleEntry) {
+          blackhole.consume(tupleEntry.getTuple());
+        }
+      });
+      function.prepare(flowProcess, call);
+    }
+
+    @SuppressWarnings({"unchecked"})
+    void operate(Tuple input) {
+      arguments.setTuple(input);
+      function.operate(flowProcess, call);
+    }
+  }
+
+  static final class FilterHarness {
+    private final FlowProcess flowProcess;
+    private final Filter filter;
+    private final ConcreteCall call;
+    private final TupleEntry arguments;
+
+    @SuppressWarnings({"unchecked"})
+    FilterHarness(FlowProcess flowProcess, Filter filter, Fields argumentFields) {
+      this.flowProcess = flowProcess;
+      this.filter = filter;
+      this.call = new ConcreteCall();
+      this.arguments = new TupleEntry(argumentFields);
+      call.setArguments(arguments);
+      filter.prepare(flowProcess, call);
+    }
+
+    @SuppressWarnings({"unchecked"})
+    boolean isRemove(Tuple input) {
+      arguments.setTuple(input);
+      return filter.isRemove(flowProcess, call);
+    }
+  }
+}
@@ -0,0 +1,203 @@
+package com.squareup.cascading_helpers.benchmarks;
+
+import cascading.flow.FlowProcess;
+import cascading.flow.hadoop.HadoopFlowProcess;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import com.squareup.cascading_helpers.batch.BatchAdapter;
+import com.squareup.cascading_helpers.batch.BatchFailOnNull;
+import com.squareup.cascading_helpers.batch.BatchFilterEquals;
+import com.squareup.cascading_helpers.batch.BatchGetOrElse;
+import com.squareup.cascading_helpers.filter.FailOnNull;
+import com.squareup.cascading_helpers.filter.FilterEquals;
+import com.squareup.cascading_helpers.filter.Predicate;
+import com.squareup.cascading_helpers.filter.PredicateFilter;
+import com.squareup.cascading_helpers.filter.StacktraceWrapperFilter;
+import com.squareup.cascading_helpers.function.Extrude;
+import com.squareup.cascading_helpers.function.FastMapLookup;
+import com.squareup.cascading_helpers.function.GetOrElse;
+import com.squareup.cascading_helpers.function.MapLookup;
+import com.squareup.cascading_helpers.function.StacktraceWrapperFunction;
+import com.squareup.cascading_helpers.operation.CallSite;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Per-tuple cost of the operations in this library. Each benchmark is a single call, so the
+ * results read as nanoseconds per tuple.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OperationBenchmarks {
+  private static final int LOOKUP_ENTRIES = 10000;
+
+  private final Tuple wide = new Tuple("a", "b", "c", "d", "e", "f", "g", "h");
+  private final Tuple present = new Tuple("present");
+  private final Tuple absent = new Tuple((Object) null);
+  private final Tuple lookupHit = new Tuple(42L);
+  private final Tuple lookupMiss = new Tuple(-42L);
+  private final Tuple exemplar = new Tuple(1, "two", true);
+  private final Tuple notExemplar = new Tuple(2, "two", true);
+
+  private Calls.FunctionHarness extrude;
+  private Calls.FunctionHarness extrudeWithNames;
+  private Calls.FunctionHarness getOrElse;
+  private Calls.FunctionHarness mapLookup;
+  private Calls.FunctionHarness fastMapLookup;
+  private Calls.FunctionHarness wrappedGetOrElse;
+  private Calls.FilterHarness filterEquals;
+  private Calls.FilterHarness failOnNull;
+  private Calls.FilterHarness wrappedFilterEquals;
+  private Calls.FilterHarness predicateEquals;
+  private Calls.FunctionHarness batchGetOrElse;
+  private Calls.FunctionHarness batchFilterEquals;
+  private Calls.FunctionHarness batchFailOnNull;
+
+  @Setup
+  public void setUp(Blackhole blackhole) {
+    FlowProcess flowProcess = new HadoopFlowProcess();
+
+    Map<Tuple, Tuple> map = new HashMap<Tuple, Tuple>();
+    for (long i = 0; i < LOOKUP_ENTRIES; i++) {
+      map.put(new Tuple(i), new Tuple("value " + i));
+    }
+
+    Fields wideFields = new Fields("f1", "f2", "f3", "f4", "f5", "f6", "f7", "f8");
+    Fields one = new Fields("f1");
+    Fields three = new Fields("f1", "f2", "f3");
+    CallSite callSite = CallSite.capture(0);
+
+    extrude = new Calls.FunctionHarness(flowProcess, new Extrude("output"), wideFields, blackhole);
+    extrudeWithNames = new Calls.FunctionHarness(flowProcess,
+        new Extrude("name", "output", true), wideFields, blackhole);
+    getOrElse = new Calls.FunctionHarness(flowProcess,
+        new GetOrElse(new Tuple("else"), "output"), one, blackhole);
+    mapLookup = new Calls.FunctionHarness(flowProcess,
+        new MapLookup(map, new Fields("value")), one, blackhole);
+    fastMapLookup = new Calls.FunctionHarness(flowProcess,
+        new FastMapLookup(map, new Fields("value")), one, blackhole);
+    wrappedGetOrElse = new Calls.FunctionHarness(flowProcess,
+        new StacktraceWrapperFunction(new GetOrElse(new Tuple("else"), "output"), callSite), one,
+        blackhole);
+    filterEquals =
+        new Calls.FilterHarness(flowProcess, new FilterEquals(1, "two", true), three);
+    failOnNull = new Calls.FilterHarness(flowProcess,
+        new FailOnNull(null, new String[] {"f1", "f2", "f3"}), three);
+    wrappedFilterEquals = new Calls.FilterHarness(flowProcess,
+        new StacktraceWrapperFilter(new FilterEquals(1, "two", true), callSite), three);
+    predicateEquals = new Calls.FilterHarness(flowProcess, new PredicateFilter(Predicate.and(
+        Predicate.equalTo("f1", 1), Predicate.equalTo("f2", "two"), Predicate.equalTo("f3", true))),
+        three);
+
+    // batches run once every DEFAULT_BATCH_SIZE calls, so these too read as time per tuple
+    batchGetOrElse = new Calls.FunctionHarness(flowProcess,
+        new BatchAdapter(new BatchGetOrElse("else"), one, BatchAdapter.DEFAULT_BATCH_SIZE), one,
+        blackhole);
+    batchFilterEquals = new Calls.FunctionHarness(flowProcess, new BatchAdapter(
+        new BatchFilterEquals(1, "two", true), three, BatchAdapter.DEFAULT_BATCH_SIZE), three,
+        blackhole);
+    batchFailOnNull = new Calls.FunctionHarness(flowProcess, new BatchAdapter(
+        new BatchFailOnNull(null), three, BatchAdapter.DEFAULT_BATCH_SIZE), three, blackhole);
+  }
+
+  @Benchmark
+  public void extrude() {
+    extrude.operate(wide);
+  }
+
+  @Benchmark
+  public void extrudeWithNames() {
+    extrudeWithNames.operate(wide);
+  }
+
+  @Benchmark
+  public void getOrElsePresent() {
+    getOrElse.operate(present);
+  }
+
+  @Benchmark
+  public void getOrElseAbsent() {
+    getOrElse.operate(absent);
+  }
+
+  @Benchmark
+  public void mapLookupHit() {
+    mapLookup.operate(lookupHit);
+  }
+
+  @Benchmark
+  public void mapLookupMiss() {
+    mapLookup.operate(lookupMiss);
+  }
+
+  @Benchmark
+  public void fastMapLookupHit() {
+    fastMapLookup.operate(lookupHit);
+  }
+
+  @Benchmark
+  public void fastMapLookupMiss() {
+    fastMapLookup.operate(lookupMiss);
+  }
+
+  @Benchmark
+  public void stacktraceWrapperFunction() {
+    wrappedGetOrElse.operate(present);
+  }
+
+  @Benchmark
+  public boolean filterEqualsMatch() {
+    return filterEquals.isRemove(exemplar);
+  }
+
+  @Benchmark
+  public boolean filterEqualsMismatch() {
+    return filterEquals.isRemove(notExemplar);
+  }
+
+  @Benchmark
+  public boolean predicateEqualsMismatch() {
+    return predicateEquals.isRemove(notExemplar);
+  }
+
+  @Benchmark
+  public boolean failOnNull() {
+    return failOnNull.isRemove(exemplar);
+  }
+
+  @Benchmark
+  public boolean stacktraceWrapperFilter() {
+    return wrappedFilterEquals.isRemove(notExemplar);
+  }
+
+  @Benchmark
+  public void batchGetOrElseAbsent() {
+    batchGetOrElse.operate(absent);
+  }
+
+  @Benchmark
+  public void batchFilterEqualsMismatch() {
+    batchFilterEquals.operate(notExemplar);
+  }
+
+  @Benchmark
+  public void batchFailOnNull() {
+    batchFailOnNull.operate(exemplar);
+  }
+}
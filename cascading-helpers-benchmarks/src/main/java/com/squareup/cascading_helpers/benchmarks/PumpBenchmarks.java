@@ -0,0 +1,77 @@
+package com.squareup.cascading_helpers.benchmarks;
+
+import cascading.flow.Flow;
+import cascading.operation.Insert;
+import cascading.operation.filter.FilterNull;
+import cascading.pipe.Pipe;
+import cascading.scheme.hadoop.TextLine;
+import cascading.tap.SinkMode;
+import cascading.tap.hadoop.Hfs;
+import cascading.tuple.Fields;
+import com.squareup.cascading_helpers.CascadingHelper;
+import com.squareup.cascading_helpers.operation.CallSite;
+import com.squareup.cascading_helpers.pump.Pump;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Driver-side cost of building large assemblies: creating the pumps, turning them into pipes, and
+ * planning the resulting flow. Nothing is executed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PumpBenchmarks {
+  @Param({"100", "1000"})
+  public int steps;
+
+  @Param({"FULL", "CALLER", "NONE"})
+  public String capture;
+
+  @Setup
+  public void setUp() {
+    CallSite.setCapture(CallSite.Capture.valueOf(capture));
+  }
+
+  private Pump chain(int steps) {
+    Pump pump = Pump.prime("input");
+    for (int i = 0; i < steps; i++) {
+      pump = pump.each(new Insert(new Fields("field" + i), i))
+          .each(new FilterNull(), "field" + i)
+          .discard("field" + i);
+    }
+    return pump.groupby("line").count("count");
+  }
+
+  @Benchmark
+  public Pump constructChain() {
+    return chain(steps);
+  }
+
+  @Benchmark
+  public Pipe chainToPipe() {
+    return chain(steps).toPipe();
+  }
+
+  @Benchmark
+  public Flow planFlow() {
+    return CascadingHelper.newBuilder()
+        .source("input", new Hfs(new TextLine(), "/tmp/PumpBenchmarks/input"))
+        .tailSink(chain(steps),
+            new Hfs(new TextLine(), "/tmp/PumpBenchmarks/output", SinkMode.REPLACE))
+        .build();
+  }
+}
@@ -28,18 +28,21 @@ public final class TestHelpers {
     FunctionCall mockFunctionCall = mock(FunctionCall.class);
 
     f.prepare(new HadoopFlowProcess(), null);
+    when(mockFunctionCall.getOutputCollector()).thenReturn(new TupleEntryCollector() {
+      @Override protected void collect(TupleEntry tupleEntry) throws IOException {
+        // functions may reuse the tuple they emit, as Cascading allows
+        output.add(tupleEntry.getTupleCopy());
+      }
+    });
 
     for (final Tuple tuple : input) {
       final TupleEntry arg = new TupleEntry(inputFields, tuple);
       when(mockFunctionCall.getArguments()).thenReturn(arg);
-      when(mockFunctionCall.getOutputCollector()).thenReturn(new TupleEntryCollector() {
-        @Override protected void collect(TupleEntry tupleEntry) throws IOException {
-          output.add(tupleEntry.getTuple());
-        }
-      });
 
       f.operate(new HadoopFlowProcess(), mockFunctionCall);
     }
+    // functions that hold on to tuples emit them when flushed
+    f.flush(new HadoopFlowProcess(), mockFunctionCall);
     return output;
   }
 
@@ -2,6 +2,7 @@ package com.squareup.cascading_helpers;
 
 import cascading.flow.FlowConnector;
 import cascading.flow.hadoop.HadoopFlowConnector;
+import cascading.flow.local.LocalFlowConnector;
 import cascading.tuple.hadoop.TupleSerialization;
 import org.apache.hadoop.io.serializer.Serialization;
 import org.apache.hadoop.io.serializer.WritableSerialization;
@@ -15,6 +16,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 
 /**
@@ -36,11 +38,23 @@ public class CascadingHelper {
               TupleSerialization.class
       ));
 
+  // Cascading reserves the tokens below 128 for itself
   private static final int STARTING_TOKEN = 128;
+  private static final int TOKEN_RANGE = (1 << 16) - STARTING_TOKEN;
   protected static final Set<Class> CLASSES_TO_BE_SERIALIZED = new HashSet<Class>();
+  protected static final Map<Class, Integer> EXPLICIT_TOKENS = new HashMap<Class, Integer>();
 
   private static final CascadingHelper THE_HELPER = new CascadingHelper();
 
+  // the properties every flow starts from, and the state they were computed from
+  private static String hadoopSerializations;
+  private static Map<Object, Object> baseProperties;
+  private static Map<Object, Object> baseDefaultProperties;
+  private static List<Class<? extends Serialization>> baseSerializationImpls;
+  private static Set<Class> baseClassesToBeSerialized;
+  private static Map<Class, Integer> baseExplicitTokens;
+  private static boolean baseTestMode;
+
   /**
    * @deprecated use {@link #newBuilder()} instead.
    * @return the singleton instance of the helper.
@@ -67,35 +81,91 @@ public class CascadingHelper {
   }
 
   private static Map<Object, Object> mergeProperties(Map<Object, Object> properties) {
-    Map<Object, Object> result = new HashMap<Object, Object>();
-    result.putAll(DEFAULT_PROPERTIES);
-    addSerializations(result);
-    assignSerializationTokens(result);
-    if (testMode) {
-      // this causes flows to complete more quickly in test mode, at the expense of a bit of CPU thrashing.
-      result.put("cascading.flow.job.pollinginterval", 10);
-    }
+    Map<Object, Object> result = new HashMap<Object, Object>(getBaseProperties());
     result.putAll(properties);
     return result;
   }
 
+  /**
+   * Building the base properties means loading Hadoop's configuration, which is slow enough to
+   * matter when a driver builds hundreds of flows, so they're only rebuilt when the defaults,
+   * serializations or token classes have changed since the last flow.
+   */
+  static synchronized Map<Object, Object> getBaseProperties() {
+    if (baseProperties == null
+        || baseTestMode != testMode
+        || !baseDefaultProperties.equals(DEFAULT_PROPERTIES)
+        || !baseSerializationImpls.equals(SERIALIZATION_IMPLS)
+        || !baseClassesToBeSerialized.equals(CLASSES_TO_BE_SERIALIZED)
+        || !baseExplicitTokens.equals(EXPLICIT_TOKENS)) {
+      Map<Object, Object> result = new HashMap<Object, Object>();
+      result.putAll(DEFAULT_PROPERTIES);
+      addSerializations(result);
+      assignSerializationTokens(result);
+      if (testMode) {
+        // this causes flows to complete more quickly in test mode, at the expense of a bit of CPU thrashing.
+        result.put("cascading.flow.job.pollinginterval", 10);
+      }
+      baseProperties = result;
+      baseDefaultProperties = new HashMap<Object, Object>(DEFAULT_PROPERTIES);
+      baseSerializationImpls = new ArrayList<Class<? extends Serialization>>(SERIALIZATION_IMPLS);
+      baseClassesToBeSerialized = new HashSet<Class>(CLASSES_TO_BE_SERIALIZED);
+      baseExplicitTokens = new HashMap<Class, Integer>(EXPLICIT_TOKENS);
+      baseTestMode = testMode;
+    }
+    return baseProperties;
+  }
+
+  /**
+   * Tokens are derived from class names rather than from the order classes were registered in, so
+   * a class gets the same token in every run and SequenceFiles written by one flow can be read by
+   * another. Should two classes hash to the same token, give one of them an explicit token with
+   * {@link #withToken(int, Class)}.
+   */
   private static void assignSerializationTokens(Map<Object, Object> props) {
-    StringBuilder sb = new StringBuilder("");
-    int token = STARTING_TOKEN;
+    Map<Integer, Class> tokens = new TreeMap<Integer, Class>();
+    for (Map.Entry<Class, Integer> entry : EXPLICIT_TOKENS.entrySet()) {
+      putToken(tokens, entry.getValue(), entry.getKey());
+    }
     for (Class klass : CLASSES_TO_BE_SERIALIZED) {
-      if (token != STARTING_TOKEN) {
+      if (!EXPLICIT_TOKENS.containsKey(klass)) {
+        putToken(tokens, hashToken(klass), klass);
+      }
+    }
+
+    StringBuilder sb = new StringBuilder("");
+    for (Map.Entry<Integer, Class> entry : tokens.entrySet()) {
+      if (sb.length() > 0) {
         sb.append(",");
       }
-      sb.append(token++).append("=").append(klass.getName());
+      sb.append(entry.getKey()).append("=").append(entry.getValue().getName());
     }
     props.put("cascading.serialization.tokens", sb.toString());
   }
 
+  private static void putToken(Map<Integer, Class> tokens, int token, Class klass) {
+    Class existing = tokens.put(token, klass);
+    if (existing != null && existing != klass) {
+      throw new IllegalStateException("serialization token " + token + " is claimed by both "
+          + existing.getName() + " and " + klass.getName() + "; use withToken to separate them");
+    }
+  }
+
+  /**
+   * @return the token a class gets unless it's given one explicitly.
+   */
+  public static int hashToken(Class klass) {
+    // String.hashCode is specified, so this is the same on every JVM
+    return STARTING_TOKEN + (klass.getName().hashCode() & Integer.MAX_VALUE) % TOKEN_RANGE;
+  }
+
   private static void addSerializations(Map<Object, Object> props) {
-    JobConf jobConf = new JobConf();
-    String existingSerializations = jobConf.get(IO_SERIALIZATIONS);
+    if (hadoopSerializations == null) {
+      // Hadoop's own list comes from its XML resources, which don't change while we run
+      hadoopSerializations = new JobConf().get(IO_SERIALIZATIONS);
+    }
     List<String> serializations =
-        new ArrayList<String>(Arrays.asList(existingSerializations.split(",")));
+        new ArrayList<String>(Arrays.asList(hadoopSerializations.split(",")));
     for (Class<? extends Serialization> serClass : SERIALIZATION_IMPLS) {
       serializations.add(serClass.getName());
     }
@@ -122,11 +192,47 @@ public class CascadingHelper {
     return new HadoopFlowConnector(mergeProperties(properties));
   }
 
+  /**
+   * A connector for flows that run in this JVM with Cascading's local planner, which starts no
+   * Hadoop jobs and so suits tests and small inputs. Local flows need local taps, such as
+   * {@link cascading.tap.local.FileTap} or {@link com.squareup.cascading_helpers.tap.MemoryTap}.
+   * Hadoop serializations don't apply, so only the default properties are passed on.
+   */
+  public FlowConnector getLocalFlowConnector() {
+    return getLocalFlowConnector(Collections.emptyMap());
+  }
+
+  public FlowConnector getLocalFlowConnector(Map<Object, Object> properties) {
+    Map<Object, Object> result = new HashMap<Object, Object>(DEFAULT_PROPERTIES);
+    result.putAll(properties);
+    return new LocalFlowConnector(result);
+  }
+
   public CascadingHelper withTokensFor(Class... emittedClasses) {
     Collections.addAll(CLASSES_TO_BE_SERIALIZED, emittedClasses);
     return THE_HELPER;
   }
 
+  /**
+   * Serialize a class with the given token instead of the one derived from its name.
+   */
+  public CascadingHelper withToken(int token, Class klass) {
+    if (token < STARTING_TOKEN) {
+      throw new IllegalArgumentException("serialization tokens below " + STARTING_TOKEN
+          + " are reserved by Cascading");
+    }
+    synchronized (CascadingHelper.class) {
+      for (Map.Entry<Class, Integer> entry : EXPLICIT_TOKENS.entrySet()) {
+        if (entry.getValue() == token && entry.getKey() != klass) {
+          throw new IllegalArgumentException("serialization token " + token
+              + " is already used by " + entry.getKey().getName());
+        }
+      }
+      EXPLICIT_TOKENS.put(klass, token);
+    }
+    return THE_HELPER;
+  }
+
   public CascadingHelper withTokensFor(Set<Class> emittedClasses) {
     return withTokensFor(emittedClasses.toArray(new Class[emittedClasses.size()]));
   }
@@ -8,7 +8,10 @@ import cascading.scheme.hadoop.TextLine;
 import cascading.tap.SinkMode;
 import cascading.tap.Tap;
 import cascading.tap.hadoop.Hfs;
+import cascading.tuple.Fields;
 import com.squareup.cascading_helpers.pump.Pump;
+import com.squareup.cascading_helpers.pump.PumpOptimizer;
+import com.squareup.cascading_helpers.tap.SampledTap;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -29,6 +32,11 @@ public class FlowBuilder {
   private final Set<Class> emittedClasses;
   private final List<FlowListener> listeners;
   private final Map<Object, Object> properties;
+  private double sampleFraction = 1;
+  private long sampleSeed;
+  private long sourceLimit = Long.MAX_VALUE;
+  private boolean optimize;
+  private final List<SinkPump> sinkPumps = new ArrayList<SinkPump>();
 
   protected FlowBuilder() {
     this.flowDef = new FlowDef();
@@ -45,13 +53,21 @@ public class FlowBuilder {
 
   public FlowBuilder tailSink(Pump pump, Tap tap) {
     emittedClasses.addAll(pump.getEmittedClasses());
-    flowDef.addTailSink(pump.toPipe(), tap);
+    if (optimize) {
+      sinkPumps.add(new SinkPump(pump, tap, true));
+    } else {
+      flowDef.addTailSink(pump.toPipe(), tap);
+    }
     return this;
   }
 
   public FlowBuilder sink(Pump pump, Tap tap) {
     emittedClasses.addAll(pump.getEmittedClasses());
-    flowDef.addSink(pump.toPipe(), tap);
+    if (optimize) {
+      sinkPumps.add(new SinkPump(pump, tap, false));
+    } else {
+      flowDef.addSink(pump.toPipe(), tap);
+    }
     return this;
   }
 
@@ -104,6 +120,41 @@ public class FlowBuilder {
     return this;
   }
 
+  /**
+   * Read only about fraction of every source, chosen the same way on every run with the same seed,
+   * to try the flow out on a small part of its input. See {@link SampledTap}.
+   * @return {@link com.squareup.cascading_helpers.FlowBuilder}.
+   */
+  public FlowBuilder sample(double fraction, long seed) {
+    this.sampleFraction = fraction;
+    this.sampleSeed = seed;
+    return this;
+  }
+
+  /**
+   * Read at most limit tuples from each split of every source, after any {@link #sample}.
+   * @return {@link com.squareup.cascading_helpers.FlowBuilder}.
+   */
+  public FlowBuilder limitSources(long limit) {
+    this.sourceLimit = limit;
+    return this;
+  }
+
+  /**
+   * Rewrite the pumps given to {@link #tailSink} and {@link #sink} when building, so that
+   * stateless filters and projections run before the shuffles they follow. See
+   * {@link PumpOptimizer}, which logs every rewrite. Sinks are then only added to the
+   * {@link #getFlowDef()} when building, so call this before adding them.
+   * @return {@link com.squareup.cascading_helpers.FlowBuilder}.
+   */
+  public FlowBuilder optimize() {
+    if (!flowDef.getSinks().isEmpty()) {
+      throw new IllegalStateException("call optimize() before adding sinks");
+    }
+    this.optimize = true;
+    return this;
+  }
+
   /**
    * Builds the underlying {@link cascading.flow.FlowDef} by populating the emittedClasses that
    * each tail sink knows of, attaching any provided {@link #properties(java.util.Map)} and
@@ -118,8 +169,35 @@ public class FlowBuilder {
     } else {
       connector = helper.getFlowConnector();
     }
+    return build(connector);
+  }
+
+  /**
+   * Like {@link #build()}, but the {@link cascading.flow.Flow} runs in this JVM with Cascading's
+   * local planner instead of as Hadoop jobs, which makes it start in milliseconds rather than
+   * seconds. Every tap must be a local mode tap, such as {@link cascading.tap.local.FileTap} or
+   * {@link com.squareup.cascading_helpers.tap.MemoryTap}.
+   * @return {@link cascading.flow.Flow}.
+   */
+  public Flow buildLocal() {
+    return build(CascadingHelper.get().getLocalFlowConnector(properties));
+  }
 
-    Flow flow = connector.connect(flowDef);
+  private Flow build(FlowConnector connector) {
+    if (!sinkPumps.isEmpty()) {
+      addOptimizedSinks();
+    }
+    Map<String, Tap> sources = new HashMap<String, Tap>(flowDef.getSources());
+    if (sampleFraction < 1 || sourceLimit < Long.MAX_VALUE) {
+      sampleSources(sources);
+    }
+    Flow flow;
+    try {
+      flow = connector.connect(flowDef);
+    } finally {
+      // the sampled taps are for this flow only
+      flowDef.addSources(sources);
+    }
     if (!listeners.isEmpty()) {
       for (FlowListener l : listeners) {
         flow.addListener(l);
@@ -128,6 +206,34 @@ public class FlowBuilder {
     return flow;
   }
 
+  private void addOptimizedSinks() {
+    Map<String, Fields> sourceFields = new HashMap<String, Fields>();
+    for (Map.Entry<String, Tap> source : flowDef.getSources().entrySet()) {
+      sourceFields.put(source.getKey(), source.getValue().getSourceFields());
+    }
+    List<Pump> tails = new ArrayList<Pump>();
+    for (SinkPump sink : sinkPumps) {
+      tails.add(sink.pump);
+    }
+    List<Pump> optimized = new PumpOptimizer(sourceFields).optimize(tails);
+    for (int i = 0; i < sinkPumps.size(); i++) {
+      SinkPump sink = sinkPumps.get(i);
+      if (sink.tail) {
+        flowDef.addTailSink(optimized.get(i).toPipe(), sink.tap);
+      } else {
+        flowDef.addSink(optimized.get(i).toPipe(), sink.tap);
+      }
+    }
+    sinkPumps.clear();
+  }
+
+  private void sampleSources(Map<String, Tap> sources) {
+    for (Map.Entry<String, Tap> source : sources.entrySet()) {
+      flowDef.addSource(source.getKey(),
+          new SampledTap(source.getValue(), sampleFraction, sampleSeed, sourceLimit));
+    }
+  }
+
   /**
    * Get a handle to the current {@link #flowDef}. Use discouraged.
    * @return
@@ -139,4 +245,16 @@ public class FlowBuilder {
   public Set<Class> getEmittedClasses() {
     return emittedClasses;
   }
+
+  private static class SinkPump {
+    final Pump pump;
+    final Tap tap;
+    final boolean tail;
+
+    SinkPump(Pump pump, Tap tap, boolean tail) {
+      this.pump = pump;
+      this.tap = tap;
+      this.tail = tail;
+    }
+  }
 }
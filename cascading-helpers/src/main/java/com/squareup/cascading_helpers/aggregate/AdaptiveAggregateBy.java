@@ -0,0 +1,276 @@
+package com.squareup.cascading_helpers.aggregate;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.Function;
+import cascading.operation.FunctionCall;
+import cascading.operation.OperationCall;
+import cascading.pipe.Each;
+import cascading.pipe.Every;
+import cascading.pipe.GroupBy;
+import cascading.pipe.Pipe;
+import cascading.pipe.SubAssembly;
+import cascading.pipe.assembly.AggregateBy;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import cascading.tuple.TupleEntryCollector;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runs the given {@link AggregateBy}s the way a single AggregateBy combining them would, except
+ * that the map side cache adapts to the data. Every so often it looks at how many tuples found
+ * their key in the cache: if the cache is full and still missing most of the time, the keys are
+ * nearly unique and caching them only costs memory, so it turns into a pass-through; if the cache
+ * is full but hitting, it doubles in size, up to a maximum.
+ *
+ * The cache reports how much it combined under {@link #COUNTER_GROUP}, with the tuples that went
+ * in, the partial results that came out, and how many of those were passed through unaggregated.
+ */
+public class AdaptiveAggregateBy extends SubAssembly {
+  public static final String COUNTER_GROUP = "Partial Aggregation";
+
+  /** Below this fraction of cache hits, a full cache gives up and passes tuples through. */
+  public static final double MIN_HIT_RATIO = 0.05;
+
+  /**
+   * @param threshold how many keys to cache to begin with, or 0 for the job's
+   *     {@link AggregateBy#AGGREGATE_BY_THRESHOLD}, as AggregateBy does.
+   * @param maxThreshold how many keys the cache may grow to.
+   */
+  public AdaptiveAggregateBy(Pipe pipe, Fields groupingFields, int threshold, int maxThreshold,
+      AggregateBy... assemblies) {
+    super(pipe);
+    if (threshold < 0 || maxThreshold < 1 || maxThreshold < threshold) {
+      throw new IllegalArgumentException(
+          "the maximum threshold must be positive and no smaller than the initial threshold");
+    }
+
+    int numFunctors = 0;
+    for (AggregateBy assembly : assemblies) {
+      numFunctors += assembly.getFunctors().length;
+    }
+    Fields[] argumentFields = new Fields[numFunctors];
+    AggregateBy.Functor[] functors = new AggregateBy.Functor[numFunctors];
+    int i = 0;
+    for (AggregateBy assembly : assemblies) {
+      for (int j = 0; j < assembly.getFunctors().length; j++, i++) {
+        argumentFields[i] = assembly.getArgumentFields()[j];
+        functors[i] = assembly.getFunctors()[j];
+      }
+    }
+
+    Fields argumentSelector = Fields.merge(groupingFields, Fields.merge(argumentFields));
+    for (Fields fields : argumentFields) {
+      if (fields.isAll()) {
+        argumentSelector = Fields.ALL;
+      }
+    }
+    pipe = new Each(pipe, argumentSelector, new AdaptiveCompositeFunction(
+        groupingFields, argumentFields, functors, threshold, maxThreshold), Fields.RESULTS);
+    pipe = new GroupBy(pipe, groupingFields);
+    i = 0;
+    for (AggregateBy assembly : assemblies) {
+      for (int j = 0; j < assembly.getAggregators().length; j++, i++) {
+        pipe = new Every(
+            pipe, functors[i].getDeclaredFields(), assembly.getAggregators()[j], Fields.ALL);
+      }
+    }
+    setTails(pipe);
+  }
+
+  /**
+   * The map side of {@link AdaptiveAggregateBy}: emits the grouping fields followed by every
+   * functor's partial result.
+   */
+  public static class AdaptiveCompositeFunction extends BaseOperation implements Function {
+    private static final int WINDOW = 10000;
+
+    private final Fields groupingFields;
+    private final Fields[] argumentFields;
+    private final AggregateBy.Functor[] functors;
+    private final int initialThreshold;
+    private final int maxThreshold;
+
+    private transient LinkedHashMap<Tuple, Tuple[]> cache;
+    private transient int threshold;
+    private transient boolean passThrough;
+    private transient int[] keyPositions;
+    private transient int[][] argumentPositions;
+    private transient TupleEntry[] arguments;
+    private transient Tuple key;
+    private transient Tuple result;
+    private transient int windowTuples;
+    private transient int windowHits;
+    private transient int windowEvictions;
+    private transient long in;
+    private transient long out;
+    private transient long passedThrough;
+
+    public AdaptiveCompositeFunction(Fields groupingFields, Fields[] argumentFields,
+        AggregateBy.Functor[] functors, int threshold, int maxThreshold) {
+      super(declaredFields(groupingFields, functors));
+      this.groupingFields = groupingFields;
+      this.argumentFields = argumentFields;
+      this.functors = functors;
+      this.initialThreshold = threshold;
+      this.maxThreshold = maxThreshold;
+    }
+
+    private static Fields declaredFields(Fields groupingFields, AggregateBy.Functor[] functors) {
+      Fields declared = groupingFields;
+      for (AggregateBy.Functor functor : functors) {
+        declared = declared.append(functor.getDeclaredFields());
+      }
+      return declared;
+    }
+
+    @Override public void prepare(FlowProcess flowProcess, OperationCall operationCall) {
+      // access order, so the least recently used key is evicted first
+      cache = new LinkedHashMap<Tuple, Tuple[]>(16, 0.75f, true);
+      threshold = initialThreshold > 0 ? initialThreshold : configuredThreshold(flowProcess);
+      threshold = Math.min(threshold, maxThreshold);
+      passThrough = false;
+      keyPositions = null;
+      result = Tuple.size(getFieldDeclaration().size());
+    }
+
+    private static int configuredThreshold(FlowProcess flowProcess) {
+      Object value = flowProcess.getProperty(AggregateBy.AGGREGATE_BY_THRESHOLD);
+      int threshold = value == null ? 0 : Integer.parseInt(value.toString());
+      return threshold > 0 ? threshold : AggregateBy.DEFAULT_THRESHOLD;
+    }
+
+    private void resolvePositions(Fields incomingFields) {
+      keyPositions = incomingFields.getPos(groupingFields);
+      key = Tuple.size(keyPositions.length);
+      argumentPositions = new int[functors.length][];
+      arguments = new TupleEntry[functors.length];
+      for (int i = 0; i < functors.length; i++) {
+        Fields fields =
+            argumentFields[i].isAll() ? incomingFields : incomingFields.select(argumentFields[i]);
+        argumentPositions[i] = incomingFields.getPos(fields);
+        arguments[i] = new TupleEntry(fields, Tuple.size(fields.size()));
+      }
+    }
+
+    @Override public void operate(FlowProcess flowProcess, FunctionCall functionCall) {
+      TupleEntry incoming = functionCall.getArguments();
+      if (keyPositions == null) {
+        resolvePositions(incoming.getFields());
+      }
+      Tuple tuple = incoming.getTuple();
+      for (int i = 0; i < keyPositions.length; i++) {
+        key.set(i, tuple.getObject(keyPositions[i]));
+      }
+      in++;
+
+      TupleEntryCollector output = functionCall.getOutputCollector();
+      if (passThrough) {
+        passedThrough++;
+        emit(flowProcess, output, key, aggregate(flowProcess, tuple, null));
+        maybeReport(flowProcess);
+        return;
+      }
+
+      Tuple[] contexts = cache.get(key);
+      if (contexts != null) {
+        windowHits++;
+        aggregate(flowProcess, tuple, contexts);
+      } else {
+        cache.put(new Tuple(key), aggregate(flowProcess, tuple, null));
+        if (cache.size() > threshold) {
+          Iterator<Map.Entry<Tuple, Tuple[]>> eldest = cache.entrySet().iterator();
+          Map.Entry<Tuple, Tuple[]> entry = eldest.next();
+          eldest.remove();
+          emit(flowProcess, output, entry.getKey(), entry.getValue());
+          windowEvictions++;
+        }
+      }
+      if (++windowTuples == WINDOW) {
+        adapt(flowProcess, output);
+      }
+      maybeReport(flowProcess);
+    }
+
+    private void adapt(FlowProcess flowProcess, TupleEntryCollector output) {
+      // without evictions the cache holds every key it has seen, which is as good as it gets
+      if (windowEvictions > 0) {
+        if (windowHits < WINDOW * MIN_HIT_RATIO) {
+          drain(flowProcess, output);
+          passThrough = true;
+        } else if (threshold < maxThreshold) {
+          threshold = (int) Math.min(maxThreshold, 2L * threshold);
+        }
+      }
+      windowTuples = 0;
+      windowHits = 0;
+      windowEvictions = 0;
+    }
+
+    private Tuple[] aggregate(FlowProcess flowProcess, Tuple tuple, Tuple[] contexts) {
+      if (contexts == null) {
+        contexts = new Tuple[functors.length];
+      }
+      for (int i = 0; i < functors.length; i++) {
+        Tuple args = arguments[i].getTuple();
+        for (int j = 0; j < argumentPositions[i].length; j++) {
+          args.set(j, tuple.getObject(argumentPositions[i][j]));
+        }
+        contexts[i] = functors[i].aggregate(flowProcess, arguments[i], contexts[i]);
+      }
+      return contexts;
+    }
+
+    private void emit(FlowProcess flowProcess, TupleEntryCollector output, Tuple key,
+        Tuple[] contexts) {
+      int pos = 0;
+      for (int i = 0; i < key.size(); i++) {
+        result.set(pos++, key.getObject(i));
+      }
+      for (int i = 0; i < functors.length; i++) {
+        Tuple partial = functors[i].complete(flowProcess, contexts[i]);
+        for (int j = 0; j < partial.size(); j++) {
+          result.set(pos++, partial.getObject(j));
+        }
+      }
+      output.add(result);
+      out++;
+    }
+
+    private void drain(FlowProcess flowProcess, TupleEntryCollector output) {
+      for (Map.Entry<Tuple, Tuple[]> entry : cache.entrySet()) {
+        emit(flowProcess, output, entry.getKey(), entry.getValue());
+      }
+      cache.clear();
+    }
+
+    private void maybeReport(FlowProcess flowProcess) {
+      if (in >= WINDOW) {
+        report(flowProcess);
+      }
+    }
+
+    private void report(FlowProcess flowProcess) {
+      flowProcess.increment(COUNTER_GROUP, "tuples in", in);
+      flowProcess.increment(COUNTER_GROUP, "partials out", out);
+      flowProcess.increment(COUNTER_GROUP, "passed through", passedThrough);
+      in = 0;
+      out = 0;
+      passedThrough = 0;
+    }
+
+    @Override public void flush(FlowProcess flowProcess, OperationCall operationCall) {
+      if (cache != null) {
+        drain(flowProcess, ((FunctionCall) operationCall).getOutputCollector());
+        report(flowProcess);
+      }
+    }
+
+    @Override public void cleanup(FlowProcess flowProcess, OperationCall operationCall) {
+      cache = null;
+    }
+  }
+}
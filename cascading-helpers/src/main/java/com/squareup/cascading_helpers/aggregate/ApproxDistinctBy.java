@@ -0,0 +1,101 @@
+package com.squareup.cascading_helpers.aggregate;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.Aggregator;
+import cascading.operation.AggregatorCall;
+import cascading.operation.BaseOperation;
+import cascading.pipe.assembly.AggregateBy;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import com.squareup.cascading_helpers.util.HyperLogLog;
+import com.squareup.cascading_helpers.util.TupleHasher;
+
+/**
+ * Estimates the number of distinct values of the argument fields in each group with a
+ * {@link HyperLogLog} sketch. Map tasks build partial sketches, which the reducers merge, so this
+ * takes a single shuffle where an exact count would take a unique and a count. Tuples whose
+ * arguments are all null aren't counted.
+ */
+public class ApproxDistinctBy extends AggregateBy {
+  public ApproxDistinctBy(Fields valueFields, Fields countField) {
+    this(valueFields, countField, HyperLogLog.DEFAULT_PRECISION);
+  }
+
+  /**
+   * @param precision see {@link HyperLogLog#HyperLogLog(int)}.
+   */
+  public ApproxDistinctBy(Fields valueFields, Fields countField, int precision) {
+    super(valueFields, new SketchPartials(countField, precision), new MergeSketches(countField));
+  }
+
+  public static class SketchPartials implements Functor {
+    private final Fields declaredFields;
+    private final int precision;
+
+    private transient TupleHasher hasher;
+
+    public SketchPartials(Fields declaredFields, int precision) {
+      this.declaredFields = declaredFields;
+      this.precision = precision;
+    }
+
+    @Override public Fields getDeclaredFields() {
+      return declaredFields;
+    }
+
+    @Override public Tuple aggregate(FlowProcess flowProcess, TupleEntry args, Tuple context) {
+      if (context == null) {
+        context = new Tuple(new HyperLogLog(precision));
+      }
+      Tuple values = args.getTuple();
+      for (int i = 0; i < values.size(); i++) {
+        if (values.getObject(i) != null) {
+          if (hasher == null) {
+            hasher = new TupleHasher();
+          }
+          ((HyperLogLog) context.getObject(0)).add(hasher.hash(values));
+          break;
+        }
+      }
+      return context;
+    }
+
+    @Override public Tuple complete(FlowProcess flowProcess, Tuple context) {
+      return context;
+    }
+  }
+
+  public static class MergeSketches extends BaseOperation<HyperLogLog[]>
+      implements Aggregator<HyperLogLog[]> {
+    public MergeSketches(Fields declaredFields) {
+      super(1, declaredFields);
+    }
+
+    @Override public void start(FlowProcess flowProcess,
+        AggregatorCall<HyperLogLog[]> aggregatorCall) {
+      if (aggregatorCall.getContext() == null) {
+        aggregatorCall.setContext(new HyperLogLog[1]);
+      }
+      aggregatorCall.getContext()[0] = null;
+    }
+
+    @Override public void aggregate(FlowProcess flowProcess,
+        AggregatorCall<HyperLogLog[]> aggregatorCall) {
+      HyperLogLog partial = (HyperLogLog) aggregatorCall.getArguments().getObject(0);
+      HyperLogLog[] context = aggregatorCall.getContext();
+      if (context[0] == null) {
+        // the incoming sketch may be reused for the next value, so keep a copy
+        context[0] = new HyperLogLog(partial);
+      } else {
+        context[0].merge(partial);
+      }
+    }
+
+    @Override public void complete(FlowProcess flowProcess,
+        AggregatorCall<HyperLogLog[]> aggregatorCall) {
+      HyperLogLog sketch = aggregatorCall.getContext()[0];
+      aggregatorCall.getOutputCollector().add(new Tuple(sketch == null ? 0L : sketch.estimate()));
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package com.squareup.cascading_helpers.aggregate;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.Aggregator;
+import cascading.operation.AggregatorCall;
+import cascading.operation.BaseOperation;
+import cascading.pipe.assembly.AggregateBy;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import com.squareup.cascading_helpers.util.QuantileSketch;
+
+/**
+ * Estimates quantiles of a numeric field in each group with a {@link QuantileSketch}. Map tasks
+ * build partial sketches, which the reducers merge. Null values are skipped, and groups with no
+ * values get null quantiles.
+ */
+public class ApproxQuantileBy extends AggregateBy {
+  /**
+   * @param valueField the field to take quantiles of.
+   * @param quantiles the quantiles to estimate, each from 0 to 1.
+   * @param quantileFields the fields to put them in, one for each quantile.
+   */
+  public ApproxQuantileBy(Fields valueField, double[] quantiles, Fields quantileFields) {
+    this(valueField, quantiles, quantileFields, QuantileSketch.DEFAULT_K);
+  }
+
+  /**
+   * @param k see {@link QuantileSketch#QuantileSketch(int)}.
+   */
+  public ApproxQuantileBy(Fields valueField, double[] quantiles, Fields quantileFields, int k) {
+    super(valueField, new SketchPartials(partialField(quantiles, quantileFields), k),
+        new MergeSketches(quantiles, quantileFields));
+  }
+
+  private static Fields partialField(double[] quantiles, Fields quantileFields) {
+    if (quantiles.length == 0 || quantiles.length != quantileFields.size()) {
+      throw new IllegalArgumentException("every quantile needs a field");
+    }
+    // the sketch travels under the first output field's name, which the merge replaces
+    return new Fields(quantileFields.get(0));
+  }
+
+  public static class SketchPartials implements Functor {
+    private final Fields declaredFields;
+    private final int k;
+
+    public SketchPartials(Fields declaredFields, int k) {
+      this.declaredFields = declaredFields;
+      this.k = k;
+    }
+
+    @Override public Fields getDeclaredFields() {
+      return declaredFields;
+    }
+
+    @Override public Tuple aggregate(FlowProcess flowProcess, TupleEntry args, Tuple context) {
+      if (context == null) {
+        context = new Tuple(new QuantileSketch(k));
+      }
+      if (args.getObject(0) != null) {
+        ((QuantileSketch) context.getObject(0)).add(args.getDouble(0));
+      }
+      return context;
+    }
+
+    @Override public Tuple complete(FlowProcess flowProcess, Tuple context) {
+      return context;
+    }
+  }
+
+  public static class MergeSketches extends BaseOperation<QuantileSketch[]>
+      implements Aggregator<QuantileSketch[]> {
+    private final double[] quantiles;
+
+    public MergeSketches(double[] quantiles, Fields declaredFields) {
+      super(1, declaredFields);
+      this.quantiles = quantiles;
+    }
+
+    @Override public void start(FlowProcess flowProcess,
+        AggregatorCall<QuantileSketch[]> aggregatorCall) {
+      if (aggregatorCall.getContext() == null) {
+        aggregatorCall.setContext(new QuantileSketch[1]);
+      }
+      aggregatorCall.getContext()[0] = null;
+    }
+
+    @Override public void aggregate(FlowProcess flowProcess,
+        AggregatorCall<QuantileSketch[]> aggregatorCall) {
+      QuantileSketch partial = (QuantileSketch) aggregatorCall.getArguments().getObject(0);
+      QuantileSketch[] context = aggregatorCall.getContext();
+      if (context[0] == null) {
+        // the incoming sketch may be reused for the next value, so keep a copy
+        context[0] = new QuantileSketch(partial);
+      } else {
+        context[0].merge(partial);
+      }
+    }
+
+    @Override public void complete(FlowProcess flowProcess,
+        AggregatorCall<QuantileSketch[]> aggregatorCall) {
+      QuantileSketch sketch = aggregatorCall.getContext()[0];
+      Tuple result = Tuple.size(quantiles.length);
+      if (sketch != null && sketch.getCount() > 0) {
+        for (int i = 0; i < quantiles.length; i++) {
+          result.set(i, sketch.quantile(quantiles[i]));
+        }
+      }
+      aggregatorCall.getOutputCollector().add(result);
+    }
+  }
+}
@@ -0,0 +1,136 @@
+package com.squareup.cascading_helpers.aggregate;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.Aggregator;
+import cascading.operation.AggregatorCall;
+import cascading.operation.BaseOperation;
+import cascading.pipe.assembly.AggregateBy;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import java.util.Arrays;
+
+/**
+ * Averages several fields in one pass. Like {@link SumFieldsBy}, each group's running sums and
+ * counts are kept in primitive arrays. Null values are skipped, and a field with no values
+ * averages to null.
+ */
+public class AverageFieldsBy extends AggregateBy {
+  /**
+   * @param valueFields the fields to average.
+   * @param averageFields the fields to put the averages in, one for each value field.
+   */
+  public AverageFieldsBy(Fields valueFields, Fields averageFields) {
+    super(valueFields, new AveragePartials(partialFields(averageFields)),
+        new Averages(averageFields));
+    if (valueFields.size() != averageFields.size()) {
+      throw new IllegalArgumentException("every value field needs an average field");
+    }
+  }
+
+  /** The sums of every field, then the counts of every field. */
+  private static Fields partialFields(Fields averageFields) {
+    Comparable[] names = new Comparable[averageFields.size() * 2];
+    for (int i = 0; i < averageFields.size(); i++) {
+      names[i] = "__sum__" + averageFields.get(i);
+      names[averageFields.size() + i] = "__count__" + averageFields.get(i);
+    }
+    return new Fields(names);
+  }
+
+  /** Running sums and counts. */
+  static class State {
+    final double[] sums;
+    final long[] counts;
+
+    State(int size) {
+      sums = new double[size];
+      counts = new long[size];
+    }
+
+    void add(Tuple values) {
+      for (int i = 0; i < sums.length; i++) {
+        Object value = values.getObject(i);
+        if (value instanceof Number) {
+          sums[i] += ((Number) value).doubleValue();
+          counts[i]++;
+        } else if (value != null) {
+          sums[i] += values.getDouble(i);
+          counts[i]++;
+        }
+      }
+    }
+
+    /** Add partial sums and counts laid out as in {@link #partialFields(Fields)}. */
+    void addPartials(Tuple partials) {
+      for (int i = 0; i < sums.length; i++) {
+        sums[i] += partials.getDouble(i);
+        counts[i] += partials.getLong(sums.length + i);
+      }
+    }
+
+    void clear() {
+      Arrays.fill(sums, 0);
+      Arrays.fill(counts, 0);
+    }
+  }
+
+  public static class AveragePartials implements Functor {
+    private final Fields declaredFields;
+
+    public AveragePartials(Fields declaredFields) {
+      this.declaredFields = declaredFields;
+    }
+
+    @Override public Fields getDeclaredFields() {
+      return declaredFields;
+    }
+
+    @Override public Tuple aggregate(FlowProcess flowProcess, TupleEntry args, Tuple context) {
+      if (context == null) {
+        context = new Tuple(new State(declaredFields.size() / 2));
+      }
+      ((State) context.getObject(0)).add(args.getTuple());
+      return context;
+    }
+
+    @Override public Tuple complete(FlowProcess flowProcess, Tuple context) {
+      State state = (State) context.getObject(0);
+      Tuple result = Tuple.size(state.sums.length * 2);
+      for (int i = 0; i < state.sums.length; i++) {
+        result.set(i, state.sums[i]);
+        result.set(state.sums.length + i, state.counts[i]);
+      }
+      return result;
+    }
+  }
+
+  public static class Averages extends BaseOperation<State> implements Aggregator<State> {
+    public Averages(Fields declaredFields) {
+      super(declaredFields.size() * 2, declaredFields);
+    }
+
+    @Override public void start(FlowProcess flowProcess, AggregatorCall<State> aggregatorCall) {
+      if (aggregatorCall.getContext() == null) {
+        aggregatorCall.setContext(new State(getFieldDeclaration().size()));
+      } else {
+        aggregatorCall.getContext().clear();
+      }
+    }
+
+    @Override public void aggregate(FlowProcess flowProcess, AggregatorCall<State> aggregatorCall) {
+      aggregatorCall.getContext().addPartials(aggregatorCall.getArguments().getTuple());
+    }
+
+    @Override public void complete(FlowProcess flowProcess, AggregatorCall<State> aggregatorCall) {
+      State state = aggregatorCall.getContext();
+      Tuple result = Tuple.size(state.sums.length);
+      for (int i = 0; i < state.sums.length; i++) {
+        if (state.counts[i] > 0) {
+          result.set(i, state.sums[i] / state.counts[i]);
+        }
+      }
+      aggregatorCall.getOutputCollector().add(result);
+    }
+  }
+}
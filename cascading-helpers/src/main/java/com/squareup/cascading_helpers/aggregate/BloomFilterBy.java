@@ -0,0 +1,95 @@
+package com.squareup.cascading_helpers.aggregate;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.Aggregator;
+import cascading.operation.AggregatorCall;
+import cascading.operation.BaseOperation;
+import cascading.pipe.assembly.AggregateBy;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import com.squareup.cascading_helpers.util.BloomFilter;
+import com.squareup.cascading_helpers.util.TupleHasher;
+
+/**
+ * Builds a {@link BloomFilter} of the values of the argument fields in each group. Every map task
+ * builds filters of its own, and the reducers merge them, so only one filter per group and task
+ * crosses the shuffle.
+ */
+public class BloomFilterBy extends AggregateBy {
+  /**
+   * @param keyFields the fields whose values are added to the filter.
+   * @param bloomField the field to put the filter in.
+   */
+  public BloomFilterBy(Fields keyFields, Fields bloomField, long expectedKeys,
+      double falsePositiveRate) {
+    super(keyFields, new BloomFilterPartials(bloomField, expectedKeys, falsePositiveRate),
+        new MergeBloomFilters(bloomField));
+  }
+
+  public static class BloomFilterPartials implements Functor {
+    private final Fields declaredFields;
+    private final long expectedKeys;
+    private final double falsePositiveRate;
+
+    private transient TupleHasher hasher;
+
+    public BloomFilterPartials(Fields declaredFields, long expectedKeys,
+        double falsePositiveRate) {
+      this.declaredFields = declaredFields;
+      this.expectedKeys = expectedKeys;
+      this.falsePositiveRate = falsePositiveRate;
+    }
+
+    @Override public Fields getDeclaredFields() {
+      return declaredFields;
+    }
+
+    @Override public Tuple aggregate(FlowProcess flowProcess, TupleEntry args, Tuple context) {
+      if (context == null) {
+        context = new Tuple(new BloomFilter(expectedKeys, falsePositiveRate));
+      }
+      if (hasher == null) {
+        hasher = new TupleHasher();
+      }
+      ((BloomFilter) context.getObject(0)).add(hasher.hash(args.getTuple()));
+      return context;
+    }
+
+    @Override public Tuple complete(FlowProcess flowProcess, Tuple context) {
+      return context;
+    }
+  }
+
+  public static class MergeBloomFilters extends BaseOperation<BloomFilter[]>
+      implements Aggregator<BloomFilter[]> {
+    public MergeBloomFilters(Fields declaredFields) {
+      super(1, declaredFields);
+    }
+
+    @Override public void start(FlowProcess flowProcess,
+        AggregatorCall<BloomFilter[]> aggregatorCall) {
+      if (aggregatorCall.getContext() == null) {
+        aggregatorCall.setContext(new BloomFilter[1]);
+      }
+      aggregatorCall.getContext()[0] = null;
+    }
+
+    @Override public void aggregate(FlowProcess flowProcess,
+        AggregatorCall<BloomFilter[]> aggregatorCall) {
+      BloomFilter partial = (BloomFilter) aggregatorCall.getArguments().getObject(0);
+      BloomFilter[] context = aggregatorCall.getContext();
+      if (context[0] == null) {
+        // the incoming filter may be reused for the next value, so keep a copy
+        context[0] = new BloomFilter(partial);
+      } else {
+        context[0].merge(partial);
+      }
+    }
+
+    @Override public void complete(FlowProcess flowProcess,
+        AggregatorCall<BloomFilter[]> aggregatorCall) {
+      aggregatorCall.getOutputCollector().add(new Tuple(aggregatorCall.getContext()[0]));
+    }
+  }
+}
@@ -0,0 +1,149 @@
+package com.squareup.cascading_helpers.aggregate;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.Aggregator;
+import cascading.operation.AggregatorCall;
+import cascading.operation.BaseOperation;
+import cascading.pipe.assembly.AggregateBy;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import java.util.Arrays;
+
+/**
+ * Sums several fields in one pass, as longs or as doubles. Unlike
+ * {@link cascading.pipe.assembly.SumBy}, the running sums of each group are kept in a primitive
+ * array, so adding a tuple boxes nothing; values are only boxed when a group's sums are emitted.
+ * Null values are skipped.
+ */
+public class SumFieldsBy extends AggregateBy {
+  /**
+   * @param valueFields the fields to sum.
+   * @param sumFields the fields to put the sums in, one for each value field.
+   * @param type long.class or double.class.
+   */
+  public SumFieldsBy(Fields valueFields, Fields sumFields, Class type) {
+    super(valueFields, new SumPartials(sumFields, isIntegral(type)),
+        new Sums(sumFields, isIntegral(type)));
+    if (valueFields.size() != sumFields.size()) {
+      throw new IllegalArgumentException("every value field needs a sum field");
+    }
+  }
+
+  static boolean isIntegral(Class type) {
+    if (type == long.class || type == Long.class) {
+      return true;
+    }
+    if (type == double.class || type == Double.class) {
+      return false;
+    }
+    throw new IllegalArgumentException("can only sum longs or doubles, not " + type);
+  }
+
+  /** Adds the i-th value of a tuple to sums[i], skipping nulls. */
+  static void add(long[] sums, Tuple values) {
+    for (int i = 0; i < sums.length; i++) {
+      Object value = values.getObject(i);
+      if (value instanceof Number) {
+        sums[i] += ((Number) value).longValue();
+      } else if (value != null) {
+        sums[i] += values.getLong(i);
+      }
+    }
+  }
+
+  static void add(double[] sums, Tuple values) {
+    for (int i = 0; i < sums.length; i++) {
+      Object value = values.getObject(i);
+      if (value instanceof Number) {
+        sums[i] += ((Number) value).doubleValue();
+      } else if (value != null) {
+        sums[i] += values.getDouble(i);
+      }
+    }
+  }
+
+  static Tuple toTuple(Object sums) {
+    if (sums instanceof long[]) {
+      long[] longs = (long[]) sums;
+      Tuple result = Tuple.size(longs.length);
+      for (int i = 0; i < longs.length; i++) {
+        result.set(i, longs[i]);
+      }
+      return result;
+    }
+    double[] doubles = (double[]) sums;
+    Tuple result = Tuple.size(doubles.length);
+    for (int i = 0; i < doubles.length; i++) {
+      result.set(i, doubles[i]);
+    }
+    return result;
+  }
+
+  public static class SumPartials implements Functor {
+    private final Fields declaredFields;
+    private final boolean integral;
+
+    public SumPartials(Fields declaredFields, boolean integral) {
+      this.declaredFields = declaredFields;
+      this.integral = integral;
+    }
+
+    @Override public Fields getDeclaredFields() {
+      return declaredFields;
+    }
+
+    @Override public Tuple aggregate(FlowProcess flowProcess, TupleEntry args, Tuple context) {
+      if (context == null) {
+        int size = declaredFields.size();
+        context = new Tuple(integral ? new long[size] : new double[size]);
+      }
+      Object sums = context.getObject(0);
+      if (integral) {
+        add((long[]) sums, args.getTuple());
+      } else {
+        add((double[]) sums, args.getTuple());
+      }
+      return context;
+    }
+
+    @Override public Tuple complete(FlowProcess flowProcess, Tuple context) {
+      return toTuple(context.getObject(0));
+    }
+  }
+
+  public static class Sums extends BaseOperation<Object> implements Aggregator<Object> {
+    private final boolean integral;
+
+    public Sums(Fields declaredFields, boolean integral) {
+      super(declaredFields.size(), declaredFields);
+      this.integral = integral;
+    }
+
+    @Override public void start(FlowProcess flowProcess, AggregatorCall<Object> aggregatorCall) {
+      Object sums = aggregatorCall.getContext();
+      if (sums == null) {
+        int size = getFieldDeclaration().size();
+        aggregatorCall.setContext(integral ? new long[size] : new double[size]);
+      } else if (integral) {
+        Arrays.fill((long[]) sums, 0);
+      } else {
+        Arrays.fill((double[]) sums, 0);
+      }
+    }
+
+    @Override public void aggregate(FlowProcess flowProcess,
+        AggregatorCall<Object> aggregatorCall) {
+      if (integral) {
+        add((long[]) aggregatorCall.getContext(), aggregatorCall.getArguments().getTuple());
+      } else {
+        add((double[]) aggregatorCall.getContext(), aggregatorCall.getArguments().getTuple());
+      }
+    }
+
+    @Override public void complete(FlowProcess flowProcess,
+        AggregatorCall<Object> aggregatorCall) {
+      aggregatorCall.getOutputCollector().add(toTuple(aggregatorCall.getContext()));
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package com.squareup.cascading_helpers.batch;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.Function;
+import cascading.operation.FunctionCall;
+import cascading.operation.OperationCall;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntryCollector;
+import java.util.Arrays;
+
+/**
+ * Runs a {@link BatchFunction} or {@link BatchFilter} inside an ordinary Each. Incoming tuples are
+ * copied into a buffer, their argument fields into a {@link ColumnBatch}, and whenever the buffer
+ * fills up (and once more when the operation is flushed) the batch operation runs and the
+ * surviving tuples are emitted, with any rewritten arguments.
+ *
+ * Apply it with Fields.ALL as both its argument selector and the Each's output selector; it
+ * declares Fields.ARGS, so the tuples keep their fields. Tuples come out in the order they went
+ * in, but up to a batch later, so only use it where nothing depends on tuples being emitted while
+ * their input is current, e.g. not in a reducer between Everys.
+ */
+public class BatchAdapter extends BaseOperation implements Function {
+  public static final int DEFAULT_BATCH_SIZE = 1024;
+
+  private final BatchFunction function;
+  private final BatchFilter filter;
+  private final Fields argumentFields;
+  private final int batchSize;
+
+  private transient int[] positions;
+  private transient ColumnBatch batch;
+  private transient Tuple[] rows;
+  private transient boolean[] remove;
+
+  /**
+   * @param argumentFields the fields to put in the batch, or Fields.ALL for all of them.
+   */
+  public BatchAdapter(BatchFunction function, Fields argumentFields, int batchSize) {
+    this(function, null, argumentFields, batchSize);
+  }
+
+  /**
+   * @param argumentFields the fields to put in the batch, or Fields.ALL for all of them.
+   */
+  public BatchAdapter(BatchFilter filter, Fields argumentFields, int batchSize) {
+    this(null, filter, argumentFields, batchSize);
+  }
+
+  private BatchAdapter(BatchFunction function, BatchFilter filter, Fields argumentFields,
+      int batchSize) {
+    super(Fields.ARGS);
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("batch size must be positive");
+    }
+    this.function = function;
+    this.filter = filter;
+    this.argumentFields = argumentFields;
+    this.batchSize = batchSize;
+  }
+
+  @Override public void prepare(FlowProcess flowProcess, OperationCall operationCall) {
+    // the incoming fields are only known for sure once the first tuple arrives
+    batch = null;
+  }
+
+  private void prepareBatch(Fields incomingFields) {
+    Fields fields = argumentFields.isAll() ? incomingFields : incomingFields.select(argumentFields);
+    positions = incomingFields.getPos(fields);
+    batch = new ColumnBatch(fields, batchSize);
+    rows = new Tuple[batchSize];
+    for (int i = 0; i < batchSize; i++) {
+      rows[i] = Tuple.size(incomingFields.size());
+    }
+    remove = new boolean[batchSize];
+  }
+
+  @Override public void operate(FlowProcess flowProcess, FunctionCall functionCall) {
+    if (batch == null) {
+      prepareBatch(functionCall.getArguments().getFields());
+    }
+    Tuple incoming = functionCall.getArguments().getTuple();
+    Tuple row = rows[batch.size()];
+    for (int i = 0; i < row.size(); i++) {
+      row.set(i, incoming.getObject(i));
+    }
+    batch.add(incoming, positions);
+    if (batch.size() == batchSize) {
+      run(flowProcess, functionCall.getOutputCollector());
+    }
+  }
+
+  private void run(FlowProcess flowProcess, TupleEntryCollector outputCollector) {
+    int size = batch.size();
+    if (function != null) {
+      function.operate(flowProcess, batch);
+      for (int column = 0; column < positions.length; column++) {
+        Object[] values = batch.getColumn(column);
+        for (int i = 0; i < size; i++) {
+          rows[i].set(positions[column], values[i]);
+        }
+      }
+    } else {
+      Arrays.fill(remove, 0, size, false);
+      filter.isRemove(flowProcess, batch, remove);
+    }
+    for (int i = 0; i < size; i++) {
+      if (!remove[i]) {
+        outputCollector.add(rows[i]);
+      }
+    }
+    batch.clear();
+  }
+
+  @Override public void flush(FlowProcess flowProcess, OperationCall operationCall) {
+    if (batch != null && batch.size() > 0) {
+      run(flowProcess, ((FunctionCall) operationCall).getOutputCollector());
+    }
+  }
+
+  @Override public void cleanup(FlowProcess flowProcess, OperationCall operationCall) {
+    batch = null;
+    rows = null;
+  }
+}
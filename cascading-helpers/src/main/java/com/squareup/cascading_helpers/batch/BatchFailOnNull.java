@@ -0,0 +1,31 @@
+package com.squareup.cascading_helpers.batch;
+
+import cascading.flow.FlowProcess;
+
+/**
+ * Fail the job if any of the argument fields are null, like
+ * {@link com.squareup.cascading_helpers.filter.FailOnNull}.
+ */
+public class BatchFailOnNull implements BatchFilter {
+  private final String errorText;
+
+  public BatchFailOnNull(String errorText) {
+    if (errorText == null) {
+      errorText = "Expected no null tuples, but found one!";
+    }
+    this.errorText = errorText;
+  }
+
+  @Override public void isRemove(FlowProcess flowProcess, ColumnBatch arguments,
+      boolean[] remove) {
+    int size = arguments.size();
+    for (int column = 0; column < arguments.numColumns(); column++) {
+      Object[] values = arguments.getColumn(column);
+      for (int row = 0; row < size; row++) {
+        if (values[row] == null) {
+          throw new NullPointerException(errorText);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,15 @@
+package com.squareup.cascading_helpers.batch;
+
+import cascading.flow.FlowProcess;
+import java.io.Serializable;
+
+/**
+ * A filter over a whole {@link ColumnBatch} at a time.
+ */
+public interface BatchFilter extends Serializable {
+  /**
+   * @param remove set to true for each row that should be removed. It starts out all false, and
+   * only its first {@link ColumnBatch#size()} entries count.
+   */
+  void isRemove(FlowProcess flowProcess, ColumnBatch arguments, boolean[] remove);
+}
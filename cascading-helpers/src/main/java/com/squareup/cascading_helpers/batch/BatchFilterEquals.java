@@ -0,0 +1,34 @@
+package com.squareup.cascading_helpers.batch;
+
+import cascading.flow.FlowProcess;
+import java.util.Arrays;
+
+/**
+ * Remove tuples that match the exemplar, like
+ * {@link com.squareup.cascading_helpers.filter.FilterEquals}, a column at a time.
+ */
+public class BatchFilterEquals implements BatchFilter {
+  private final Object[] exemplar;
+
+  public BatchFilterEquals(Object... exemplar) {
+    this.exemplar = exemplar;
+  }
+
+  @Override public void isRemove(FlowProcess flowProcess, ColumnBatch arguments,
+      boolean[] remove) {
+    if (arguments.numColumns() != exemplar.length) {
+      return;
+    }
+    int size = arguments.size();
+    Arrays.fill(remove, 0, size, true);
+    for (int column = 0; column < exemplar.length; column++) {
+      Object expected = exemplar[column];
+      Object[] values = arguments.getColumn(column);
+      for (int row = 0; row < size; row++) {
+        if (remove[row]) {
+          remove[row] = expected == null ? values[row] == null : expected.equals(values[row]);
+        }
+      }
+    }
+  }
+}
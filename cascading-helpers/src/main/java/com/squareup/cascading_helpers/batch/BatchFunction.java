@@ -0,0 +1,14 @@
+package com.squareup.cascading_helpers.batch;
+
+import cascading.flow.FlowProcess;
+import java.io.Serializable;
+
+/**
+ * A function over a whole {@link ColumnBatch} at a time. It rewrites its argument columns in
+ * place with {@link ColumnBatch#set}, and every row then continues down the pipe with the new
+ * values, so each input tuple produces exactly one output tuple with the same fields. To compute
+ * a new field, insert it first and pass it as an argument.
+ */
+public interface BatchFunction extends Serializable {
+  void operate(FlowProcess flowProcess, ColumnBatch arguments);
+}
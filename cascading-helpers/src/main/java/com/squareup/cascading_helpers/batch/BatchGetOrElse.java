@@ -0,0 +1,34 @@
+package com.squareup.cascading_helpers.batch;
+
+import cascading.flow.FlowProcess;
+
+/**
+ * Replace nulls in each argument column with that column's default, like
+ * {@link com.squareup.cascading_helpers.function.GetOrElse} but in place.
+ */
+public class BatchGetOrElse implements BatchFunction {
+  private final Object[] defaults;
+
+  /**
+   * @param defaults one value per argument field.
+   */
+  public BatchGetOrElse(Object... defaults) {
+    this.defaults = defaults;
+  }
+
+  @Override public void operate(FlowProcess flowProcess, ColumnBatch arguments) {
+    if (arguments.numColumns() != defaults.length) {
+      throw new IllegalArgumentException("expected " + defaults.length + " arguments, got "
+          + arguments.getFields());
+    }
+    int size = arguments.size();
+    for (int column = 0; column < defaults.length; column++) {
+      Object[] values = arguments.getColumn(column);
+      for (int row = 0; row < size; row++) {
+        if (values[row] == null) {
+          arguments.set(column, row, defaults[column]);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,148 @@
+package com.squareup.cascading_helpers.batch;
+
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import java.util.Arrays;
+
+/**
+ * The argument fields of up to a fixed number of tuples, stored column by column. Batch operations
+ * read the columns as objects or as primitive arrays, which are converted at most once per batch
+ * into arrays that are reused from batch to batch.
+ *
+ * Only the first {@link #size()} entries of each column belong to the batch; the arrays are reused
+ * from one batch to the next, so operations mustn't hold on to them.
+ */
+public final class ColumnBatch {
+  private final Fields fields;
+  private final int capacity;
+  private final Object[][] columns;
+  private final long[][] longs;
+  private final double[][] doubles;
+  private final boolean[][] nulls;
+  private final boolean[] longsValid;
+  private final boolean[] doublesValid;
+  private final boolean[] nullsValid;
+  private int size;
+
+  ColumnBatch(Fields fields, int capacity) {
+    this.fields = fields;
+    this.capacity = capacity;
+    int numColumns = fields.size();
+    columns = new Object[numColumns][capacity];
+    longs = new long[numColumns][];
+    doubles = new double[numColumns][];
+    nulls = new boolean[numColumns][];
+    longsValid = new boolean[numColumns];
+    doublesValid = new boolean[numColumns];
+    nullsValid = new boolean[numColumns];
+  }
+
+  public Fields getFields() {
+    return fields;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int numColumns() {
+    return columns.length;
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+
+  public Object get(int column, int row) {
+    return columns[column][row];
+  }
+
+  public void set(int column, int row, Object value) {
+    columns[column][row] = value;
+    invalidate(column);
+  }
+
+  /**
+   * @return the values of a column. Writes to the array don't update the primitive views; use
+   * {@link #set} for that.
+   */
+  public Object[] getColumn(int column) {
+    return columns[column];
+  }
+
+  /**
+   * @return the values of a numeric column as longs, with 0 standing in for nulls.
+   */
+  public long[] getLongs(int column) {
+    if (!longsValid[column]) {
+      if (longs[column] == null) {
+        longs[column] = new long[capacity];
+      }
+      long[] values = longs[column];
+      Object[] objects = columns[column];
+      for (int row = 0; row < size; row++) {
+        values[row] = objects[row] == null ? 0 : ((Number) objects[row]).longValue();
+      }
+      longsValid[column] = true;
+    }
+    return longs[column];
+  }
+
+  /**
+   * @return the values of a numeric column as doubles, with 0 standing in for nulls.
+   */
+  public double[] getDoubles(int column) {
+    if (!doublesValid[column]) {
+      if (doubles[column] == null) {
+        doubles[column] = new double[capacity];
+      }
+      double[] values = doubles[column];
+      Object[] objects = columns[column];
+      for (int row = 0; row < size; row++) {
+        values[row] = objects[row] == null ? 0 : ((Number) objects[row]).doubleValue();
+      }
+      doublesValid[column] = true;
+    }
+    return doubles[column];
+  }
+
+  /**
+   * @return which rows of a column are null.
+   */
+  public boolean[] getNulls(int column) {
+    if (!nullsValid[column]) {
+      if (nulls[column] == null) {
+        nulls[column] = new boolean[capacity];
+      }
+      boolean[] values = nulls[column];
+      Object[] objects = columns[column];
+      for (int row = 0; row < size; row++) {
+        values[row] = objects[row] == null;
+      }
+      nullsValid[column] = true;
+    }
+    return nulls[column];
+  }
+
+  void add(Tuple tuple, int[] positions) {
+    for (int column = 0; column < positions.length; column++) {
+      columns[column][size] = tuple.getObject(positions[column]);
+    }
+    size++;
+  }
+
+  void clear() {
+    for (int column = 0; column < columns.length; column++) {
+      // let go of the values, they may be large
+      Arrays.fill(columns[column], 0, size, null);
+      invalidate(column);
+    }
+    size = 0;
+  }
+
+  private void invalidate(int column) {
+    longsValid[column] = false;
+    doublesValid[column] = false;
+    nullsValid[column] = false;
+  }
+}
@@ -0,0 +1,21 @@
+package com.squareup.cascading_helpers.exec;
+
+import cascading.tuple.Fields;
+
+/**
+ * The tuples leaving a pipe. Most are made as they're read, by tasks sending them straight on to
+ * the target, so that they needn't fit in memory; the few that several steps read are kept.
+ */
+abstract class Dataset {
+  final Fields fields;
+
+  Dataset(Fields fields) {
+    this.fields = fields;
+  }
+
+  /**
+   * Sends every tuple to the target, returning once every task is done. Only datasets that are
+   * kept may be read more than once.
+   */
+  abstract void read(Target target);
+}
@@ -0,0 +1,173 @@
+package com.squareup.cascading_helpers.exec;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.ConcreteCall;
+import cascading.operation.Filter;
+import cascading.operation.Function;
+import cascading.operation.Operation;
+import cascading.pipe.Each;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import cascading.tuple.TupleEntryCollector;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A run of Each pipes, applied to a partition at a time the way a task applies them: every
+ * partition gets copies of the operations of its own, which are prepared before its first tuple
+ * and flushed and cleaned up after its last. Tuples stream through the whole run one at a time.
+ */
+final class EachChain {
+  private final List<Plan> plans = new ArrayList<Plan>();
+  private final Fields fields;
+
+  EachChain(List<Each> eaches, Fields incoming) {
+    Fields current = incoming;
+    for (Each each : eaches) {
+      Plan plan = new Plan(each, current);
+      plans.add(plan);
+      if (plan.outgoing != null) {
+        current = plan.outgoing.getFields();
+      }
+    }
+    fields = current;
+  }
+
+  /**
+   * @return the fields of the tuples leaving the chain.
+   */
+  Fields getFields() {
+    return fields;
+  }
+
+  /**
+   * @return copies of the operations, prepared to run a partition's tuples into the output, which
+   *     they flush, clean up and close when they're closed.
+   */
+  Target.Output start(FlowProcess flowProcess, Target.Output output) {
+    return new Instance(flowProcess, output);
+  }
+
+  private final class Instance implements Target.Output {
+    private final FlowProcess flowProcess;
+    private final Target.Output output;
+    private final Stage[] stages;
+    private final Receiver first;
+
+    Instance(FlowProcess flowProcess, Target.Output output) {
+      this.flowProcess = flowProcess;
+      this.output = output;
+      stages = new Stage[plans.size()];
+      Receiver next = output;
+      for (int i = stages.length - 1; i >= 0; i--) {
+        stages[i] = new Stage(plans.get(i), flowProcess, next);
+        next = stages[i];
+      }
+      first = next;
+      for (Stage stage : stages) {
+        stage.operation.prepare(flowProcess, stage.call);
+      }
+    }
+
+    @Override public void receive(Tuple tuple) {
+      first.receive(tuple);
+    }
+
+    @Override public void close() throws IOException {
+      try {
+        // a stage may emit while flushed, so flush them in order
+        for (Stage stage : stages) {
+          stage.operation.flush(flowProcess, stage.call);
+        }
+      } finally {
+        for (Stage stage : stages) {
+          stage.operation.cleanup(flowProcess, stage.call);
+        }
+      }
+      output.close();
+    }
+  }
+
+  /** What an Each does to the fields, resolved once for every partition. */
+  private static class Plan {
+    final boolean filter;
+    final Serialized<Operation> operation;
+    final Fields arguments;
+    final int[] argumentPositions;
+    final Fields declared;
+    final Selection outgoing;
+
+    Plan(Each each, Fields incoming) {
+      Operation operation = each.getOperation();
+      filter = each.isFilter();
+      arguments = Selection.arguments(incoming, each.getArgumentSelector());
+      argumentPositions = Selection.positions(incoming, arguments);
+      if (filter) {
+        declared = null;
+        outgoing = null;
+      } else {
+        declared = Selection.declared(operation, arguments);
+        outgoing = Selection.outgoing(incoming, arguments, declared, each.getOutputSelector());
+      }
+      this.operation = new Serialized<Operation>(operation);
+    }
+  }
+
+  private static class Stage implements Receiver {
+    final Plan plan;
+    final FlowProcess flowProcess;
+    final Receiver next;
+    final Operation operation;
+    final ConcreteCall call;
+    final Tuple arguments;
+    Tuple incoming;
+
+    @SuppressWarnings({"unchecked"})
+    Stage(Plan plan, FlowProcess flowProcess, Receiver next) {
+      this.plan = plan;
+      this.flowProcess = flowProcess;
+      this.next = next;
+      operation = plan.operation.copy();
+      arguments = Tuple.size(plan.arguments.size());
+      if (plan.filter) {
+        call = new ConcreteCall(plan.arguments);
+      } else {
+        call = new ConcreteCall(plan.arguments, plan.declared);
+        call.setOutputCollector(new ResultCollector());
+      }
+      call.setArguments(new TupleEntry(plan.arguments, arguments));
+    }
+
+    @SuppressWarnings({"unchecked"})
+    @Override public void receive(Tuple tuple) {
+      for (int i = 0; i < plan.argumentPositions.length; i++) {
+        arguments.set(i, tuple.getObject(plan.argumentPositions[i]));
+      }
+      if (plan.filter) {
+        if (!((Filter) operation).isRemove(flowProcess, call)) {
+          next.receive(tuple);
+        }
+      } else {
+        incoming = tuple;
+        ((Function) operation).operate(flowProcess, call);
+      }
+    }
+
+    /** Combines each result with the tuple it came from, as the output selector says. */
+    private class ResultCollector extends TupleEntryCollector {
+      @Override public void add(Tuple tuple) {
+        next.receive(plan.outgoing.select(incoming, tuple));
+      }
+
+      @Override public void add(TupleEntry tupleEntry) {
+        add(tupleEntry.getTuple());
+      }
+
+      @Override protected void collect(TupleEntry tupleEntry) {
+        add(tupleEntry.getTuple());
+      }
+    }
+  }
+}
@@ -0,0 +1,250 @@
+package com.squareup.cascading_helpers.exec;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.Aggregator;
+import cascading.operation.Buffer;
+import cascading.operation.ConcreteCall;
+import cascading.operation.Operation;
+import cascading.pipe.Every;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import cascading.tuple.TupleEntryCollector;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The Every pipes following a grouping: either any number of aggregators, whose results are
+ * appended to the group's key as their output selectors say, or a single buffer.
+ */
+final class EveryChain {
+  private final Fields group;
+  private final List<Plan> plans = new ArrayList<Plan>();
+  private final boolean buffer;
+  private final Fields fields;
+
+  /**
+   * @param incoming the fields of the grouped tuples.
+   * @param group the fields of the grouping key.
+   */
+  EveryChain(List<Every> everies, Fields incoming, Fields group) {
+    this.group = group;
+    buffer = everies.get(0).isBuffer();
+    if (buffer && everies.size() > 1) {
+      throw new IllegalArgumentException("a Buffer must be the only Every after a grouping");
+    }
+
+    Fields current = buffer ? incoming : group;
+    for (Every every : everies) {
+      if (every.isBuffer() != buffer) {
+        throw new IllegalArgumentException("a Buffer must be the only Every after a grouping");
+      }
+      Fields selector = every.getOutputSelector();
+      if (!buffer && (selector.isReplace() || selector.isSwap())) {
+        throw new IllegalArgumentException("aggregators can't replace or swap fields");
+      }
+      Plan plan = new Plan(every, incoming, group, current);
+      plans.add(plan);
+      current = plan.outgoing.getFields();
+    }
+    fields = current;
+  }
+
+  Fields getFields() {
+    return fields;
+  }
+
+  /**
+   * @return copies of the operations, prepared to run the groups of a partition.
+   */
+  Instance start(FlowProcess flowProcess, Receiver output) {
+    return new Instance(flowProcess, output);
+  }
+
+  /** What an Every does to the fields, resolved once for every partition. */
+  private static class Plan {
+    final Serialized<Operation> operation;
+    final Fields arguments;
+    final int[] argumentPositions;
+    final Fields declared;
+    final Selection outgoing;
+
+    Plan(Every every, Fields incoming, Fields group, Fields current) {
+      Operation operation = every.getOperation();
+      arguments = Selection.arguments(incoming, group, every.getArgumentSelector());
+      argumentPositions = Selection.positions(incoming, arguments);
+      declared = Selection.declared(operation, arguments);
+      outgoing = Selection.outgoing(current, Fields.NONE, declared, every.getOutputSelector());
+      this.operation = new Serialized<Operation>(operation);
+    }
+  }
+
+  final class Instance {
+    private final FlowProcess flowProcess;
+    private final Receiver output;
+    private final Operation[] operations;
+    private final ConcreteCall[] calls;
+    private final Tuple[] arguments;
+    private final List<List<Tuple>> results;
+    private Tuple current;
+
+    @SuppressWarnings({"unchecked"})
+    Instance(FlowProcess flowProcess, Receiver output) {
+      this.flowProcess = flowProcess;
+      this.output = output;
+      operations = new Operation[plans.size()];
+      calls = new ConcreteCall[plans.size()];
+      arguments = new Tuple[plans.size()];
+      results = new ArrayList<List<Tuple>>();
+      for (int i = 0; i < plans.size(); i++) {
+        Plan plan = plans.get(i);
+        operations[i] = plan.operation.copy();
+        arguments[i] = Tuple.size(plan.arguments.size());
+        calls[i] = new ConcreteCall(plan.arguments, plan.declared);
+        calls[i].setArguments(new TupleEntry(plan.arguments, arguments[i]));
+        if (buffer) {
+          calls[i].setOutputCollector(new BufferCollector(plan.outgoing));
+        } else {
+          List<Tuple> collected = new ArrayList<Tuple>();
+          results.add(collected);
+          calls[i].setOutputCollector(new ResultCollector(collected));
+        }
+      }
+      for (int i = 0; i < operations.length; i++) {
+        operations[i].prepare(flowProcess, calls[i]);
+      }
+    }
+
+    /**
+     * Runs the group's values through the Everys, reading them once, as they may be more than
+     * fit in memory.
+     */
+    @SuppressWarnings({"unchecked"})
+    void group(Tuple key, Iterator<Tuple> values) {
+      TupleEntry groupEntry = new TupleEntry(group, key);
+      for (ConcreteCall call : calls) {
+        call.setGroup(groupEntry);
+      }
+
+      if (buffer) {
+        current = null;
+        calls[0].setArgumentsIterator(new ArgumentsIterator(values));
+        ((Buffer) operations[0]).operate(flowProcess, calls[0]);
+        return;
+      }
+
+      for (int i = 0; i < operations.length; i++) {
+        ((Aggregator) operations[i]).start(flowProcess, calls[i]);
+      }
+      while (values.hasNext()) {
+        Tuple value = values.next();
+        for (int i = 0; i < operations.length; i++) {
+          fill(i, value);
+          ((Aggregator) operations[i]).aggregate(flowProcess, calls[i]);
+        }
+      }
+      List<Tuple> outgoing = Collections.singletonList(key);
+      for (int i = 0; i < operations.length; i++) {
+        ((Aggregator) operations[i]).complete(flowProcess, calls[i]);
+        // an aggregator emitting several tuples multiplies the group's output
+        List<Tuple> next = new ArrayList<Tuple>();
+        for (Tuple tuple : outgoing) {
+          for (Tuple result : results.get(i)) {
+            next.add(plans.get(i).outgoing.select(tuple, result));
+          }
+        }
+        results.get(i).clear();
+        outgoing = next;
+      }
+      for (Tuple tuple : outgoing) {
+        output.receive(tuple);
+      }
+    }
+
+    private void fill(int operation, Tuple value) {
+      int[] positions = plans.get(operation).argumentPositions;
+      for (int i = 0; i < positions.length; i++) {
+        arguments[operation].set(i, value.getObject(positions[i]));
+      }
+    }
+
+    void cleanup() {
+      for (int i = 0; i < operations.length; i++) {
+        operations[i].cleanup(flowProcess, calls[i]);
+      }
+    }
+
+    private class ArgumentsIterator implements Iterator<TupleEntry> {
+      private final Iterator<Tuple> values;
+
+      ArgumentsIterator(Iterator<Tuple> values) {
+        this.values = values;
+      }
+
+      @Override public boolean hasNext() {
+        return values.hasNext();
+      }
+
+      @Override public TupleEntry next() {
+        if (!values.hasNext()) {
+          throw new NoSuchElementException();
+        }
+        current = values.next();
+        fill(0, current);
+        return calls[0].getArguments();
+      }
+
+      @Override public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    }
+
+    /**
+     * Passes a buffer's results on as it emits them, each with the values tuple it last read, or
+     * nulls if it hasn't read one yet.
+     */
+    private class BufferCollector extends TupleEntryCollector {
+      private final Selection outgoing;
+
+      BufferCollector(Selection outgoing) {
+        this.outgoing = outgoing;
+      }
+
+      @Override public void add(Tuple tuple) {
+        output.receive(outgoing.select(current, tuple));
+      }
+
+      @Override public void add(TupleEntry tupleEntry) {
+        add(tupleEntry.getTuple());
+      }
+
+      @Override protected void collect(TupleEntry tupleEntry) {
+        add(tupleEntry.getTuple());
+      }
+    }
+  }
+
+  /** Keeps copies of an aggregator's results, as it may reuse the tuples it emits. */
+  private static class ResultCollector extends TupleEntryCollector {
+    private final List<Tuple> collected;
+
+    ResultCollector(List<Tuple> collected) {
+      this.collected = collected;
+    }
+
+    @Override public void add(Tuple tuple) {
+      collected.add(Selection.copy(tuple));
+    }
+
+    @Override public void add(TupleEntry tupleEntry) {
+      add(tupleEntry.getTuple());
+    }
+
+    @Override protected void collect(TupleEntry tupleEntry) {
+      add(tupleEntry.getTuple());
+    }
+  }
+}
@@ -0,0 +1,541 @@
+package com.squareup.cascading_helpers.exec;
+
+import cascading.flow.FlowProcess;
+import cascading.pipe.Each;
+import cascading.pipe.Every;
+import cascading.pipe.Pipe;
+import cascading.pipe.Splice;
+import cascading.pipe.SubAssembly;
+import cascading.tap.SinkMode;
+import cascading.tap.Tap;
+import cascading.tap.TapException;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import cascading.tuple.TupleEntryCollector;
+import cascading.tuple.TupleEntryIterator;
+import com.squareup.cascading_helpers.util.ExternalSorter;
+import com.squareup.cascading_helpers.util.SpillableTupleList;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * One run of an {@link InMemoryExecutor}: evaluates pipes into datasets, running runs of Eaches
+ * and groupings a partition per task on the executor's threads. Tasks send their tuples straight
+ * on to the next step, a grouping's sorters or the sink. A pipe read by several others is
+ * evaluated once and its dataset kept, spilling to disk, until all of them have read it.
+ */
+final class Execution {
+  private static final int BATCH_SIZE = 1024;
+
+  private final InMemoryExecutor executor;
+  private final Map<String, Tap> sources;
+  private final ExecutorService threads;
+  private final int parallelism;
+  private final long sortMemory;
+  private final Configuration conf;
+  private final Map<Pipe, Integer> consumers = new IdentityHashMap<Pipe, Integer>();
+  // how many consumers of each pipe have yet to read it
+  private final Map<Pipe, Integer> unread = new IdentityHashMap<Pipe, Integer>();
+  private final Map<Pipe, Dataset> datasets = new IdentityHashMap<Pipe, Dataset>();
+
+  Execution(InMemoryExecutor executor, Map<String, Tap> sources, Collection<Pipe> tails,
+      ExecutorService threads, int parallelism, long sortMemory) {
+    this.executor = executor;
+    this.sources = sources;
+    this.threads = threads;
+    this.parallelism = parallelism;
+    this.sortMemory = sortMemory;
+    conf = new Configuration();
+    for (Map.Entry<Object, Object> property : executor.getProperties().entrySet()) {
+      conf.set(String.valueOf(property.getKey()), String.valueOf(property.getValue()));
+    }
+    for (Pipe tail : tails) {
+      count(resolve(tail));
+    }
+    unread.putAll(consumers);
+  }
+
+  private void count(Pipe pipe) {
+    Integer count = consumers.get(pipe);
+    consumers.put(pipe, count == null ? 1 : count + 1);
+    if (count == null) {
+      for (Pipe previous : previous(pipe)) {
+        count(previous);
+      }
+    }
+  }
+
+  /**
+   * @return the pipe doing the work of the given one: the tail of a subassembly, or the pipe
+   *     before a plain named pipe.
+   */
+  private static Pipe resolve(Pipe pipe) {
+    while (true) {
+      if (pipe instanceof SubAssembly) {
+        Pipe[] tails = ((SubAssembly) pipe).getTails();
+        if (tails.length != 1) {
+          throw new IllegalArgumentException("can't run " + pipe.getName() + ", which has "
+              + tails.length + " tails");
+        }
+        pipe = tails[0];
+      } else if (pipe.getClass() == Pipe.class && pipe.getPrevious().length == 1) {
+        pipe = pipe.getPrevious()[0];
+      } else {
+        return pipe;
+      }
+    }
+  }
+
+  private static Pipe[] previous(Pipe pipe) {
+    Pipe[] previous = pipe.getPrevious();
+    Pipe[] resolved = new Pipe[previous.length];
+    for (int i = 0; i < previous.length; i++) {
+      resolved[i] = resolve(previous[i]);
+    }
+    return resolved;
+  }
+
+  /**
+   * @return the pipe's dataset, which the caller should {@link #release} once it has read it.
+   *     Only the datasets of pipes read by several others are kept; the rest are made as they're
+   *     read.
+   */
+  Dataset evaluate(Pipe pipe) {
+    pipe = resolve(pipe);
+    Dataset dataset = datasets.get(pipe);
+    if (dataset == null) {
+      if (pipe instanceof Each) {
+        dataset = eaches((Each) pipe);
+      } else if (pipe instanceof Every || pipe instanceof Splice) {
+        dataset = grouping(pipe);
+      } else if (pipe.getPrevious().length == 0) {
+        dataset = read(pipe.getName());
+      } else {
+        throw new IllegalArgumentException("can't run " + pipe + ", a "
+            + pipe.getClass().getName());
+      }
+      if (consumers.get(pipe) > 1) {
+        dataset = keep(dataset);
+        datasets.put(pipe, dataset);
+      }
+    }
+    return dataset;
+  }
+
+  /** Runs the Each and every Each before it that nothing else reads, in one pass. */
+  private Dataset eaches(Each tail) {
+    List<Each> eaches = new ArrayList<Each>();
+    Pipe pipe = tail;
+    do {
+      eaches.add(0, (Each) pipe);
+      pipe = previous(pipe)[0];
+    } while (pipe instanceof Each && consumers.get(pipe) == 1 && !datasets.containsKey(pipe));
+
+    final Pipe previous = pipe;
+    final Dataset input = evaluate(previous);
+    final EachChain chain = new EachChain(eaches, input.fields);
+    return new Dataset(chain.getFields()) {
+      @Override void read(final Target target) {
+        input.read(new Target() {
+          @Override public Output open(int slice, int slices) throws IOException {
+            return chain.start(executor.flowProcess(slice, slices), target.open(slice, slices));
+          }
+        });
+        release(previous);
+      }
+    };
+  }
+
+  private Dataset grouping(Pipe tail) {
+    List<Every> everies = new ArrayList<Every>();
+    Pipe pipe = tail;
+    while (pipe instanceof Every) {
+      everies.add(0, (Every) pipe);
+      pipe = previous(pipe)[0];
+    }
+    if (!(pipe instanceof Splice)) {
+      throw new IllegalArgumentException(tail.getName() + " doesn't follow a grouping");
+    }
+    Splice splice = (Splice) pipe;
+
+    final Pipe[] previous = previous(splice);
+    final Dataset[] inputs = new Dataset[previous.length];
+    Fields[] fields = new Fields[previous.length];
+    for (int i = 0; i < previous.length; i++) {
+      inputs[i] = evaluate(previous[i]);
+      fields[i] = inputs[i].fields;
+    }
+    if (splice.isMerge()) {
+      return merge(previous, inputs);
+    }
+
+    final Grouping grouping = new Grouping(splice, fields, everies, sortMemory, conf);
+    return new Dataset(grouping.getFields()) {
+      @Override void read(Target target) {
+        ExternalSorter[] sorters = grouping.sorters(parallelism);
+        try {
+          for (int i = 0; i < inputs.length; i++) {
+            inputs[i].read(grouping.scatter(i, sorters));
+            release(previous[i]);
+          }
+          reduce(grouping, sorters, target);
+        } finally {
+          for (ExternalSorter sorter : sorters) {
+            try {
+              sorter.close();
+            } catch (IOException e) {
+              // the run files are temporary anyway
+            }
+          }
+        }
+      }
+    };
+  }
+
+  private void reduce(final Grouping grouping, final ExternalSorter[] sorters,
+      final Target target) {
+    List<Callable<Void>> reduces = new ArrayList<Callable<Void>>();
+    for (int i = 0; i < sorters.length; i++) {
+      final int slice = i;
+      reduces.add(new Callable<Void>() {
+        @Override public Void call() throws IOException {
+          Target.Output output = target.open(slice, sorters.length);
+          FlowProcess flowProcess = executor.flowProcess(slice, sorters.length);
+          grouping.reduce(flowProcess, sorters[slice], output);
+          sorters[slice].close();
+          output.close();
+          return null;
+        }
+      });
+    }
+    invokeAll(reduces);
+  }
+
+  private Dataset merge(final Pipe[] previous, final Dataset[] inputs) {
+    for (Dataset input : inputs) {
+      if (!input.fields.equals(inputs[0].fields)) {
+        throw new IllegalArgumentException("can't merge " + input.fields + " with "
+            + inputs[0].fields);
+      }
+    }
+    return new Dataset(inputs[0].fields) {
+      @Override void read(Target target) {
+        for (int i = 0; i < inputs.length; i++) {
+          inputs[i].read(target);
+          release(previous[i]);
+        }
+      }
+    };
+  }
+
+  @SuppressWarnings({"unchecked"})
+  private Dataset read(String name) {
+    Tap tap = sources.get(name);
+    if (tap == null) {
+      throw new IllegalArgumentException("no source tap for " + name);
+    }
+    tap.sourceConfInit(executor.flowProcess(0, 1), executor.getProperties());
+    Fields fields = tap.getSourceFields();
+    if (fields.isDefined()) {
+      return new Source(tap, fields, null, null);
+    }
+    // a tap that doesn't know its fields until it's read names them with every entry
+    TupleEntryIterator iterator = open(tap);
+    if (!iterator.hasNext()) {
+      return new Source(tap, fields, iterator, null);
+    }
+    TupleEntry entry = iterator.next();
+    return new Source(tap, entry.getFields(), iterator, entry.getTupleCopy());
+  }
+
+  @SuppressWarnings({"unchecked"})
+  private TupleEntryIterator open(Tap tap) {
+    try {
+      return tap.openForRead(executor.flowProcess(0, 1));
+    } catch (IOException e) {
+      throw new TapException("unable to read " + tap.getIdentifier(), e);
+    }
+  }
+
+  /**
+   * Reads the dataset into lists that spill to disk, a list per task, for every step reading it.
+   */
+  private Dataset keep(Dataset dataset) {
+    final List<SpillableTupleList> partitions = new ArrayList<SpillableTupleList>();
+    dataset.read(new Target() {
+      @Override public Output open(int slice, int slices) {
+        final SpillableTupleList partition = new SpillableTupleList(sortMemory, null, conf);
+        synchronized (partitions) {
+          partitions.add(partition);
+        }
+        return new Output() {
+          @Override public void receive(Tuple tuple) {
+            try {
+              partition.add(tuple);
+            } catch (IOException e) {
+              throw new IllegalStateException("can't spill kept tuples", e);
+            }
+          }
+
+          @Override public void close() {
+          }
+        };
+      }
+    });
+    return new Kept(dataset.fields, partitions);
+  }
+
+  /**
+   * Drops the pipe's dataset once every pipe reading it has.
+   */
+  private void release(Pipe pipe) {
+    pipe = resolve(pipe);
+    int left = unread.get(pipe) - 1;
+    unread.put(pipe, left);
+    if (left == 0) {
+      Dataset dataset = datasets.remove(pipe);
+      if (dataset != null) {
+        ((Kept) dataset).close();
+      }
+    }
+  }
+
+  @SuppressWarnings({"unchecked"})
+  void write(Pipe tail, Tap sink) {
+    Dataset dataset = evaluate(tail);
+    final Fields fields = dataset.fields;
+    FlowProcess flowProcess = executor.flowProcess(0, 1);
+    try {
+      if (sink.getSinkMode() == SinkMode.REPLACE) {
+        sink.deleteResource(executor.getProperties());
+      } else if (sink.getSinkMode() == SinkMode.KEEP
+          && sink.resourceExists(executor.getProperties())) {
+        throw new TapException("sink " + sink.getIdentifier() + " already exists");
+      }
+      sink.sinkConfInit(flowProcess, executor.getProperties());
+      final TupleEntryCollector collector = sink.openForWrite(flowProcess);
+      try {
+        dataset.read(new Target() {
+          @Override public Output open(int slice, int slices) {
+            return new Output() {
+              private final TupleEntry entry = new TupleEntry(fields);
+
+              @Override public void receive(Tuple tuple) {
+                synchronized (collector) {
+                  entry.setTuple(tuple);
+                  collector.add(entry);
+                }
+              }
+
+              @Override public void close() {
+              }
+            };
+          }
+        });
+      } finally {
+        collector.close();
+      }
+    } catch (IOException e) {
+      throw new TapException("unable to write " + sink.getIdentifier(), e);
+    }
+    release(tail);
+  }
+
+  /** Runs the tasks on the executor's threads, rethrowing the first failure. */
+  private <T> List<T> invokeAll(List<Callable<T>> tasks) {
+    List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+    for (Callable<T> task : tasks) {
+      futures.add(threads.submit(task));
+    }
+    return results(futures);
+  }
+
+  /** Waits for the tasks, cancelling the rest and rethrowing the first failure. */
+  private static <T> List<T> results(List<Future<T>> futures) {
+    List<T> results = new ArrayList<T>(futures.size());
+    try {
+      for (Future<T> future : futures) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      for (Future<T> future : futures) {
+        future.cancel(true);
+      }
+    }
+    return results;
+  }
+
+  /**
+   * A source tap, read on the calling thread and dealt out a batch at a time to a task per
+   * partition, which sends the tuples on while the rest are read.
+   */
+  private final class Source extends Dataset {
+    private final Tap tap;
+    private TupleEntryIterator iterator;
+    private Tuple first;
+
+    /**
+     * @param iterator the tap already opened, or null.
+     * @param first the tuple already read from it, or null.
+     */
+    Source(Tap tap, Fields fields, TupleEntryIterator iterator, Tuple first) {
+      super(fields);
+      this.tap = tap;
+      this.iterator = iterator;
+      this.first = first;
+    }
+
+    @Override void read(Target target) {
+      BlockingQueue<List<Tuple>> batches = new ArrayBlockingQueue<List<Tuple>>(2 * parallelism);
+      List<Future<Void>> tasks = new ArrayList<Future<Void>>(parallelism);
+      for (int i = 0; i < parallelism; i++) {
+        tasks.add(threads.submit(new Deal(batches, target, i)));
+      }
+      try {
+        deal(batches, tasks);
+      } catch (RuntimeException e) {
+        for (Future<Void> task : tasks) {
+          task.cancel(true);
+        }
+        throw e;
+      }
+      results(tasks);
+    }
+
+    private void deal(BlockingQueue<List<Tuple>> batches, List<Future<Void>> tasks) {
+      TupleEntryIterator iterator = this.iterator != null ? this.iterator : open(tap);
+      this.iterator = null;
+      try {
+        List<Tuple> batch = new ArrayList<Tuple>(BATCH_SIZE);
+        if (first != null) {
+          batch.add(first);
+          first = null;
+        }
+        while (iterator.hasNext()) {
+          batch.add(iterator.next().getTupleCopy());
+          if (batch.size() == BATCH_SIZE) {
+            put(batches, batch, tasks);
+            batch = new ArrayList<Tuple>(BATCH_SIZE);
+          }
+        }
+        if (!batch.isEmpty()) {
+          put(batches, batch, tasks);
+        }
+      } finally {
+        try {
+          iterator.close();
+        } catch (IOException e) {
+          throw new TapException("unable to read " + tap.getIdentifier(), e);
+        }
+      }
+      // an empty batch tells a task that there are no more
+      for (int i = 0; i < parallelism; i++) {
+        put(batches, Collections.<Tuple>emptyList(), tasks);
+      }
+    }
+
+    /** Waits for room for the batch, rethrowing the failure of any task that stopped early. */
+    private void put(BlockingQueue<List<Tuple>> batches, List<Tuple> batch,
+        List<Future<Void>> tasks) {
+      try {
+        while (!batches.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+          for (Future<Void> task : tasks) {
+            if (task.isDone()) {
+              results(Collections.singletonList(task));
+            }
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("interrupted", e);
+      }
+    }
+  }
+
+  /** Sends the batches a source deals out to one task's output. */
+  private final class Deal implements Callable<Void> {
+    private final BlockingQueue<List<Tuple>> batches;
+    private final Target target;
+    private final int slice;
+
+    Deal(BlockingQueue<List<Tuple>> batches, Target target, int slice) {
+      this.batches = batches;
+      this.target = target;
+      this.slice = slice;
+    }
+
+    @Override public Void call() throws IOException, InterruptedException {
+      Target.Output output = target.open(slice, parallelism);
+      for (List<Tuple> batch = batches.take(); !batch.isEmpty(); batch = batches.take()) {
+        for (Tuple tuple : batch) {
+          output.receive(tuple);
+        }
+      }
+      output.close();
+      return null;
+    }
+  }
+
+  /** A dataset read by several steps, kept in lists that spill to disk until they're done. */
+  private final class Kept extends Dataset {
+    private final List<SpillableTupleList> partitions;
+
+    Kept(Fields fields, List<SpillableTupleList> partitions) {
+      super(fields);
+      this.partitions = partitions;
+    }
+
+    @Override void read(final Target target) {
+      List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+      for (int i = 0; i < partitions.size(); i++) {
+        final int slice = i;
+        tasks.add(new Callable<Void>() {
+          @Override public Void call() throws IOException {
+            Target.Output output = target.open(slice, partitions.size());
+            for (Tuple tuple : partitions.get(slice)) {
+              output.receive(tuple);
+            }
+            output.close();
+            return null;
+          }
+        });
+      }
+      invokeAll(tasks);
+    }
+
+    void close() {
+      for (SpillableTupleList partition : partitions) {
+        try {
+          partition.close();
+        } catch (IOException e) {
+          // the run files are temporary anyway
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,487 @@
+package com.squareup.cascading_helpers.exec;
+
+import cascading.flow.FlowProcess;
+import cascading.pipe.Every;
+import cascading.pipe.Pipe;
+import cascading.pipe.Splice;
+import cascading.pipe.joiner.Joiner;
+import cascading.pipe.joiner.JoinerClosure;
+import cascading.tuple.Fields;
+import cascading.tuple.Hasher;
+import cascading.tuple.Tuple;
+import com.squareup.cascading_helpers.util.ExternalSorter;
+import com.squareup.cascading_helpers.util.SpillableTupleList;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * A GroupBy, CoGroup or HashJoin and the Every pipes following it, run the way a shuffle and its
+ * reducers run them: every input partition deals its tuples out to the output partitions by a
+ * hash of their keys, straight into each output partition's sorter, which spills to disk if it
+ * must; then every output partition streams what it was dealt through the Everys one group at a
+ * time. A join keeps every side of a group but the first in a list that spills to disk too.
+ */
+final class Grouping {
+  private static final int BATCH_SIZE = 1024;
+
+  private final int sides;
+  private final int[][] keyPositions;
+  private final int[][] sortPositions;
+  // records are the key, the side, the sort fields and then the values
+  private final int keyWidth;
+  private final int sortWidth;
+  private final int valueStart;
+  private final Comparator[] keyComparators;
+  private final Comparator[] sortComparators;
+  private final boolean reverseKeys;
+  private final boolean reverseSort;
+  private final Fields[] joinFields;
+  private final Fields[] sideFields;
+  private final Serialized<Joiner> joiner;
+  private final EveryChain everies;
+  private final Fields fields;
+  private final long sortMemory;
+  private final Configuration conf;
+
+  /**
+   * @param sideFields the fields of each of the splice's incoming pipes, in order.
+   * @param sortMemory how many bytes of tuples each output partition may sort, and each side of a
+   *     join may keep, in memory.
+   * @param conf the configuration whose serializations to spill tuples with.
+   */
+  Grouping(Splice splice, Fields[] sideFields, List<Every> everies, long sortMemory,
+      Configuration conf) {
+    this.sortMemory = sortMemory;
+    this.conf = conf;
+    Pipe[] previous = splice.getPrevious();
+    sides = previous.length;
+    this.sideFields = sideFields;
+    keyPositions = new int[sides][];
+    sortPositions = new int[sides][];
+    joinFields = new Fields[sides];
+    Fields keySelector = null;
+    Fields sortSelector = null;
+    for (int i = 0; i < sides; i++) {
+      keySelector = splice.getKeySelectors().get(previous[i].getName());
+      joinFields[i] = Selection.arguments(sideFields[i], keySelector);
+      keyPositions[i] = Selection.positions(sideFields[i], joinFields[i]);
+      if (splice.getSortingSelectors() != null
+          && splice.getSortingSelectors().get(previous[i].getName()) != null) {
+        sortSelector = splice.getSortingSelectors().get(previous[i].getName());
+        Fields sort = Selection.arguments(sideFields[i], sortSelector);
+        sortPositions[i] = Selection.positions(sideFields[i], sort);
+      }
+    }
+    keyWidth = keyPositions[0].length;
+    int sortWidth = 0;
+    for (int i = 0; i < sides; i++) {
+      if (keyPositions[i].length != keyWidth) {
+        throw new IllegalArgumentException("every side must have as many key fields");
+      }
+      if (sortPositions[i] != null) {
+        sortWidth = Math.max(sortWidth, sortPositions[i].length);
+      }
+    }
+    this.sortWidth = sortWidth;
+    valueStart = keyWidth + 1 + sortWidth;
+    keyComparators = comparators(keySelector);
+    sortComparators = comparators(sortSelector);
+    // with no sort fields, reversing the sort reverses the order of the groups
+    reverseKeys = splice.isSortReversed() && sortSelector == null;
+    reverseSort = splice.isSortReversed() && sortSelector != null;
+
+    Fields values;
+    if (splice.isGroupBy()) {
+      for (int i = 1; i < sides; i++) {
+        if (!sideFields[i].equals(sideFields[0])) {
+          throw new IllegalArgumentException("can't group " + sideFields[i] + " with "
+              + sideFields[0]);
+        }
+      }
+      joiner = null;
+      values = sideFields[0];
+    } else {
+      joiner = new Serialized<Joiner>(splice.getJoiner());
+      values = joinedFields(splice.getDeclaredFields(), sideFields);
+    }
+
+    if (everies.isEmpty()) {
+      this.everies = null;
+      fields = values;
+    } else {
+      this.everies = new EveryChain(everies, values, joinFields[0]);
+      fields = this.everies.getFields();
+    }
+  }
+
+  private static Comparator[] comparators(Fields selector) {
+    return selector != null && selector.hasComparators() ? selector.getComparators() : null;
+  }
+
+  private static Fields joinedFields(Fields declared, Fields[] sideFields) {
+    if (declared != null && declared.isDefined() && declared.size() > 0) {
+      return declared;
+    }
+    Fields joined = sideFields[0];
+    for (int i = 1; i < sideFields.length; i++) {
+      for (int j = 0; j < sideFields[i].size(); j++) {
+        if (Selection.indexOf(joined, sideFields[i].get(j)) >= 0) {
+          throw new IllegalArgumentException("field " + sideFields[i].get(j)
+              + " appears on both sides of a join without declared fields");
+        }
+      }
+      joined = joined.append(sideFields[i]);
+    }
+    return joined;
+  }
+
+  Fields getFields() {
+    return fields;
+  }
+
+  /**
+   * @return a sorter for each output partition, to {@link #scatter} into and {@link #reduce}.
+   */
+  ExternalSorter[] sorters(int partitions) {
+    ExternalSorter[] sorters = new ExternalSorter[partitions];
+    for (int i = 0; i < partitions; i++) {
+      sorters[i] = new ExternalSorter(order, sortMemory, null, conf);
+    }
+    return sorters;
+  }
+
+  /**
+   * @return a target dealing the tuples of the given side out to the output partitions' sorters
+   *     by the hash of their keys, as records of their key, side, sort fields and values. Every
+   *     task sending tuples to it deals them out at the same time.
+   */
+  Target scatter(final int side, final ExternalSorter[] sorters) {
+    return new Target() {
+      @Override public Output open(int slice, int slices) {
+        return new Scatter(side, sorters);
+      }
+    };
+  }
+
+  /** Adds records to a sorter a batch at a time, so that scatters seldom wait for each other. */
+  private static void deal(List<Tuple> batch, ExternalSorter sorter) throws IOException {
+    synchronized (sorter) {
+      for (Tuple record : batch) {
+        sorter.add(record);
+      }
+    }
+    batch.clear();
+  }
+
+  /**
+   * Hashes a key value the way its comparator compares it, as Cascading's partitioner does, so
+   * that values the comparator calls equal go to the same partition. A comparator that isn't a
+   * {@link Hasher} may call any two values equal, so its field can't choose the partition.
+   */
+  @SuppressWarnings({"unchecked"})
+  private int hash(int field, Object value) {
+    Comparator comparator = null;
+    if (keyComparators != null && field < keyComparators.length) {
+      comparator = keyComparators[field];
+    }
+    if (value == null) {
+      return 0;
+    } else if (comparator instanceof Hasher) {
+      return ((Hasher) comparator).hashCode(value);
+    } else if (comparator != null) {
+      return 0;
+    }
+    return value.hashCode();
+  }
+
+  /**
+   * Sorts the records dealt to one output partition, then streams them a group at a time through
+   * the joiner and the Everys.
+   */
+  void reduce(FlowProcess flowProcess, ExternalSorter sorter, Receiver output) throws IOException {
+    reduce(flowProcess, new Groups(sorter.sorted()), output);
+  }
+
+  private void reduce(FlowProcess flowProcess, Groups groups, Receiver output)
+      throws IOException {
+    Joiner joiner = this.joiner == null ? null : this.joiner.copy();
+    EveryChain.Instance instance = everies == null ? null : everies.start(flowProcess, output);
+    try {
+      while (groups.next()) {
+        Closure closure = null;
+        Iterator<Tuple> values;
+        if (joiner == null) {
+          values = new Values(groups);
+        } else {
+          closure = new Closure(flowProcess, groups);
+          values = join(joiner, closure);
+        }
+        try {
+          if (instance == null) {
+            while (values.hasNext()) {
+              output.receive(values.next());
+            }
+          } else {
+            instance.group(groups.key(), values);
+          }
+        } finally {
+          if (closure != null) {
+            closure.close();
+          }
+        }
+      }
+    } finally {
+      if (instance != null) {
+        instance.cleanup();
+      }
+    }
+  }
+
+  /** Joins the group's sides, copying the tuples the joiner hands out. */
+  private Iterator<Tuple> join(Joiner joiner, Closure closure) {
+    final Iterator<Tuple> joined = joiner.getIterator(closure);
+    return new Iterator<Tuple>() {
+      @Override public boolean hasNext() {
+        return joined.hasNext();
+      }
+
+      @Override public Tuple next() {
+        // joiners may hand out the same tuple every time
+        return Selection.copy(joined.next());
+      }
+
+      @Override public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  private Tuple value(Tuple record) {
+    Tuple value = Tuple.size(record.size() - valueStart);
+    for (int i = 0; i < value.size(); i++) {
+      value.set(i, record.getObject(valueStart + i));
+    }
+    return value;
+  }
+
+  /** Orders records by key, then by side, last side first, then by sort fields. */
+  private final Comparator<Tuple> order = new Comparator<Tuple>() {
+    @Override public int compare(Tuple a, Tuple b) {
+      int compared = Grouping.compare(keyComparators, a, b, 0, keyWidth);
+      if (compared != 0) {
+        return reverseKeys ? -compared : compared;
+      }
+      int sideA = (Integer) a.getObject(keyWidth);
+      int sideB = (Integer) b.getObject(keyWidth);
+      if (sideA != sideB) {
+        return sideA > sideB ? -1 : 1;
+      }
+      compared = Grouping.compare(sortComparators, a, b, keyWidth + 1, sortWidth);
+      return reverseSort ? -compared : compared;
+    }
+  };
+
+  /** Compares count values of two tuples from start, as {@link Tuple#compareTo} would. */
+  @SuppressWarnings({"unchecked"})
+  private static int compare(Comparator[] comparators, Tuple a, Tuple b, int start, int count) {
+    for (int i = 0; i < count; i++) {
+      Object x = a.getObject(start + i);
+      Object y = b.getObject(start + i);
+      int compared;
+      if (comparators != null && i < comparators.length && comparators[i] != null) {
+        compared = comparators[i].compare(x, y);
+      } else if (x == null || y == null) {
+        compared = x == y ? 0 : x == null ? -1 : 1;
+      } else {
+        compared = ((Comparable) x).compareTo(y);
+      }
+      if (compared != 0) {
+        return compared;
+      }
+    }
+    return 0;
+  }
+
+  /** Reads sorted records a group at a time. */
+  private class Groups {
+    private final Iterator<Tuple> sorted;
+    private Tuple first;
+    private Tuple next;
+
+    Groups(Iterator<Tuple> sorted) {
+      this.sorted = sorted;
+      next = sorted.hasNext() ? sorted.next() : null;
+    }
+
+    /**
+     * Skips whatever is left of the current group.
+     * @return whether there is another group.
+     */
+    boolean next() {
+      while (first != null && hasRecord()) {
+        record();
+      }
+      first = next;
+      return first != null;
+    }
+
+    Tuple key() {
+      Tuple key = Tuple.size(keyWidth);
+      for (int i = 0; i < keyWidth; i++) {
+        key.set(i, first.getObject(i));
+      }
+      return key;
+    }
+
+    boolean hasRecord() {
+      return next != null && compare(keyComparators, first, next, 0, keyWidth) == 0;
+    }
+
+    /**
+     * @return the side of the next record of the group.
+     */
+    int side() {
+      return (Integer) next.getObject(keyWidth);
+    }
+
+    Tuple record() {
+      if (!hasRecord()) {
+        throw new NoSuchElementException();
+      }
+      Tuple record = next;
+      next = sorted.hasNext() ? sorted.next() : null;
+      return record;
+    }
+  }
+
+  /** The values of the rest of the current group. */
+  private class Values implements Iterator<Tuple> {
+    private final Groups groups;
+
+    Values(Groups groups) {
+      this.groups = groups;
+    }
+
+    @Override public boolean hasNext() {
+      return groups.hasRecord();
+    }
+
+    @Override public Tuple next() {
+      return value(groups.record());
+    }
+
+    @Override public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /** Deals one task's tuples of a side out to the sorters. */
+  private class Scatter implements Target.Output {
+    private final int side;
+    private final int[] keys;
+    private final int[] sorts;
+    private final ExternalSorter[] sorters;
+    private final List<List<Tuple>> batches;
+
+    Scatter(int side, ExternalSorter[] sorters) {
+      this.side = side;
+      this.sorters = sorters;
+      keys = keyPositions[side];
+      sorts = sortPositions[side];
+      batches = new ArrayList<List<Tuple>>(sorters.length);
+      for (int i = 0; i < sorters.length; i++) {
+        batches.add(new ArrayList<Tuple>());
+      }
+    }
+
+    @Override public void receive(Tuple tuple) {
+      Tuple record = Tuple.size(valueStart + tuple.size());
+      int hash = 1;
+      for (int i = 0; i < keyWidth; i++) {
+        Object value = tuple.getObject(keys[i]);
+        record.set(i, value);
+        hash = 31 * hash + hash(i, value);
+      }
+      record.set(keyWidth, side);
+      for (int i = 0; sorts != null && i < sorts.length; i++) {
+        record.set(keyWidth + 1 + i, tuple.getObject(sorts[i]));
+      }
+      for (int i = 0; i < tuple.size(); i++) {
+        record.set(valueStart + i, tuple.getObject(i));
+      }
+      int partition = (hash & Integer.MAX_VALUE) % sorters.length;
+      List<Tuple> batch = batches.get(partition);
+      batch.add(record);
+      if (batch.size() == BATCH_SIZE) {
+        try {
+          deal(batch, sorters[partition]);
+        } catch (IOException e) {
+          throw new IllegalStateException("can't spill sorted run", e);
+        }
+      }
+    }
+
+    @Override public void close() throws IOException {
+      for (int i = 0; i < sorters.length; i++) {
+        deal(batches.get(i), sorters[i]);
+      }
+    }
+  }
+
+  /**
+   * Hands a group's tuples to a joiner, side by side. Keeps every side but the first, which
+   * arrives last and is streamed to the joiner, in lists that spill to disk, so that no side needs
+   * to fit in memory.
+   */
+  private class Closure extends JoinerClosure {
+    private final List<SpillableTupleList> bySide;
+    private final Groups groups;
+    private boolean streamed;
+
+    Closure(FlowProcess flowProcess, Groups groups) throws IOException {
+      super(flowProcess, Grouping.this.joinFields, Grouping.this.sideFields);
+      this.groups = groups;
+      bySide = new ArrayList<SpillableTupleList>(sides);
+      for (int i = 0; i < sides; i++) {
+        bySide.add(i == 0 ? null : new SpillableTupleList(sortMemory, null, conf));
+      }
+      while (groups.hasRecord() && groups.side() > 0) {
+        bySide.get(groups.side()).add(value(groups.record()));
+      }
+    }
+
+    @Override public int size() {
+      return sides;
+    }
+
+    @Override public Iterator<Tuple> getIterator(int pos) {
+      if (pos > 0) {
+        return bySide.get(pos).iterator();
+      }
+      if (streamed) {
+        throw new IllegalStateException("the first side of a join can only be read once");
+      }
+      streamed = true;
+      return new Values(groups);
+    }
+
+    @Override public boolean isEmpty(int pos) {
+      return pos > 0 ? bySide.get(pos).isEmpty() : streamed || !groups.hasRecord();
+    }
+
+    @Override public Tuple getGroupTuple(Tuple keysTuple) {
+      return keysTuple;
+    }
+
+    void close() throws IOException {
+      for (int i = 1; i < sides; i++) {
+        bySide.get(i).close();
+      }
+    }
+  }
+}
@@ -0,0 +1,162 @@
+package com.squareup.cascading_helpers.exec;
+
+import cascading.flow.FlowDef;
+import cascading.flow.FlowProcess;
+import cascading.pipe.Pipe;
+import cascading.tap.Tap;
+import com.squareup.cascading_helpers.pump.Pump;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs Pump assemblies in this JVM, a partition per core, for inputs too big to run through a
+ * local mode flow's single thread but too small to be worth a Hadoop job. Sources are read a batch
+ * at a time and dealt out to partitions; runs of Eaches go over every partition at once, and
+ * groupings deal their tuples out to partitions by key, as a shuffle would, then sort and reduce
+ * every partition at once. Every partition gets copies of the operations of its own, so operations
+ * need not be thread safe, and counters add up across partitions.
+ *
+ * <p>Sources and sinks have to be local mode taps, and traps aren't supported. Tuples stream from
+ * the sources through the Eaches straight into the groupings' sorters and the sinks, so neither
+ * the inputs nor the results between steps need to fit in memory. Groupings sort with an external
+ * merge sort that spills to disk past {@link #sortMemory(long)}. Joins keep every side of a group
+ * but the first, and steps keep results that several steps read, in lists that spill the same
+ * way. So groups, too, may be larger than the heap.
+ */
+public class InMemoryExecutor {
+  private final int parallelism;
+  private long sortMemory;
+  private final Map<String, Tap> sources = new HashMap<String, Tap>();
+  private final Properties properties = new Properties();
+  private final ConcurrentMap<String, AtomicLong> counters =
+      new ConcurrentHashMap<String, AtomicLong>();
+
+  /**
+   * An executor running as many partitions at once as there are cores.
+   */
+  public InMemoryExecutor() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  public InMemoryExecutor(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be at least 1");
+    }
+    this.parallelism = parallelism;
+    this.sortMemory = Runtime.getRuntime().maxMemory() / (4 * parallelism);
+  }
+
+  /**
+   * Read the tap for pumps starting with {@link Pump#prime(String)} of the given name.
+   */
+  public InMemoryExecutor source(String name, Tap tap) {
+    sources.put(name, tap);
+    return this;
+  }
+
+  /**
+   * Properties for the flow process the operations see, which also choose the Hadoop
+   * serializations that groupings spill tuples with.
+   */
+  public InMemoryExecutor properties(Map<Object, Object> properties) {
+    this.properties.putAll(properties);
+    return this;
+  }
+
+  /**
+   * How many bytes of tuples each partition may sort, and each side of a join or partition of a
+   * kept result may hold, in memory before spilling them to disk. By default, partitions share a
+   * quarter of the heap.
+   */
+  public InMemoryExecutor sortMemory(long bytes) {
+    if (bytes < 1) {
+      throw new IllegalArgumentException("sort memory must be positive");
+    }
+    this.sortMemory = bytes;
+    return this;
+  }
+
+  /**
+   * Run the pump and write what comes out of it to the sink.
+   */
+  public void run(Pump pump, Tap sink) {
+    Pipe tail = pump.toPipe();
+    run(Collections.singletonList(tail), Collections.<String, Tap>emptyMap(),
+        Collections.singletonMap(tail.getName(), sink));
+  }
+
+  /**
+   * Run the tails of the flow def, reading its sources and those given to {@link #source} and
+   * writing to its sinks.
+   */
+  public void run(FlowDef flowDef) {
+    if (!flowDef.getTraps().isEmpty()) {
+      throw new IllegalArgumentException("traps aren't supported");
+    }
+    run(flowDef.getTails(), flowDef.getSources(), flowDef.getSinks());
+  }
+
+  private void run(List<Pipe> tails, Map<String, Tap> flowSources, Map<String, Tap> sinks) {
+    counters.clear();
+    Map<String, Tap> sources = new HashMap<String, Tap>(this.sources);
+    sources.putAll(flowSources);
+    ExecutorService threads = Executors.newFixedThreadPool(parallelism);
+    try {
+      Execution execution = new Execution(this, sources, tails, threads, parallelism, sortMemory);
+      for (Pipe tail : tails) {
+        Tap sink = sinks.get(tail.getName());
+        if (sink == null) {
+          throw new IllegalArgumentException("no sink tap for " + tail.getName());
+        }
+        execution.write(tail, sink);
+      }
+    } finally {
+      threads.shutdownNow();
+    }
+  }
+
+  /**
+   * @return the value of the counter in the last run.
+   */
+  public long getCounterValue(String group, String counter) {
+    AtomicLong value = counters.get(counterKey(group, counter));
+    return value == null ? 0 : value.get();
+  }
+
+  public long getCounterValue(Enum counter) {
+    return getCounterValue(counter.getDeclaringClass().getName(), counter.name());
+  }
+
+  void increment(String group, String counter, long amount) {
+    String key = counterKey(group, counter);
+    AtomicLong value = counters.get(key);
+    if (value == null) {
+      AtomicLong added = new AtomicLong();
+      value = counters.putIfAbsent(key, added);
+      if (value == null) {
+        value = added;
+      }
+    }
+    value.addAndGet(amount);
+  }
+
+  private static String counterKey(String group, String counter) {
+    return group + "\t" + counter;
+  }
+
+  FlowProcess flowProcess(int slice, int slices) {
+    return new PartitionFlowProcess(this, properties, slice, slices);
+  }
+
+  Properties getProperties() {
+    return properties;
+  }
+}
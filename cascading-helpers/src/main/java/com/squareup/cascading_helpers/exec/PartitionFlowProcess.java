@@ -0,0 +1,37 @@
+package com.squareup.cascading_helpers.exec;
+
+import cascading.flow.local.LocalFlowProcess;
+import java.util.Properties;
+
+/**
+ * The flow process operations see while running a partition: a slice of its own, and counters
+ * that add up across all the partitions.
+ */
+class PartitionFlowProcess extends LocalFlowProcess {
+  private final InMemoryExecutor executor;
+  private final int slice;
+  private final int slices;
+
+  PartitionFlowProcess(InMemoryExecutor executor, Properties properties, int slice, int slices) {
+    super(properties);
+    this.executor = executor;
+    this.slice = slice;
+    this.slices = slices;
+  }
+
+  @Override public void increment(Enum counter, long amount) {
+    executor.increment(counter.getDeclaringClass().getName(), counter.name(), amount);
+  }
+
+  @Override public void increment(String group, String counter, long amount) {
+    executor.increment(group, counter, amount);
+  }
+
+  @Override public int getNumProcessSlices() {
+    return slices;
+  }
+
+  @Override public int getCurrentSliceNum() {
+    return slice;
+  }
+}
@@ -0,0 +1,11 @@
+package com.squareup.cascading_helpers.exec;
+
+import cascading.tuple.Tuple;
+
+/** The next step of a partition's work, or the list collecting its output. */
+interface Receiver {
+  /**
+   * @param tuple a tuple the receiver may keep; it won't be changed afterwards.
+   */
+  void receive(Tuple tuple);
+}
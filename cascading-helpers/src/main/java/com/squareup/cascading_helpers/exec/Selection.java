@@ -0,0 +1,197 @@
+package com.squareup.cascading_helpers.exec;
+
+import cascading.operation.Operation;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resolves argument and output selectors against known fields the way Cascading's planner does,
+ * so that operations run by the {@link InMemoryExecutor} see the same fields they would in a flow.
+ */
+final class Selection {
+  private final Fields fields;
+  // where each selected value comes from: i for incoming value i, -(j + 1) for result value j
+  private final int[] sources;
+
+  private Selection(Fields fields, int[] sources) {
+    this.fields = fields;
+    this.sources = sources;
+  }
+
+  Fields getFields() {
+    return fields;
+  }
+
+  /**
+   * @return a new tuple of the selected values; incoming may be null, for nulls.
+   */
+  Tuple select(Tuple incoming, Tuple results) {
+    Tuple tuple = Tuple.size(sources.length);
+    for (int i = 0; i < sources.length; i++) {
+      int source = sources[i];
+      if (source >= 0) {
+        tuple.set(i, incoming == null ? null : incoming.getObject(source));
+      } else {
+        tuple.set(i, results.getObject(-source - 1));
+      }
+    }
+    return tuple;
+  }
+
+  static Fields arguments(Fields incoming, Fields selector) {
+    if (selector.isAll()) {
+      return incoming;
+    }
+    if (selector.isNone()) {
+      return Fields.NONE;
+    }
+    return incoming.select(selector);
+  }
+
+  /**
+   * Like {@link #arguments}, but also resolves {@link Fields#GROUP} and {@link Fields#VALUES}, as
+   * the argument selector of an Every may.
+   */
+  static Fields arguments(Fields incoming, Fields group, Fields selector) {
+    if (selector.isGroup()) {
+      return group;
+    }
+    if (selector.isValues()) {
+      List<Comparable> names = new ArrayList<Comparable>();
+      for (int i = 0; i < incoming.size(); i++) {
+        if (indexOf(group, incoming.get(i)) < 0) {
+          names.add(incoming.get(i));
+        }
+      }
+      return toFields(names);
+    }
+    return arguments(incoming, selector);
+  }
+
+  static int[] positions(Fields incoming, Fields selected) {
+    if (selected.size() == 0) {
+      return new int[0];
+    }
+    return incoming.getPos(selected);
+  }
+
+  /**
+   * @return the fields the operation declares, given its arguments.
+   */
+  static Fields declared(Operation operation, Fields arguments) {
+    Fields declared = operation.getFieldDeclaration();
+    if (declared.isArguments()) {
+      return arguments;
+    }
+    if (declared.isNone()) {
+      return Fields.NONE;
+    }
+    if (!declared.isDefined()) {
+      throw new IllegalArgumentException(operation + " doesn't declare its fields by name");
+    }
+    return declared;
+  }
+
+  /**
+   * @return the outgoing fields of an operation with the given output selector.
+   */
+  static Selection outgoing(Fields incoming, Fields arguments, Fields declared, Fields selector) {
+    List<Comparable> names = new ArrayList<Comparable>();
+    List<Integer> sources = new ArrayList<Integer>();
+    if (selector.isAll()) {
+      addAll(incoming, names, sources, false);
+      addAll(declared, names, sources, true);
+    } else if (selector.isResults()) {
+      addAll(declared, names, sources, true);
+    } else if (selector.isReplace()) {
+      if (declared.size() != arguments.size()) {
+        throw new IllegalArgumentException("replacing " + arguments
+            + " needs as many results, not " + declared);
+      }
+      for (int i = 0; i < incoming.size(); i++) {
+        int argument = indexOf(arguments, incoming.get(i));
+        names.add(argument < 0 ? incoming.get(i) : declared.get(argument));
+        sources.add(argument < 0 ? i : -argument - 1);
+      }
+    } else if (selector.isSwap()) {
+      for (int i = 0; i < incoming.size(); i++) {
+        if (indexOf(arguments, incoming.get(i)) < 0) {
+          names.add(incoming.get(i));
+          sources.add(i);
+        }
+      }
+      addAll(declared, names, sources, true);
+    } else {
+      int size = incoming.size() + declared.size();
+      for (int i = 0; i < selector.size(); i++) {
+        Comparable field = selector.get(i);
+        int source = -declared.size() - 1;
+        if (field instanceof Integer) {
+          int pos = (Integer) field < 0 ? size + (Integer) field : (Integer) field;
+          if (pos >= 0 && pos < size) {
+            source = pos < incoming.size() ? pos : incoming.size() - pos - 1;
+          }
+        } else if (indexOf(declared, field) >= 0) {
+          source = -indexOf(declared, field) - 1;
+        } else if (indexOf(incoming, field) >= 0) {
+          source = indexOf(incoming, field);
+        }
+        if (source < -declared.size()) {
+          throw new IllegalArgumentException("no field " + field + " in " + incoming + " or "
+              + declared);
+        }
+        names.add(source >= 0 ? incoming.get(source) : declared.get(-source - 1));
+        sources.add(source);
+      }
+    }
+
+    for (int i = 0; i < names.size(); i++) {
+      if (names.indexOf(names.get(i)) != i) {
+        throw new IllegalArgumentException("field " + names.get(i) + " would appear twice in "
+            + names);
+      }
+    }
+    int[] array = new int[sources.size()];
+    for (int i = 0; i < array.length; i++) {
+      array[i] = sources.get(i);
+    }
+    return new Selection(toFields(names), array);
+  }
+
+  private static void addAll(Fields fields, List<Comparable> names, List<Integer> sources,
+      boolean results) {
+    for (int i = 0; i < fields.size(); i++) {
+      names.add(fields.get(i));
+      sources.add(results ? -i - 1 : i);
+    }
+  }
+
+  /**
+   * @return a copy of the tuple's values, for tuples an operation or joiner may reuse.
+   */
+  static Tuple copy(Tuple tuple) {
+    Tuple copy = Tuple.size(tuple.size());
+    for (int i = 0; i < tuple.size(); i++) {
+      copy.set(i, tuple.getObject(i));
+    }
+    return copy;
+  }
+
+  static int indexOf(Fields fields, Comparable field) {
+    for (int i = 0; i < fields.size(); i++) {
+      if (fields.get(i).equals(field)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static Fields toFields(List<Comparable> names) {
+    if (names.isEmpty()) {
+      return Fields.NONE;
+    }
+    return new Fields(names.toArray(new Comparable[names.size()]));
+  }
+}
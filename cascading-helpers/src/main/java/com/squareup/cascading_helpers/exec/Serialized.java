@@ -0,0 +1,38 @@
+package com.squareup.cascading_helpers.exec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * An object kept in serialized form, so that every partition can have a copy of its own, just as
+ * every task of a flow deserializes one of its own.
+ */
+final class Serialized<T> {
+  private final byte[] bytes;
+
+  Serialized(T object) {
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      ObjectOutputStream objects = new ObjectOutputStream(out);
+      objects.writeObject(object);
+      objects.close();
+      bytes = out.toByteArray();
+    } catch (IOException e) {
+      throw new IllegalArgumentException(object + " can't be serialized", e);
+    }
+  }
+
+  @SuppressWarnings({"unchecked"})
+  T copy() {
+    try {
+      return (T) new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    } catch (ClassNotFoundException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
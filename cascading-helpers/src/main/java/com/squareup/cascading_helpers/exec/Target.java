@@ -0,0 +1,20 @@
+package com.squareup.cascading_helpers.exec;
+
+import java.io.IOException;
+
+/**
+ * Where a dataset's tasks send their tuples as they make them: the next step's operations, a
+ * grouping's sorters, a list kept for several steps or a sink.
+ */
+interface Target {
+  /**
+   * @return where one of the tasks should send its tuples. Only that task uses it.
+   */
+  Output open(int slice, int slices) throws IOException;
+
+  /** One task's way into the target. */
+  interface Output extends Receiver {
+    /** Called after the task's last tuple. */
+    void close() throws IOException;
+  }
+}
@@ -0,0 +1,28 @@
+package com.squareup.cascading_helpers.filter;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.Filter;
+import cascading.operation.FilterCall;
+import cascading.tuple.Tuple;
+import com.squareup.cascading_helpers.util.BloomFilter;
+import com.squareup.cascading_helpers.util.TupleHasher;
+
+/**
+ * Remove tuples whose keys are definitely not in a {@link BloomFilter}. The arguments are the key
+ * fields followed by the field holding the filter, as built by
+ * {@link com.squareup.cascading_helpers.aggregate.BloomFilterBy} over the same key types.
+ */
+public class BloomFilterMatch extends BaseOperation implements Filter {
+  private transient TupleHasher hasher;
+
+  @Override public boolean isRemove(FlowProcess flowProcess, FilterCall filterCall) {
+    if (hasher == null) {
+      hasher = new TupleHasher();
+    }
+    Tuple arguments = filterCall.getArguments().getTuple();
+    int numKeys = arguments.size() - 1;
+    BloomFilter bloomFilter = (BloomFilter) arguments.getObject(numKeys);
+    return !bloomFilter.mightContain(hasher.hash(arguments, 0, numKeys));
+  }
+}
@@ -4,30 +4,78 @@ import cascading.flow.FlowProcess;
 import cascading.operation.BaseOperation;
 import cascading.operation.Filter;
 import cascading.operation.FilterCall;
+import cascading.operation.OperationCall;
 import cascading.tuple.Fields;
-import java.util.Arrays;
-import java.util.List;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
 
 /**
- * Fail the job if any of the specified fields are null in the stream
+ * Fail the job if any of the specified fields are null in the stream, or, in count and drop mode,
+ * remove the tuple and count each of its null fields under {@link #COUNTER_GROUP} instead, so that
+ * a few bad records don't cost the whole job.
  */
 public class FailOnNull extends BaseOperation implements Filter {
+  public static final String COUNTER_GROUP = "Null Fields";
+
   private final String errorText;
-  private final List<String> fields;
+  private final String[] fields;
+  private final boolean countAndDrop;
+
+  private transient int[] positions;
+  private transient Fields resolvedFields;
 
   public FailOnNull(String errorText, String[] args) {
+    this(errorText, args, false);
+  }
+
+  /**
+   * @param countAndDrop whether to remove and count tuples with null fields instead of failing.
+   */
+  public FailOnNull(String errorText, String[] args, boolean countAndDrop) {
     if (errorText == null) {
       errorText = "Expected no null tuples, but found one!";
     }
-    this.fields = Arrays.asList(args);
+    this.fields = args.clone();
     this.errorText = errorText;
+    this.countAndDrop = countAndDrop;
+  }
+
+  @Override public void prepare(FlowProcess flowProcess, OperationCall operationCall) {
+    // the argument fields may not be known yet, in which case the first tuple tells us
+    if (operationCall != null && operationCall.getArgumentFields() != null) {
+      resolve(operationCall.getArgumentFields());
+    }
+  }
+
+  private void resolve(Fields argumentFields) {
+    positions = new int[fields.length];
+    for (int i = 0; i < fields.length; i++) {
+      positions[i] = Predicate.resolve(argumentFields, fields[i]);
+    }
+    resolvedFields = argumentFields;
   }
 
   @Override public boolean isRemove(FlowProcess flowProcess, FilterCall filterCall) {
-    for (String field : this.fields) {
-      if (filterCall.getArguments().getObject(field) == null)
-        throw new NullPointerException(errorText);
+    TupleEntry arguments = filterCall.getArguments();
+    Fields argumentFields = arguments.getFields();
+    if (argumentFields != resolvedFields) {
+      if (positions == null || !argumentFields.equals(resolvedFields)) {
+        resolve(argumentFields);
+      }
+      // equal but not the same, so only compare them once
+      resolvedFields = argumentFields;
+    }
+    Tuple tuple = arguments.getTuple();
+    boolean remove = false;
+    for (int i = 0; i < positions.length; i++) {
+      if (tuple.getObject(positions[i]) == null) {
+        if (!countAndDrop) {
+          throw new NullPointerException(errorText);
+        }
+        flowProcess.increment(COUNTER_GROUP, fields[i], 1);
+        remove = true;
+      }
     }
-    return false;
+    return remove;
   }
 }
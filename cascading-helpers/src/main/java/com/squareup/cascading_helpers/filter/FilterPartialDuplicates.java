@@ -0,0 +1,49 @@
+package com.squareup.cascading_helpers.filter;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.Filter;
+import cascading.operation.FilterCall;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remove arguments seen recently by this task. The most recently seen distinct arguments are kept
+ * in an LRU cache, so duplicates that are close together are removed before they're shuffled,
+ * while a duplicate that has fallen out of the cache is passed on to be removed later. Use it in
+ * front of a real dedup such as {@link cascading.pipe.assembly.Unique}.
+ */
+public class FilterPartialDuplicates extends BaseOperation implements Filter {
+  private final int capacity;
+
+  private transient Map<Tuple, Boolean> seen;
+
+  /**
+   * @param capacity how many distinct arguments to remember.
+   */
+  public FilterPartialDuplicates(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be positive");
+    }
+    this.capacity = capacity;
+  }
+
+  @Override public boolean isRemove(FlowProcess flowProcess, FilterCall filterCall) {
+    if (seen == null) {
+      seen = new LinkedHashMap<Tuple, Boolean>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<Tuple, Boolean> eldest) {
+          return size() > capacity;
+        }
+      };
+    }
+    TupleEntry arguments = filterCall.getArguments();
+    if (seen.get(arguments.getTuple()) != null) {
+      return true;
+    }
+    // the arguments' tuple is reused for the next call, so remember a copy
+    seen.put(arguments.getTupleCopy(), Boolean.TRUE);
+    return false;
+  }
+}
@@ -0,0 +1,50 @@
+package com.squareup.cascading_helpers.filter;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.Filter;
+import cascading.operation.FilterCall;
+import cascading.tuple.Tuple;
+import com.squareup.cascading_helpers.util.Hashing;
+import com.squareup.cascading_helpers.util.TupleHasher;
+
+/**
+ * Keep a fraction of the tuples, chosen by a hash of their arguments rather than at random, so
+ * that every run with the same seed keeps the same tuples, and tuples with the same arguments are
+ * kept or dropped together. Sampling two sides of a join on their join keys with the same seed
+ * therefore keeps the matching tuples on both sides.
+ */
+public class HashSample extends BaseOperation implements Filter {
+  private final double fraction;
+  private final long seed;
+
+  private transient TupleHasher hasher;
+
+  /**
+   * @param fraction how much to keep, between 0 and 1.
+   */
+  public HashSample(double fraction, long seed) {
+    if (fraction < 0 || fraction > 1) {
+      throw new IllegalArgumentException("fraction must be between 0 and 1, not " + fraction);
+    }
+    this.fraction = fraction;
+    this.seed = seed;
+  }
+
+  /**
+   * @return whether a tuple with the given {@link TupleHasher} hash is in the sample.
+   */
+  public static boolean isSampled(long hash, double fraction, long seed) {
+    // the top 53 bits of the mixed hash, as a uniform double in [0, 1)
+    double position = (Hashing.mix(hash ^ seed) >>> 11) * 0x1.0p-53;
+    return position < fraction;
+  }
+
+  @Override public boolean isRemove(FlowProcess flowProcess, FilterCall filterCall) {
+    if (hasher == null) {
+      hasher = new TupleHasher();
+    }
+    Tuple arguments = filterCall.getArguments().getTuple();
+    return !isSampled(hasher.hash(arguments), fraction, seed);
+  }
+}
@@ -0,0 +1,357 @@
+package com.squareup.cascading_helpers.filter;
+
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A condition on the fields of a tuple, for {@link PredicateFilter}. Predicates are built from the
+ * static methods here and combined with {@link #and}, {@link #or} and {@link #not}; a
+ * PredicateFilter compiles them once per task, resolving every field name to its position, into a
+ * tree of comparisons specialized for the type of the constant they compare against.
+ *
+ * Equality against an integral constant (Byte, Short, Integer or Long) matches any integral field
+ * value equal to it as a long, and equality against a Float or Double constant matches any
+ * floating point field value equal to it as a double, so the field's boxed type doesn't matter.
+ * Ranges accept any Number. Null field values match {@link #isNull}, and {@link #in} when null is
+ * one of the values.
+ */
+public abstract class Predicate implements Serializable {
+  Predicate() {}
+
+  /**
+   * @return a matcher for tuples with the given fields.
+   */
+  abstract Matcher compile(Fields fields);
+
+  /**
+   * Add the names of the fields this predicate reads to names.
+   */
+  abstract void addFieldNames(Set<String> names);
+
+  public static Predicate isNull(String field) {
+    return new IsNull(field, true);
+  }
+
+  public static Predicate notNull(String field) {
+    return new IsNull(field, false);
+  }
+
+  public static Predicate equalTo(String field, Object value) {
+    if (value == null) {
+      return isNull(field);
+    }
+    return new In(field, new Object[] {value});
+  }
+
+  /**
+   * Match tuples whose field equals any of the values.
+   */
+  public static Predicate in(String field, Object... values) {
+    return new In(field, values.clone());
+  }
+
+  /**
+   * Match tuples whose field is a number between min and max, inclusive.
+   */
+  public static Predicate between(String field, long min, long max) {
+    return new Between(field, min, max);
+  }
+
+  /**
+   * Match tuples whose field is a number between min and max, inclusive.
+   */
+  public static Predicate between(String field, double min, double max) {
+    return new Between(field, min, max);
+  }
+
+  public static Predicate and(Predicate... predicates) {
+    return new Combination(predicates.clone(), true);
+  }
+
+  public static Predicate or(Predicate... predicates) {
+    return new Combination(predicates.clone(), false);
+  }
+
+  public static Predicate not(Predicate predicate) {
+    return new Not(predicate);
+  }
+
+  static boolean isIntegral(Object value) {
+    return value instanceof Long || value instanceof Integer || value instanceof Short
+        || value instanceof Byte;
+  }
+
+  static boolean isFloating(Object value) {
+    return value instanceof Double || value instanceof Float;
+  }
+
+  /**
+   * @return value as a Long or Double if it is a number of either kind, so equal numbers of
+   * different types become equal objects.
+   */
+  static Object normalize(Object value) {
+    if (isIntegral(value) && !(value instanceof Long)) {
+      return ((Number) value).longValue();
+    }
+    if (value instanceof Float) {
+      return ((Number) value).doubleValue();
+    }
+    return value;
+  }
+
+  static int resolve(Fields fields, String field) {
+    int pos = fields.getPos(field);
+    if (pos < 0) {
+      throw new IllegalArgumentException("no field " + field + " in " + fields);
+    }
+    return pos;
+  }
+
+  /** A predicate compiled against known fields. */
+  abstract static class Matcher {
+    abstract boolean matches(Tuple tuple);
+  }
+
+  private abstract static class FieldPredicate extends Predicate {
+    final String field;
+
+    FieldPredicate(String field) {
+      this.field = field;
+    }
+
+    @Override void addFieldNames(Set<String> names) {
+      names.add(field);
+    }
+  }
+
+  private static class IsNull extends FieldPredicate {
+    private final boolean isNull;
+
+    IsNull(String field, boolean isNull) {
+      super(field);
+      this.isNull = isNull;
+    }
+
+    @Override Matcher compile(Fields fields) {
+      final int pos = resolve(fields, field);
+      if (isNull) {
+        return new Matcher() {
+          @Override boolean matches(Tuple tuple) {
+            return tuple.getObject(pos) == null;
+          }
+        };
+      }
+      return new Matcher() {
+        @Override boolean matches(Tuple tuple) {
+          return tuple.getObject(pos) != null;
+        }
+      };
+    }
+  }
+
+  private static class In extends FieldPredicate {
+    private final Object[] values;
+
+    In(String field, Object[] values) {
+      super(field);
+      this.values = values;
+    }
+
+    @Override Matcher compile(Fields fields) {
+      final int pos = resolve(fields, field);
+      int integral = 0;
+      int floating = 0;
+      for (Object value : values) {
+        if (isIntegral(value)) {
+          integral++;
+        } else if (isFloating(value)) {
+          floating++;
+        }
+      }
+
+      if (values.length == 1) {
+        final Object expected = values[0];
+        if (integral == 1) {
+          final long expectedLong = ((Number) expected).longValue();
+          return new Matcher() {
+            @Override boolean matches(Tuple tuple) {
+              Object value = tuple.getObject(pos);
+              return isIntegral(value) && ((Number) value).longValue() == expectedLong;
+            }
+          };
+        } else if (floating == 1) {
+          final double expectedDouble = ((Number) expected).doubleValue();
+          return new Matcher() {
+            @Override boolean matches(Tuple tuple) {
+              Object value = tuple.getObject(pos);
+              return isFloating(value) && ((Number) value).doubleValue() == expectedDouble;
+            }
+          };
+        } else if (expected != null) {
+          return new Matcher() {
+            @Override boolean matches(Tuple tuple) {
+              return expected.equals(tuple.getObject(pos));
+            }
+          };
+        }
+      }
+
+      if (integral == values.length) {
+        final long[] sorted = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+          sorted[i] = ((Number) values[i]).longValue();
+        }
+        Arrays.sort(sorted);
+        return new Matcher() {
+          @Override boolean matches(Tuple tuple) {
+            Object value = tuple.getObject(pos);
+            return isIntegral(value)
+                && Arrays.binarySearch(sorted, ((Number) value).longValue()) >= 0;
+          }
+        };
+      }
+
+      final Set<Object> set = new HashSet<Object>();
+      final boolean hasNull = Arrays.asList(values).contains(null);
+      for (Object value : values) {
+        if (value != null) {
+          set.add(normalize(value));
+        }
+      }
+      return new Matcher() {
+        @Override boolean matches(Tuple tuple) {
+          Object value = tuple.getObject(pos);
+          if (value == null) {
+            return hasNull;
+          }
+          return set.contains(normalize(value));
+        }
+      };
+    }
+  }
+
+  private static class Between extends FieldPredicate {
+    private final double min;
+    private final double max;
+    private final long minLong;
+    private final long maxLong;
+    private final boolean integral;
+
+    Between(String field, long min, long max) {
+      super(field);
+      this.minLong = min;
+      this.maxLong = max;
+      this.min = min;
+      this.max = max;
+      this.integral = true;
+    }
+
+    Between(String field, double min, double max) {
+      super(field);
+      this.minLong = 0;
+      this.maxLong = 0;
+      this.min = min;
+      this.max = max;
+      this.integral = false;
+    }
+
+    @Override Matcher compile(Fields fields) {
+      final int pos = resolve(fields, field);
+      if (integral) {
+        return new Matcher() {
+          @Override boolean matches(Tuple tuple) {
+            Object value = tuple.getObject(pos);
+            if (isIntegral(value)) {
+              long longValue = ((Number) value).longValue();
+              return longValue >= minLong && longValue <= maxLong;
+            }
+            return value instanceof Number && inRange(((Number) value).doubleValue());
+          }
+        };
+      }
+      return new Matcher() {
+        @Override boolean matches(Tuple tuple) {
+          Object value = tuple.getObject(pos);
+          return value instanceof Number && inRange(((Number) value).doubleValue());
+        }
+      };
+    }
+
+    private boolean inRange(double value) {
+      return value >= min && value <= max;
+    }
+  }
+
+  private static class Combination extends Predicate {
+    private final Predicate[] predicates;
+    private final boolean and;
+
+    Combination(Predicate[] predicates, boolean and) {
+      this.predicates = predicates;
+      this.and = and;
+    }
+
+    @Override void addFieldNames(Set<String> names) {
+      for (Predicate predicate : predicates) {
+        predicate.addFieldNames(names);
+      }
+    }
+
+    @Override Matcher compile(Fields fields) {
+      if (predicates.length == 1) {
+        return predicates[0].compile(fields);
+      }
+      final Matcher[] matchers = new Matcher[predicates.length];
+      for (int i = 0; i < predicates.length; i++) {
+        matchers[i] = predicates[i].compile(fields);
+      }
+      if (and) {
+        return new Matcher() {
+          @Override boolean matches(Tuple tuple) {
+            for (Matcher matcher : matchers) {
+              if (!matcher.matches(tuple)) {
+                return false;
+              }
+            }
+            return true;
+          }
+        };
+      }
+      return new Matcher() {
+        @Override boolean matches(Tuple tuple) {
+          for (Matcher matcher : matchers) {
+            if (matcher.matches(tuple)) {
+              return true;
+            }
+          }
+          return false;
+        }
+      };
+    }
+  }
+
+  private static class Not extends Predicate {
+    private final Predicate predicate;
+
+    Not(Predicate predicate) {
+      this.predicate = predicate;
+    }
+
+    @Override void addFieldNames(Set<String> names) {
+      predicate.addFieldNames(names);
+    }
+
+    @Override Matcher compile(Fields fields) {
+      final Matcher matcher = predicate.compile(fields);
+      return new Matcher() {
+        @Override boolean matches(Tuple tuple) {
+          return !matcher.matches(tuple);
+        }
+      };
+    }
+  }
+}
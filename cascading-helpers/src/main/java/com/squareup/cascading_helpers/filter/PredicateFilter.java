@@ -0,0 +1,60 @@
+package com.squareup.cascading_helpers.filter;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.Filter;
+import cascading.operation.FilterCall;
+import cascading.operation.OperationCall;
+import cascading.tuple.Fields;
+import cascading.tuple.TupleEntry;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Remove tuples that match a {@link Predicate}. However many conditions the predicate has, they
+ * run as one filter, with field names resolved to positions once, when the filter is prepared.
+ */
+public class PredicateFilter extends BaseOperation implements Filter {
+  private final Predicate predicate;
+
+  private transient Predicate.Matcher matcher;
+  private transient Fields matcherFields;
+
+  public PredicateFilter(Predicate predicate) {
+    this.predicate = predicate;
+  }
+
+  /**
+   * @return the names of the fields the predicate reads, to use as the argument selector.
+   */
+  public String[] getFieldNames() {
+    Set<String> names = new LinkedHashSet<String>();
+    predicate.addFieldNames(names);
+    return names.toArray(new String[names.size()]);
+  }
+
+  @Override public void prepare(FlowProcess flowProcess, OperationCall operationCall) {
+    // the argument fields may not be known yet, in which case the first tuple tells us
+    if (operationCall != null && operationCall.getArgumentFields() != null) {
+      compile(operationCall.getArgumentFields());
+    }
+  }
+
+  private void compile(Fields fields) {
+    matcher = predicate.compile(fields);
+    matcherFields = fields;
+  }
+
+  @Override public boolean isRemove(FlowProcess flowProcess, FilterCall filterCall) {
+    TupleEntry arguments = filterCall.getArguments();
+    Fields fields = arguments.getFields();
+    if (fields != matcherFields) {
+      if (matcher == null || !fields.equals(matcherFields)) {
+        compile(fields);
+      }
+      // equal but not the same, so only compare them once
+      matcherFields = fields;
+    }
+    return matcher.matches(arguments.getTuple());
+  }
+}
@@ -3,21 +3,67 @@ package com.squareup.cascading_helpers.filter;
 import cascading.flow.FlowProcess;
 import cascading.operation.Filter;
 import cascading.operation.FilterCall;
+import cascading.operation.OperationCall;
+import com.squareup.cascading_helpers.operation.CallSite;
+import com.squareup.cascading_helpers.operation.OperationCounters;
 import com.squareup.cascading_helpers.operation.WrapperOperation;
 
 public class StacktraceWrapperFilter extends WrapperOperation<Filter> implements Filter {
-  private final String instantiationStackTrace;
+  private final CallSite callSite;
+  private final OperationCounters counters;
 
   public StacktraceWrapperFilter(Filter wrappedFilter, String instantiationStackTrace) {
+    this(wrappedFilter, CallSite.describedAs(instantiationStackTrace));
+  }
+
+  public StacktraceWrapperFilter(Filter wrappedFilter, CallSite callSite) {
+    this(wrappedFilter, callSite, null);
+  }
+
+  /**
+   * @param callSite where the filter was added, or null to report exceptions unchanged.
+   * @param counters counters to update, or null not to count.
+   */
+  public StacktraceWrapperFilter(Filter wrappedFilter, CallSite callSite,
+      OperationCounters counters) {
     super(wrappedFilter);
-    this.instantiationStackTrace = instantiationStackTrace;
+    this.callSite = callSite;
+    this.counters = counters;
   }
 
   @Override public boolean isRemove(FlowProcess flowProcess, FilterCall filterCall) {
+    if (counters == null) {
+      return isRemoveWrapped(flowProcess, filterCall);
+    }
+
+    boolean timed = counters.countIn();
+    long start = timed ? System.nanoTime() : 0;
+    boolean remove = isRemoveWrapped(flowProcess, filterCall);
+    if (timed) {
+      counters.addSampledNanos(System.nanoTime() - start);
+    }
+    if (remove) {
+      counters.countOut(1);
+    }
+    counters.maybeFlush(flowProcess);
+    return remove;
+  }
+
+  private boolean isRemoveWrapped(FlowProcess flowProcess, FilterCall filterCall) {
+    if (callSite == null) {
+      return wrappedOperation.isRemove(flowProcess, filterCall);
+    }
     try {
       return wrappedOperation.isRemove(flowProcess, filterCall);
     } catch (Exception e) {
-      throw new RuntimeException("Exception in operation instantiated at:\n" + instantiationStackTrace + "\nActual exception trace:", e);
+      throw new RuntimeException("Exception in operation instantiated at:\n" + callSite + "\nActual exception trace:", e);
+    }
+  }
+
+  @Override public void cleanup(FlowProcess flowProcess, OperationCall operationCall) {
+    if (counters != null) {
+      counters.flush(flowProcess);
     }
+    super.cleanup(flowProcess, operationCall);
   }
 }
@@ -0,0 +1,37 @@
+package com.squareup.cascading_helpers.filter;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.Filter;
+import cascading.operation.FilterCall;
+import cascading.operation.OperationCall;
+
+/**
+ * Keep the first limit tuples this task sees and remove the rest. On its own it limits each task
+ * rather than the whole flow; {@link com.squareup.cascading_helpers.pump.Pump#limit(long)} runs
+ * it again after gathering what every task kept into a single group.
+ */
+public class TaskLimit extends BaseOperation implements Filter {
+  private final long limit;
+
+  private transient long seen;
+
+  public TaskLimit(long limit) {
+    if (limit < 0) {
+      throw new IllegalArgumentException("limit must not be negative");
+    }
+    this.limit = limit;
+  }
+
+  @Override public void prepare(FlowProcess flowProcess, OperationCall operationCall) {
+    seen = 0;
+  }
+
+  @Override public boolean isRemove(FlowProcess flowProcess, FilterCall filterCall) {
+    if (seen >= limit) {
+      return true;
+    }
+    seen++;
+    return false;
+  }
+}
@@ -4,6 +4,7 @@ import cascading.flow.FlowProcess;
 import cascading.operation.BaseOperation;
 import cascading.operation.Function;
 import cascading.operation.FunctionCall;
+import cascading.operation.OperationCall;
 import cascading.tuple.Fields;
 import cascading.tuple.Tuple;
 import cascading.tuple.TupleEntry;
@@ -13,18 +14,65 @@ import cascading.tuple.TupleEntryCollector;
  * Extrude emits one Tuple per argument field, with the argument field copied into the output field.
  *
  * For instance, with the input Tuple [a, b, c] and the argument fields [b, c], after Extrude, you
- * will have Tuples [a, b] and [a, c].
+ * will have Tuples [a, b] and [a, c]. With a name field, you get [a, "b", b] and [a, "c", c]
+ * instead, so you can tell the values apart.
+ *
+ * Every result is written into the same Tuple, which the collector copies, so extruding doesn't
+ * allocate anything per argument.
  */
 public class Extrude extends BaseOperation implements Function {
+  private final boolean withNames;
+  private final boolean skipNulls;
+
+  private transient Tuple result;
+  private transient Fields namedFields;
+  private transient String[] names;
+
   public Extrude(String outputField) {
-    super(new Fields(outputField));
+    this(null, outputField, false);
+  }
+
+  /**
+   * @param nameField field to put the name of each argument field in, or null to leave it out.
+   * @param outputField field to put the value of each argument field in.
+   * @param skipNulls whether to emit nothing for null values.
+   */
+  public Extrude(String nameField, String outputField, boolean skipNulls) {
+    super(nameField == null ? new Fields(outputField) : new Fields(nameField, outputField));
+    this.withNames = nameField != null;
+    this.skipNulls = skipNulls;
+  }
+
+  @Override public void prepare(FlowProcess flowProcess, OperationCall operationCall) {
+    result = Tuple.size(withNames ? 2 : 1);
   }
 
   @Override public void operate(FlowProcess flowProcess, FunctionCall functionCall) {
     TupleEntry arguments = functionCall.getArguments();
     TupleEntryCollector outputCollector = functionCall.getOutputCollector();
-    for (int argNum = 0; argNum < arguments.size(); argNum++) {
-      outputCollector.add(new Tuple(arguments.getObject(argNum)));
+    Tuple values = arguments.getTuple();
+    if (withNames && arguments.getFields() != namedFields) {
+      resolveNames(arguments.getFields());
+    }
+    int valuePos = withNames ? 1 : 0;
+    for (int argNum = 0; argNum < values.size(); argNum++) {
+      Object value = values.getObject(argNum);
+      if (value == null && skipNulls) {
+        continue;
+      }
+      if (withNames) {
+        result.set(0, names[argNum]);
+      }
+      result.set(valuePos, value);
+      outputCollector.add(result);
+    }
+  }
+
+  private void resolveNames(Fields fields) {
+    names = new String[fields.size()];
+    for (int i = 0; i < names.length; i++) {
+      names[i] = String.valueOf(fields.get(i));
     }
+    namedFields = fields;
   }
 }
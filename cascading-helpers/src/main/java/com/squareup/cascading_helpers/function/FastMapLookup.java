@@ -0,0 +1,189 @@
+package com.squareup.cascading_helpers.function;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.Function;
+import cascading.operation.FunctionCall;
+import cascading.operation.OperationCall;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import com.squareup.cascading_helpers.util.Hashing;
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * A {@link MapLookup} for lookups that run on every record of a large stream.
+ *
+ * The map is copied into an open addressing table when the operation is created. Keys made of a
+ * single long or int field, or a single String field, get tables of their own that don't need to
+ * look at the argument tuple at all. Misses emit one preallocated tuple of nulls rather than a new
+ * tuple per record.
+ *
+ * Unlike {@link MapLookup}, single numeric keys are matched by value, so an Integer argument will
+ * find a Long key.
+ */
+public class FastMapLookup extends BaseOperation implements Function {
+  private final Table table;
+  private transient Tuple missing;
+
+  public FastMapLookup(Map<Tuple, Tuple> map, Fields fieldDeclaration) {
+    super(fieldDeclaration);
+    this.table = Table.build(map);
+  }
+
+  @Override public void prepare(FlowProcess flowProcess, OperationCall operationCall) {
+    missing = Tuple.size(getFieldDeclaration().size());
+  }
+
+  @Override public void operate(FlowProcess flowProcess, FunctionCall functionCall) {
+    Tuple result = table.get(functionCall.getArguments());
+    if (result == null) {
+      result = missing;
+    }
+    functionCall.getOutputCollector().add(result);
+  }
+
+  private abstract static class Table implements Serializable {
+    abstract Tuple get(TupleEntry arguments);
+
+    static Table build(Map<Tuple, Tuple> map) {
+      boolean allLongs = !map.isEmpty();
+      boolean allStrings = !map.isEmpty();
+      for (Tuple key : map.keySet()) {
+        Object value = key.size() == 1 ? key.getObject(0) : null;
+        allLongs &= isIntegral(value);
+        allStrings &= value instanceof String;
+      }
+
+      if (allLongs) {
+        return new LongTable(map);
+      } else if (allStrings) {
+        return new StringTable(map);
+      }
+      return new TupleTable(map);
+    }
+
+    static boolean isIntegral(Object value) {
+      return value instanceof Long || value instanceof Integer || value instanceof Short
+          || value instanceof Byte;
+    }
+  }
+
+  private static class LongTable extends Table {
+    private final long[] keys;
+    private final Tuple[] values;
+    private final int mask;
+
+    LongTable(Map<Tuple, Tuple> map) {
+      int size = Hashing.tableSize(map.size());
+      keys = new long[size];
+      values = new Tuple[size];
+      mask = size - 1;
+      for (Map.Entry<Tuple, Tuple> entry : map.entrySet()) {
+        if (entry.getValue() == null) {
+          continue;
+        }
+        long key = ((Number) entry.getKey().getObject(0)).longValue();
+        int slot = (int) Hashing.mix(key) & mask;
+        while (values[slot] != null && keys[slot] != key) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = entry.getValue();
+      }
+    }
+
+    @Override Tuple get(TupleEntry arguments) {
+      Object value = arguments.getObject(0);
+      if (!isIntegral(value)) {
+        return null;
+      }
+      long key = ((Number) value).longValue();
+      int slot = (int) Hashing.mix(key) & mask;
+      while (values[slot] != null) {
+        if (keys[slot] == key) {
+          return values[slot];
+        }
+        slot = (slot + 1) & mask;
+      }
+      return null;
+    }
+  }
+
+  private abstract static class ObjectTable extends Table {
+    private final Object[] keys;
+    private final Tuple[] values;
+    private final int mask;
+
+    ObjectTable(Map<Tuple, Tuple> map) {
+      int size = Hashing.tableSize(map.size());
+      keys = new Object[size];
+      values = new Tuple[size];
+      mask = size - 1;
+      for (Map.Entry<Tuple, Tuple> entry : map.entrySet()) {
+        if (entry.getValue() == null) {
+          continue;
+        }
+        Object key = keyOf(entry.getKey());
+        int slot = slot(key);
+        while (values[slot] != null && !keys[slot].equals(key)) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = entry.getValue();
+      }
+    }
+
+    abstract Object keyOf(Tuple key);
+
+    abstract Object keyOf(TupleEntry arguments);
+
+    private int slot(Object key) {
+      return (int) Hashing.mix(key.hashCode()) & mask;
+    }
+
+    @Override Tuple get(TupleEntry arguments) {
+      Object key = keyOf(arguments);
+      if (key == null) {
+        return null;
+      }
+      int slot = slot(key);
+      while (values[slot] != null) {
+        if (keys[slot].equals(key)) {
+          return values[slot];
+        }
+        slot = (slot + 1) & mask;
+      }
+      return null;
+    }
+  }
+
+  private static class StringTable extends ObjectTable {
+    StringTable(Map<Tuple, Tuple> map) {
+      super(map);
+    }
+
+    @Override Object keyOf(Tuple key) {
+      return key.getObject(0);
+    }
+
+    @Override Object keyOf(TupleEntry arguments) {
+      return arguments.getObject(0);
+    }
+  }
+
+  private static class TupleTable extends ObjectTable {
+    TupleTable(Map<Tuple, Tuple> map) {
+      super(map);
+    }
+
+    @Override Object keyOf(Tuple key) {
+      return key;
+    }
+
+    @Override Object keyOf(TupleEntry arguments) {
+      return arguments.getTuple();
+    }
+  }
+}
@@ -0,0 +1,281 @@
+package com.squareup.cascading_helpers.function;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.Function;
+import cascading.operation.FunctionCall;
+import cascading.operation.OperationCall;
+import cascading.tap.Tap;
+import cascading.tap.hadoop.Hfs;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import cascading.tuple.TupleEntryIterator;
+import com.squareup.cascading_helpers.util.Hashing;
+import com.squareup.cascading_helpers.util.MappedFile;
+import com.squareup.cascading_helpers.util.TupleCodec;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.UUID;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * A {@link MapLookup} whose table is read from a Tap instead of being serialized into the job.
+ *
+ * The first task on each machine to prepare the operation reads the source and writes a hash
+ * index of it into a local cache directory; every task on that machine then memory maps the same
+ * index, so the table is stored once per machine in the page cache rather than once per task in
+ * the heap. This makes tables with tens of millions of entries practical.
+ *
+ * Keys are compared by their encoded form, so the argument types must match the types in the
+ * source (a Long argument won't find an Integer key). When a key appears more than once in the
+ * source, its first value wins. The index is rebuilt whenever the source's modification time or,
+ * for an {@link Hfs} source, its length changes; old indexes are not deleted. A source that doesn't
+ * report a modification time gets an index of its own in every task, deleted on cleanup.
+ */
+public class FileMapLookup extends BaseOperation implements Function {
+  /** Property naming the local directory used for indexes. Defaults to java.io.tmpdir. */
+  public static final String CACHE_DIR_PROPERTY = "cascading_helpers.lookup.cache.dir";
+
+  private final Tap source;
+  private final Fields keyFields;
+  private final Fields valueFields;
+
+  private transient MappedFile slots;
+  private transient MappedFile records;
+  private transient long slotMask;
+  private transient KeyBuffer keyBuffer;
+  private transient DataOutputStream keyOut;
+  private transient byte[] valueBuffer;
+  private transient Tuple missing;
+  private transient File taskIndex;
+
+  /**
+   * @param source tap containing the table.
+   * @param keyFields fields of the source to look up by; the arguments must match them in order.
+   * @param valueFields fields of the source to emit when a key is found.
+   */
+  public FileMapLookup(Tap source, Fields keyFields, Fields valueFields) {
+    super(valueFields);
+    this.source = source;
+    this.keyFields = keyFields;
+    this.valueFields = valueFields;
+  }
+
+  @Override public void prepare(FlowProcess flowProcess, OperationCall operationCall) {
+    try {
+      File index = getIndex(flowProcess);
+      slots = MappedFile.readOnly(new File(index, "slots"));
+      records = MappedFile.readOnly(new File(index, "records"));
+    } catch (IOException e) {
+      throw new RuntimeException("unable to load lookup table from " + source.getIdentifier(), e);
+    }
+    slotMask = slots.length() / 8 - 1;
+    keyBuffer = new KeyBuffer();
+    keyOut = new DataOutputStream(keyBuffer);
+    valueBuffer = new byte[64];
+    missing = Tuple.size(getFieldDeclaration().size());
+  }
+
+  @Override public void cleanup(FlowProcess flowProcess, OperationCall operationCall) {
+    // the mappings themselves are released when they are garbage collected
+    slots = null;
+    records = null;
+    if (taskIndex != null) {
+      new File(taskIndex, "slots").delete();
+      new File(taskIndex, "records").delete();
+      taskIndex.delete();
+      taskIndex = null;
+    }
+  }
+
+  @Override public void operate(FlowProcess flowProcess, FunctionCall functionCall) {
+    Tuple result;
+    try {
+      result = lookup(functionCall.getArguments().getTuple());
+    } catch (IOException e) {
+      throw new RuntimeException("unable to read lookup table", e);
+    }
+    functionCall.getOutputCollector().add(result == null ? missing : result);
+  }
+
+  private Tuple lookup(Tuple key) throws IOException {
+    keyBuffer.reset();
+    TupleCodec.write(keyOut, key);
+    byte[] keyBytes = keyBuffer.bytes();
+    int keyLength = keyBuffer.size();
+    long hash = Hashing.hash(keyBytes, 0, keyLength);
+
+    long slot = hash & slotMask;
+    long position;
+    while ((position = slots.getLong(slot * 8)) != 0) {
+      // slots hold record offsets plus one, so that zero can mean empty
+      position--;
+      if (records.getInt(position) == (int) hash
+          && records.getInt(position + 4) == keyLength
+          && records.matches(position + 8, keyBytes, keyLength)) {
+        long valuePosition = position + 8 + keyLength;
+        int valueLength = records.getInt(valuePosition);
+        if (valueBuffer.length < valueLength) {
+          valueBuffer = new byte[Math.max(valueLength, valueBuffer.length * 2)];
+        }
+        records.get(valuePosition + 4, valueBuffer, 0, valueLength);
+        return TupleCodec.read(
+            new DataInputStream(new ByteArrayInputStream(valueBuffer, 0, valueLength)));
+      }
+      slot = (slot + 1) & slotMask;
+    }
+    return null;
+  }
+
+  /**
+   * Find this machine's index of the source, building it if no other task has yet.
+   */
+  private File getIndex(FlowProcess flowProcess) throws IOException {
+    Object configuredDir = flowProcess.getProperty(CACHE_DIR_PROPERTY);
+    File cacheDir = new File(configuredDir != null ? configuredDir.toString()
+        : System.getProperty("java.io.tmpdir"), "cascading-helpers-lookups");
+    if (!cacheDir.isDirectory() && !cacheDir.mkdirs() && !cacheDir.isDirectory()) {
+      throw new IOException("unable to create " + cacheDir);
+    }
+
+    long modifiedTime = getModifiedTime(flowProcess);
+    if (modifiedTime == 0) {
+      // nothing tells a rewritten source from the one indexed before, so don't share the index
+      taskIndex = new File(cacheDir, "task." + UUID.randomUUID());
+      if (!taskIndex.mkdir()) {
+        throw new IOException("unable to create " + taskIndex);
+      }
+      build(flowProcess, taskIndex);
+      return taskIndex;
+    }
+
+    // the length catches sources rewritten within the modification time's granularity
+    String description = source.getIdentifier() + "|" + modifiedTime + "|"
+        + getLength(flowProcess) + "|" + keyFields + "|" + valueFields;
+    byte[] descriptionBytes = description.getBytes("UTF-8");
+    String name = Long.toHexString(Hashing.hash(descriptionBytes, 0, descriptionBytes.length));
+    File index = new File(cacheDir, name);
+    if (index.isDirectory()) {
+      return index;
+    }
+
+    // other tasks on this machine may be trying to build the same index; only one of them should.
+    // file locks are held per JVM, so threads of this one have to take turns first.
+    synchronized (FileMapLookup.class) {
+      buildIfMissing(flowProcess, cacheDir, name, index);
+    }
+    return index;
+  }
+
+  private void buildIfMissing(FlowProcess flowProcess, File cacheDir, String name, File index)
+      throws IOException {
+    RandomAccessFile lockFile = new RandomAccessFile(new File(cacheDir, name + ".lock"), "rw");
+    try {
+      FileLock lock = lockFile.getChannel().lock();
+      try {
+        if (!index.isDirectory()) {
+          File building = new File(cacheDir, name + "." + UUID.randomUUID() + ".tmp");
+          if (!building.mkdir()) {
+            throw new IOException("unable to create " + building);
+          }
+          build(flowProcess, building);
+          if (!building.renameTo(index)) {
+            throw new IOException("unable to move " + building + " to " + index);
+          }
+        }
+      } finally {
+        lock.release();
+      }
+    } finally {
+      lockFile.close();
+    }
+  }
+
+  @SuppressWarnings({"unchecked"})
+  private long getModifiedTime(FlowProcess flowProcess) throws IOException {
+    return source.getModifiedTime(flowProcess.getConfigCopy());
+  }
+
+  /**
+   * @return the total length of the files of an {@link Hfs} source, or -1 for other taps.
+   */
+  private long getLength(FlowProcess flowProcess) throws IOException {
+    Object conf = flowProcess.getConfigCopy();
+    if (!(source instanceof Hfs) || !(conf instanceof Configuration)) {
+      return -1;
+    }
+    Path path = ((Hfs) source).getPath();
+    return path.getFileSystem((Configuration) conf).getContentSummary(path).getLength();
+  }
+
+  @SuppressWarnings({"unchecked"})
+  private void build(FlowProcess flowProcess, File dir) throws IOException {
+    int entries = 0;
+    TupleEntryIterator iterator = source.openForRead(flowProcess);
+    try {
+      while (iterator.hasNext()) {
+        iterator.next();
+        entries++;
+      }
+    } finally {
+      iterator.close();
+    }
+
+    long numSlots = Hashing.tableSize(entries);
+    long mask = numSlots - 1;
+    MappedFile slotFile = MappedFile.create(new File(dir, "slots"), numSlots * 8);
+
+    KeyBuffer buffer = new KeyBuffer();
+    DataOutputStream bufferOut = new DataOutputStream(buffer);
+    DataOutputStream recordsOut = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(new File(dir, "records")), 1 << 16));
+    long position = 0;
+    iterator = source.openForRead(flowProcess);
+    try {
+      while (iterator.hasNext()) {
+        TupleEntry entry = iterator.next();
+
+        buffer.reset();
+        TupleCodec.write(bufferOut, entry.selectTuple(keyFields));
+        int keyLength = buffer.size();
+        long hash = Hashing.hash(buffer.bytes(), 0, keyLength);
+        recordsOut.writeInt((int) hash);
+        recordsOut.writeInt(keyLength);
+        recordsOut.write(buffer.bytes(), 0, keyLength);
+
+        buffer.reset();
+        TupleCodec.write(bufferOut, entry.selectTuple(valueFields));
+        recordsOut.writeInt(buffer.size());
+        recordsOut.write(buffer.bytes(), 0, buffer.size());
+
+        long slot = hash & mask;
+        while (slotFile.getLong(slot * 8) != 0) {
+          slot = (slot + 1) & mask;
+        }
+        slotFile.putLong(slot * 8, position + 1);
+        position += 12 + keyLength + buffer.size();
+      }
+    } finally {
+      iterator.close();
+      recordsOut.close();
+    }
+    slotFile.force();
+  }
+
+  /** A byte stream whose buffer can be read without copying it. */
+  private static class KeyBuffer extends ByteArrayOutputStream {
+    byte[] bytes() {
+      return buf;
+    }
+  }
+}
@@ -0,0 +1,209 @@
+package com.squareup.cascading_helpers.function;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.ConcreteCall;
+import cascading.operation.Filter;
+import cascading.operation.Function;
+import cascading.operation.FunctionCall;
+import cascading.operation.Operation;
+import cascading.operation.OperationCall;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import cascading.tuple.TupleEntryCollector;
+
+/**
+ * Runs a chain of functions and filters as one function, the way a chain of Each pipes with
+ * Fields.ALL outputs would run them, but without building a new TupleEntry between every step.
+ * Every stage reads its arguments from, and writes its results into, a single working tuple
+ * holding the incoming fields followed by the fields declared by each function so far.
+ *
+ * Apply it with Fields.ALL as its argument selector and as the Each's output selector. If no stage
+ * is a function, it declares Fields.ARGS and passes surviving tuples through, so use
+ * Fields.RESULTS as the output selector instead.
+ *
+ * Stages are called with {@link ConcreteCall}s of their own, so each keeps its own context and
+ * argument fields. A function that emits several tuples runs the rest of the chain once for each.
+ */
+public class FusedFunction extends BaseOperation implements Function {
+  private final Operation[] operations;
+  private final Fields[] argumentSelectors;
+
+  private transient Stage[] stages;
+  private transient Tuple working;
+  private transient int numIncoming;
+  private transient Tuple result;
+  private transient Tuple incoming;
+  private transient FlowProcess flowProcess;
+  private transient TupleEntryCollector outputCollector;
+
+  /**
+   * @param operations the stages, in order; each must be a Function or a Filter, and every
+   * function must declare its fields by name.
+   * @param argumentSelectors the argument selector of each stage.
+   */
+  public FusedFunction(Operation[] operations, Fields[] argumentSelectors) {
+    super(declaredFields(operations));
+    if (operations.length != argumentSelectors.length) {
+      throw new IllegalArgumentException("every operation needs an argument selector");
+    }
+    this.operations = operations;
+    this.argumentSelectors = argumentSelectors;
+  }
+
+  private static Fields declaredFields(Operation[] operations) {
+    Fields declared = Fields.NONE;
+    for (Operation operation : operations) {
+      if (operation instanceof Function) {
+        if (!operation.getFieldDeclaration().isDefined()) {
+          throw new IllegalArgumentException(operation + " doesn't declare its fields by name");
+        }
+        declared = declared.append(operation.getFieldDeclaration());
+      } else if (!(operation instanceof Filter)) {
+        throw new IllegalArgumentException(operation + " is neither a function nor a filter");
+      }
+    }
+    return declared.size() == 0 ? Fields.ARGS : declared;
+  }
+
+  @Override public boolean isSafe() {
+    for (Operation operation : operations) {
+      if (!operation.isSafe()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override public void prepare(FlowProcess flowProcess, OperationCall operationCall) {
+    // the incoming fields may not be known yet, in which case the first tuple tells us
+    if (operationCall != null && operationCall.getArgumentFields() != null) {
+      prepareStages(flowProcess, operationCall.getArgumentFields());
+    }
+  }
+
+  @SuppressWarnings({"unchecked"})
+  private void prepareStages(FlowProcess flowProcess, Fields incomingFields) {
+    numIncoming = incomingFields.size();
+    Fields available = incomingFields;
+    stages = new Stage[operations.length];
+    for (int i = 0; i < operations.length; i++) {
+      Stage stage = new Stage();
+      Fields argumentFields = argumentSelectors[i].isAll()
+          ? available : available.select(argumentSelectors[i]);
+      stage.argumentPositions = available.getPos(argumentFields);
+      stage.arguments = new TupleEntry(argumentFields, Tuple.size(argumentFields.size()));
+      if (operations[i] instanceof Function) {
+        Fields declared = operations[i].getFieldDeclaration();
+        stage.function = (Function) operations[i];
+        stage.call = new ConcreteCall(argumentFields, declared);
+        stage.call.setOutputCollector(new StageCollector(i, available.size(), declared.size()));
+        available = available.append(declared);
+      } else {
+        stage.filter = (Filter) operations[i];
+        stage.call = new ConcreteCall(argumentFields);
+      }
+      stage.call.setArguments(stage.arguments);
+      stages[i] = stage;
+    }
+
+    working = Tuple.size(available.size());
+    result = Tuple.size(available.size() - numIncoming);
+    for (int i = 0; i < stages.length; i++) {
+      operations[i].prepare(flowProcess, stages[i].call);
+    }
+  }
+
+  @Override public void operate(FlowProcess flowProcess, FunctionCall functionCall) {
+    TupleEntry arguments = functionCall.getArguments();
+    if (stages == null) {
+      prepareStages(flowProcess, arguments.getFields());
+    }
+    incoming = arguments.getTuple();
+    for (int i = 0; i < numIncoming; i++) {
+      working.set(i, incoming.getObject(i));
+    }
+    this.flowProcess = flowProcess;
+    outputCollector = functionCall.getOutputCollector();
+    run(0);
+  }
+
+  private void run(int stageIndex) {
+    if (stageIndex == stages.length) {
+      if (result.size() == 0) {
+        outputCollector.add(incoming);
+        return;
+      }
+      for (int i = 0; i < result.size(); i++) {
+        result.set(i, working.getObject(numIncoming + i));
+      }
+      outputCollector.add(result);
+      return;
+    }
+
+    Stage stage = stages[stageIndex];
+    Tuple arguments = stage.arguments.getTuple();
+    for (int i = 0; i < stage.argumentPositions.length; i++) {
+      arguments.set(i, working.getObject(stage.argumentPositions[i]));
+    }
+    if (stage.function != null) {
+      // the stage's collector runs the rest of the chain for each result
+      stage.function.operate(flowProcess, stage.call);
+    } else if (!stage.filter.isRemove(flowProcess, stage.call)) {
+      run(stageIndex + 1);
+    }
+  }
+
+  @Override public void flush(FlowProcess flowProcess, OperationCall operationCall) {
+    if (stages != null) {
+      for (int i = 0; i < stages.length; i++) {
+        operations[i].flush(flowProcess, stages[i].call);
+      }
+    }
+  }
+
+  @Override public void cleanup(FlowProcess flowProcess, OperationCall operationCall) {
+    if (stages != null) {
+      for (int i = 0; i < stages.length; i++) {
+        operations[i].cleanup(flowProcess, stages[i].call);
+      }
+    }
+  }
+
+  private static class Stage {
+    Function function;
+    Filter filter;
+    ConcreteCall call;
+    TupleEntry arguments;
+    int[] argumentPositions;
+  }
+
+  /** Copies a stage's results into the working tuple and carries on with the next stage. */
+  private class StageCollector extends TupleEntryCollector {
+    private final int stageIndex;
+    private final int offset;
+    private final int size;
+
+    StageCollector(int stageIndex, int offset, int size) {
+      this.stageIndex = stageIndex;
+      this.offset = offset;
+      this.size = size;
+    }
+
+    @Override public void add(Tuple tuple) {
+      for (int i = 0; i < size; i++) {
+        working.set(offset + i, tuple.getObject(i));
+      }
+      run(stageIndex + 1);
+    }
+
+    @Override public void add(TupleEntry tupleEntry) {
+      add(tupleEntry.getTuple());
+    }
+
+    @Override protected void collect(TupleEntry tupleEntry) {
+      add(tupleEntry.getTuple());
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package com.squareup.cascading_helpers.function;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.Function;
+import cascading.operation.FunctionCall;
+import cascading.operation.OperationCall;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Adds a salt to each tuple for spreading a few hot join keys over several reducers. On the large
+ * side of the join, tuples with a hot key are dealt round robin into one of the buckets, starting
+ * at a different bucket in every task; on the other side, tuples with a hot key are copied into
+ * every bucket. Every other tuple is salted with 0 on both sides. Joining on the keys plus the
+ * salt then gives the same result as joining on the keys alone.
+ */
+public class SaltHotKeys extends BaseOperation implements Function {
+  private final Tuple[] hotKeys;
+  private final int buckets;
+  private final boolean replicate;
+
+  private transient Set<Tuple> hotKeySet;
+  private transient Tuple[] salts;
+  private transient int next;
+
+  /**
+   * @param saltField the field to put the salt in.
+   * @param hotKeys the values of the key arguments that should be spread out.
+   * @param buckets how many reducers to spread each hot key over.
+   * @param replicate whether this is the side whose hot tuples are copied into every bucket.
+   */
+  public SaltHotKeys(Fields saltField, Tuple[] hotKeys, int buckets, boolean replicate) {
+    super(saltField);
+    if (buckets < 1) {
+      throw new IllegalArgumentException("there must be at least one bucket");
+    }
+    this.hotKeys = hotKeys;
+    this.buckets = buckets;
+    this.replicate = replicate;
+  }
+
+  @Override public void prepare(FlowProcess flowProcess, OperationCall operationCall) {
+    hotKeySet = new HashSet<Tuple>(Arrays.asList(hotKeys));
+    salts = new Tuple[buckets];
+    for (int i = 0; i < buckets; i++) {
+      salts[i] = new Tuple(i);
+    }
+    // start each task at a different bucket, so that small tasks don't all favor the first ones
+    next = flowProcess.getCurrentSliceNum() % buckets;
+  }
+
+  @Override public void operate(FlowProcess flowProcess, FunctionCall functionCall) {
+    if (!hotKeySet.contains(functionCall.getArguments().getTuple())) {
+      functionCall.getOutputCollector().add(salts[0]);
+    } else if (replicate) {
+      for (Tuple salt : salts) {
+        functionCall.getOutputCollector().add(salt);
+      }
+    } else {
+      functionCall.getOutputCollector().add(salts[next]);
+      next = (next + 1) % buckets;
+    }
+  }
+}
@@ -1,23 +1,143 @@
 package com.squareup.cascading_helpers.function;
 
 import cascading.flow.FlowProcess;
+import cascading.operation.ConcreteCall;
 import cascading.operation.Function;
 import cascading.operation.FunctionCall;
+import cascading.operation.OperationCall;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import cascading.tuple.TupleEntryCollector;
+import com.squareup.cascading_helpers.operation.CallSite;
+import com.squareup.cascading_helpers.operation.OperationCounters;
 import com.squareup.cascading_helpers.operation.WrapperOperation;
 
 public class StacktraceWrapperFunction extends WrapperOperation<Function> implements Function {
-  private final String instantiationStackTrace;
+  private final CallSite callSite;
+  private final OperationCounters counters;
+
+  private transient CountingCollector countingCollector;
 
   public StacktraceWrapperFunction(Function wrappedFunction, String instantiationStackTrace) {
+    this(wrappedFunction, CallSite.describedAs(instantiationStackTrace));
+  }
+
+  public StacktraceWrapperFunction(Function wrappedFunction, CallSite callSite) {
+    this(wrappedFunction, callSite, null);
+  }
+
+  /**
+   * @param callSite where the function was added, or null to report exceptions unchanged.
+   * @param counters counters to update, or null not to count.
+   */
+  public StacktraceWrapperFunction(Function wrappedFunction, CallSite callSite,
+      OperationCounters counters) {
     super(wrappedFunction);
-    this.instantiationStackTrace = instantiationStackTrace;
+    this.callSite = callSite;
+    this.counters = counters;
   }
 
   @Override public void operate(FlowProcess flowProcess, FunctionCall functionCall) {
+    if (counters == null) {
+      operateWrapped(flowProcess, functionCall);
+      return;
+    }
+
+    boolean timed = counters.countIn();
+    long start = timed ? System.nanoTime() : 0;
+    ConcreteCall call = startCounting(functionCall);
+    try {
+      operateWrapped(flowProcess, call);
+    } finally {
+      stopCounting(functionCall, call);
+    }
+    if (timed) {
+      counters.addSampledNanos(System.nanoTime() - start);
+    }
+    counters.maybeFlush(flowProcess);
+  }
+
+  private void operateWrapped(FlowProcess flowProcess, FunctionCall functionCall) {
+    if (callSite == null) {
+      wrappedOperation.operate(flowProcess, functionCall);
+      return;
+    }
     try {
       wrappedOperation.operate(flowProcess, functionCall);
     } catch (Exception e) {
-      throw new RuntimeException("Exception in operation instantiated at:\n" + instantiationStackTrace + "\nActual exception trace:", e);
+      throw new RuntimeException("Exception in operation instantiated at:\n" + callSite + "\nActual exception trace:", e);
+    }
+  }
+
+  @Override public void flush(FlowProcess flowProcess, OperationCall operationCall) {
+    // functions that hold on to tuples emit them here
+    if (counters == null || !(operationCall instanceof FunctionCall)) {
+      super.flush(flowProcess, operationCall);
+      return;
+    }
+    FunctionCall functionCall = (FunctionCall) operationCall;
+    ConcreteCall call = startCounting(functionCall);
+    try {
+      super.flush(flowProcess, call);
+    } finally {
+      stopCounting(functionCall, call);
+    }
+  }
+
+  /**
+   * @return a call whose output goes through the counting collector on its way to the call's own
+   * collector. That's the call itself when Cascading made it, and a copy of it otherwise.
+   */
+  private ConcreteCall startCounting(FunctionCall functionCall) {
+    if (countingCollector == null) {
+      countingCollector = new CountingCollector();
+    }
+    countingCollector.delegate = functionCall.getOutputCollector();
+    ConcreteCall call;
+    if (functionCall instanceof ConcreteCall) {
+      call = (ConcreteCall) functionCall;
+    } else {
+      call = new ConcreteCall(functionCall.getArgumentFields());
+      call.setContext(functionCall.getContext());
+      call.setArguments(functionCall.getArguments());
+    }
+    call.setOutputCollector(countingCollector);
+    return call;
+  }
+
+  private void stopCounting(FunctionCall functionCall, ConcreteCall call) {
+    if (call == functionCall) {
+      call.setOutputCollector(countingCollector.delegate);
+    } else {
+      functionCall.setContext(call.getContext());
+    }
+    counters.countOut(countingCollector.count);
+    countingCollector.count = 0;
+  }
+
+  @Override public void cleanup(FlowProcess flowProcess, OperationCall operationCall) {
+    if (counters != null) {
+      counters.flush(flowProcess);
+    }
+    super.cleanup(flowProcess, operationCall);
+  }
+
+  private static class CountingCollector extends TupleEntryCollector {
+    private TupleEntryCollector delegate;
+    private long count;
+
+    @Override public void add(TupleEntry tupleEntry) {
+      count++;
+      delegate.add(tupleEntry);
+    }
+
+    @Override public void add(Tuple tuple) {
+      count++;
+      delegate.add(tuple);
+    }
+
+    @Override protected void collect(TupleEntry tupleEntry) {
+      delegate.add(tupleEntry);
     }
   }
 }
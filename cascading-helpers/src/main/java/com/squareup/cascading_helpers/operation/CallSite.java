@@ -0,0 +1,113 @@
+package com.squareup.cascading_helpers.operation;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The place in user code where an operation was added to an assembly. Frames are kept raw and only
+ * formatted when something actually asks for them, which is normally when an exception is being
+ * reported from inside a task.
+ */
+public final class CallSite implements Serializable {
+  public enum Capture {
+    /** Keep every frame from the caller down. This is the default. */
+    FULL,
+    /** Keep only the caller's frame, which is much cheaper to ship with every operation. */
+    CALLER,
+    /** Capture nothing. Pumps won't wrap their operations unless {@link OperationCounters} is on. */
+    NONE
+  }
+
+  private static volatile Capture capture = Capture.FULL;
+
+  private final StackTraceElement[] frames;
+  private final String description;
+  private transient String formatted;
+
+  private CallSite(StackTraceElement[] frames, String description) {
+    this.frames = frames;
+    this.description = description;
+  }
+
+  /**
+   * Choose how much of the stack is captured for pumps created from now on. Use
+   * {@link Capture#NONE} in production if the planning time and job conf size matter more than
+   * the error reporting.
+   */
+  public static void setCapture(Capture capture) {
+    if (capture == null) {
+      throw new IllegalArgumentException("capture mode may not be null");
+    }
+    CallSite.capture = capture;
+  }
+
+  public static Capture getCapture() {
+    return capture;
+  }
+
+  /**
+   * Capture the current call site.
+   * @param framesToSkip number of frames between the caller of this method and the user code that
+   * should be reported.
+   * @return the call site, or null if capturing is turned off.
+   */
+  public static CallSite capture(int framesToSkip) {
+    Capture mode = capture;
+    if (mode == Capture.NONE) {
+      return null;
+    }
+    StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
+    // skip Thread.getStackTrace() and this method as well
+    int first = Math.min(framesToSkip + 2, stackTrace.length);
+    int last = stackTrace.length;
+    if (mode == Capture.CALLER) {
+      last = Math.min(first + 1, stackTrace.length);
+    }
+    return new CallSite(Arrays.copyOfRange(stackTrace, first, last), null);
+  }
+
+  /**
+   * A call site with a precomputed description, for callers that already have a formatted stack
+   * trace.
+   */
+  public static CallSite describedAs(String description) {
+    return new CallSite(new StackTraceElement[0], description);
+  }
+
+  /**
+   * @return the frame of the user code that created the operation, or null if unknown.
+   */
+  public StackTraceElement getCaller() {
+    return frames.length > 0 ? frames[0] : null;
+  }
+
+  public StackTraceElement[] getFrames() {
+    return frames.clone();
+  }
+
+  @Override public String toString() {
+    if (description != null) {
+      return description;
+    }
+    if (formatted == null) {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < frames.length; i++) {
+        StackTraceElement element = frames[i];
+        if (i > 0) {
+          sb.append("\n");
+        }
+        sb.append("\tat ")
+            .append(element.getClassName())
+            .append(".")
+            .append(element.getMethodName())
+            .append("(")
+            .append(element.getFileName())
+            .append(":")
+            .append(element.getLineNumber())
+            .append(")");
+      }
+      formatted = sb.toString();
+    }
+    return formatted;
+  }
+}
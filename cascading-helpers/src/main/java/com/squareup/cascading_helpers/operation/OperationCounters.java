@@ -0,0 +1,125 @@
+package com.squareup.cascading_helpers.operation;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.Filter;
+import cascading.operation.Operation;
+import java.io.Serializable;
+
+/**
+ * Counters for a single operation added through a Pump: tuples in, tuples out (or removed, for
+ * filters), and an estimate of the time spent inside the operation, which is measured on one call
+ * in every sample interval and scaled up. The counters are named after the operation's call site,
+ * so they show which step of a flow is expensive.
+ *
+ * Counting is off by default. Turn it on with {@link #enable(int)} before building the assembly.
+ * Every counted operation adds a few counters to the job, so keep an eye on the job tracker's
+ * counter limit for very large flows.
+ */
+public final class OperationCounters implements Serializable {
+  public static final String GROUP = "Pump Operations";
+
+  private static final long FLUSH_INTERVAL = 10000;
+
+  private static volatile int defaultSampleInterval = 0;
+
+  private final String name;
+  private final String outName;
+  private final int sampleInterval;
+
+  private transient long in;
+  private transient long out;
+  private transient long nanos;
+  private transient long unflushed;
+
+  private OperationCounters(String name, String outName, int sampleInterval) {
+    this.name = name;
+    this.outName = outName;
+    this.sampleInterval = sampleInterval;
+  }
+
+  /**
+   * Count every operation in pumps turned into pipes from now on.
+   * @param sampleInterval time one call in this many.
+   */
+  public static void enable(int sampleInterval) {
+    if (sampleInterval < 1) {
+      throw new IllegalArgumentException("sample interval must be positive");
+    }
+    defaultSampleInterval = sampleInterval;
+  }
+
+  public static void disable() {
+    defaultSampleInterval = 0;
+  }
+
+  public static boolean isEnabled() {
+    return defaultSampleInterval > 0;
+  }
+
+  /**
+   * @param ordinal tells apart operations of the same class when there's no call site to name
+   * the counters after.
+   * @return counters for the given operation, or null if counting is turned off.
+   */
+  public static OperationCounters forOperation(CallSite callSite, int ordinal,
+      Operation operation) {
+    int sampleInterval = defaultSampleInterval;
+    if (sampleInterval == 0) {
+      return null;
+    }
+    String name = operation.getClass().getSimpleName();
+    StackTraceElement caller = callSite == null ? null : callSite.getCaller();
+    if (caller != null) {
+      name = caller.getFileName() + ":" + caller.getLineNumber() + " " + name;
+    } else {
+      name = name + " #" + ordinal;
+    }
+    // a filter's interesting output is the tuples it throws away
+    String outName = operation instanceof Filter ? "removed" : "out";
+    return new OperationCounters(name, outName, sampleInterval);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Count a tuple going into the operation.
+   * @return whether this call should be timed.
+   */
+  public boolean countIn() {
+    in++;
+    unflushed++;
+    return in % sampleInterval == 0;
+  }
+
+  /**
+   * Count tuples emitted by a function, or removed by a filter.
+   */
+  public void countOut(long tuples) {
+    out += tuples;
+  }
+
+  public void addSampledNanos(long sampledNanos) {
+    nanos += sampledNanos * sampleInterval;
+  }
+
+  /**
+   * Report the counts every so often, so that long running tasks show progress.
+   */
+  public void maybeFlush(FlowProcess flowProcess) {
+    if (unflushed >= FLUSH_INTERVAL) {
+      flush(flowProcess);
+    }
+  }
+
+  public void flush(FlowProcess flowProcess) {
+    flowProcess.increment(GROUP, name + " in", in);
+    flowProcess.increment(GROUP, name + " " + outName, out);
+    flowProcess.increment(GROUP, name + " nanos", nanos);
+    in = 0;
+    out = 0;
+    nanos = 0;
+    unflushed = 0;
+  }
+}
@@ -3,29 +3,98 @@ package com.squareup.cascading_helpers.pump;
 import cascading.operation.Aggregator;
 import cascading.pipe.Pipe;
 import cascading.pipe.assembly.AggregateBy;
+import com.squareup.cascading_helpers.aggregate.AdaptiveAggregateBy;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class AggregateByPump extends InternalPump {
   private final AggregateBy aggregateBy;
+  private final Set<Class> emittedClasses;
+  private int threshold;
+  private int maxThreshold;
 
   public AggregateByPump(Pump prev, AggregateBy aggregateBy) {
+    this(prev, aggregateBy, Collections.<Class>emptySet());
+  }
+
+  /**
+   * @param emittedClasses classes the partial results put through the shuffle.
+   */
+  AggregateByPump(Pump prev, AggregateBy aggregateBy, Set<Class> emittedClasses) {
     super(prev);
     this.aggregateBy = aggregateBy;
+    this.emittedClasses = emittedClasses;
   }
 
   public AggregateByPump(Pump prev, AggregateBy.Functor functor, Aggregator aggregator,
       String[] argumentFields) {
     super(prev);
     this.aggregateBy = new InternalAggregateBy(functor, aggregator, argumentFields);
+    this.emittedClasses = Collections.emptySet();
+  }
+
+  @Override public Set<Class> getEmittedClasses() {
+    Set<Class> combined = new HashSet<Class>(super.getEmittedClasses());
+    combined.addAll(emittedClasses);
+    return combined;
+  }
+
+  private AggregateByPump(Pump prev, AggregateByPump copied) {
+    super(prev, copied);
+    this.aggregateBy = copied.aggregateBy;
+    this.emittedClasses = copied.emittedClasses;
+    this.threshold = copied.threshold;
+    this.maxThreshold = copied.maxThreshold;
+  }
+
+  @Override Pump withInputs(List<Pump> inputs) {
+    return new AggregateByPump(inputs.get(0), this);
+  }
+
+  /**
+   * Cache this many keys on the map side, rather than the job's
+   * {@link AggregateBy#AGGREGATE_BY_THRESHOLD} or {@link AggregateBy#DEFAULT_THRESHOLD}. The
+   * setting applies to every partial aggregator following the same group by; if they disagree,
+   * the largest wins. Only {@link #adaptive(int)} caches report how much they combined.
+   * @return this pump.
+   */
+  public AggregateByPump threshold(int threshold) {
+    if (threshold < 1) {
+      throw new IllegalArgumentException("threshold must be positive");
+    }
+    this.threshold = threshold;
+    return this;
+  }
+
+  /**
+   * Let the map side cache adapt to the data, as described in {@link AdaptiveAggregateBy}: it
+   * starts at the threshold, grows up to the given maximum while it is combining tuples, and
+   * passes tuples straight through when the keys turn out to be nearly unique. Like
+   * {@link #threshold(int)}, this applies to every partial aggregator following the same group by.
+   * @return this pump.
+   */
+  public AggregateByPump adaptive(int maxThreshold) {
+    if (maxThreshold < 1) {
+      throw new IllegalArgumentException("maximum threshold must be positive");
+    }
+    this.maxThreshold = maxThreshold;
+    return this;
   }
 
   @Override Pipe getPipeInternal() {
     Pump cur = this;
     List<AggregateBy> aggregators = new ArrayList<AggregateBy>();
+    int threshold = 0;
+    int maxThreshold = 0;
     while (true) {
       if (cur instanceof AggregateByPump) {
-        aggregators.add(((AggregateByPump)cur).aggregateBy);
+        AggregateByPump pump = (AggregateByPump)cur;
+        aggregators.add(pump.aggregateBy);
+        threshold = Math.max(threshold, pump.threshold);
+        maxThreshold = Math.max(maxThreshold, pump.maxThreshold);
         cur = cur.getPrev();
       } else if (cur instanceof GroupByPump) {
         GroupByPump groupby = (GroupByPump)cur;
@@ -34,8 +103,14 @@ public class AggregateByPump extends InternalPump {
               "Partial aggregator does not support custom sort fields. "
                   + "Argument fields are automatically used for secondary sorting.");
         }
-        return new AggregateBy(cur.getPrev().toPipe(), ((GroupByPump)cur).getFields(),
-            aggregators.toArray(new AggregateBy[aggregators.size()]));
+        AggregateBy[] assemblies = aggregators.toArray(new AggregateBy[aggregators.size()]);
+        // with no threshold set, 0 leaves it to the job's configuration
+        if (maxThreshold > 0) {
+          return new AdaptiveAggregateBy(groupby.getPrev().toPipe(), groupby.getFields(),
+              Math.min(threshold, maxThreshold), maxThreshold, assemblies);
+        }
+        return new AggregateBy(groupby.getPrev().toPipe(), groupby.getFields(), threshold,
+            assemblies);
       } else {
         throw new IllegalArgumentException(
             "Partial aggregator must follow group by or other partial aggregator");
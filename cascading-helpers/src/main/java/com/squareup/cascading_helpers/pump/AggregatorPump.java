@@ -4,6 +4,7 @@ import cascading.operation.Aggregator;
 import cascading.pipe.Every;
 import cascading.pipe.Pipe;
 import cascading.tuple.Fields;
+import java.util.List;
 
 public class AggregatorPump extends EveryPump {
   private final Aggregator agg;
@@ -13,6 +14,15 @@ public class AggregatorPump extends EveryPump {
     this.agg = agg;
   }
 
+  private AggregatorPump(Pump prev, AggregatorPump copied) {
+    super(prev, copied);
+    this.agg = copied.agg;
+  }
+
+  @Override Pump withInputs(List<Pump> inputs) {
+    return new AggregatorPump(inputs.get(0), this);
+  }
+
   @Override public Pipe getPipeInternal() {
     /*
      * Use Fields.VALUES as the default field.
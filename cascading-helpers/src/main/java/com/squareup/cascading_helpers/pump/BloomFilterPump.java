@@ -0,0 +1,105 @@
+package com.squareup.cascading_helpers.pump;
+
+import cascading.operation.Insert;
+import cascading.pipe.Each;
+import cascading.pipe.HashJoin;
+import cascading.pipe.Pipe;
+import cascading.pipe.assembly.AggregateBy;
+import cascading.pipe.assembly.Discard;
+import cascading.pipe.assembly.Rename;
+import cascading.pipe.joiner.InnerJoin;
+import cascading.tuple.Fields;
+import com.squareup.cascading_helpers.aggregate.BloomFilterBy;
+import com.squareup.cascading_helpers.filter.BloomFilterMatch;
+import com.squareup.cascading_helpers.util.BloomFilter;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Drops the tuples whose keys certainly don't appear in another pump, using a Bloom filter of the
+ * other pump's keys. Building the filter takes a pass over the other side with a single reducer;
+ * the filter is then joined onto every tuple on the map side, so this pays off when the keys fit
+ * comfortably in memory and most tuples have no match.
+ */
+public class BloomFilterPump extends InternalPump {
+  private static final String BLOOM_GROUP = "__bloom_group__";
+  private static final String RHS_BLOOM_GROUP = "__rhs__bloom_group__";
+  private static final String BLOOM = "__bloom__";
+
+  private final Fields keyFields;
+  private final Pump other;
+  private final Fields otherKeyFields;
+  private final long expectedKeys;
+  private final double falsePositiveRate;
+
+  public BloomFilterPump(Pump prev, Fields keyFields, Pump other, Fields otherKeyFields,
+      long expectedKeys, double falsePositiveRate) {
+    super(prev);
+    this.keyFields = keyFields;
+    this.other = other;
+    this.otherKeyFields = otherKeyFields;
+    this.expectedKeys = expectedKeys;
+    this.falsePositiveRate = falsePositiveRate;
+  }
+
+  @Override public Set<Class> getEmittedClasses() {
+    Set<Class> combined = new HashSet<Class>(super.getEmittedClasses());
+    combined.addAll(other.getEmittedClasses());
+    combined.add(BloomFilter.class);
+    return combined;
+  }
+
+  private BloomFilterPump(Pump prev, Pump other, BloomFilterPump copied) {
+    super(prev, copied);
+    this.keyFields = copied.keyFields;
+    this.other = other;
+    this.otherKeyFields = copied.otherKeyFields;
+    this.expectedKeys = copied.expectedKeys;
+    this.falsePositiveRate = copied.falsePositiveRate;
+  }
+
+  Fields getKeyFields() {
+    return keyFields;
+  }
+
+  Fields getOtherKeyFields() {
+    return otherKeyFields;
+  }
+
+  @Override List<Pump> getInputs() {
+    return Arrays.asList(getPrev(), other);
+  }
+
+  @Override Pump withInputs(List<Pump> inputs) {
+    return new BloomFilterPump(inputs.get(0), inputs.get(1), this);
+  }
+
+  @Override Pipe getPipeInternal() {
+    return filter(getPrev().toPipe(), keyFields, other.toPipe(), otherKeyFields, expectedKeys,
+        falsePositiveRate);
+  }
+
+  static Pipe filter(Pipe pipe, Fields keyFields, Pipe other, Fields otherKeyFields,
+      long expectedKeys, double falsePositiveRate) {
+    if (!keyFields.isDefined() || keyFields.size() != otherKeyFields.size()) {
+      throw new IllegalArgumentException("bloom filtering needs the same number of named keys on "
+          + "both sides");
+    }
+
+    // one filter for all of the other side's keys, so everything is grouped under a constant
+    Pipe keys = new Pipe("bloom-" + UUID.randomUUID().toString(), other);
+    keys = new Each(keys, new Insert(new Fields(BLOOM_GROUP), 0), Fields.ALL);
+    keys = new AggregateBy(keys, new Fields(BLOOM_GROUP),
+        new BloomFilterBy(otherKeyFields, new Fields(BLOOM), expectedKeys, falsePositiveRate));
+    keys = new Rename(keys, new Fields(BLOOM_GROUP), new Fields(RHS_BLOOM_GROUP));
+
+    Pipe filtered = new Each(pipe, new Insert(new Fields(BLOOM_GROUP), 0), Fields.ALL);
+    filtered = new HashJoin(filtered, new Fields(BLOOM_GROUP), keys, new Fields(RHS_BLOOM_GROUP),
+        new InnerJoin());
+    filtered = new Each(filtered, keyFields.append(new Fields(BLOOM)), new BloomFilterMatch());
+    return new Discard(filtered, new Fields(BLOOM_GROUP, RHS_BLOOM_GROUP, BLOOM));
+  }
+}
@@ -1,6 +1,7 @@
 package com.squareup.cascading_helpers.pump;
 
 import cascading.pipe.Pipe;
+import java.util.List;
 
 public class BranchPump extends InternalPump {
   private final String branchName;
@@ -10,6 +11,15 @@ public class BranchPump extends InternalPump {
     this.branchName = branchName;
   }
 
+  private BranchPump(Pump prev, BranchPump copied) {
+    super(prev, copied);
+    this.branchName = copied.branchName;
+  }
+
+  @Override Pump withInputs(List<Pump> inputs) {
+    return new BranchPump(inputs.get(0), this);
+  }
+
   @Override Pipe getPipeInternal() {
     return new Pipe(branchName, getPrev().toPipe());
   }
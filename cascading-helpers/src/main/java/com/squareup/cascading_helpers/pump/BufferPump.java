@@ -4,6 +4,7 @@ import cascading.operation.Buffer;
 import cascading.pipe.Every;
 import cascading.pipe.Pipe;
 import cascading.tuple.Fields;
+import java.util.List;
 
 public class BufferPump extends EveryPump {
   private final Buffer buffer;
@@ -13,6 +14,15 @@ public class BufferPump extends EveryPump {
     this.buffer = buffer;
   }
 
+  private BufferPump(Pump prev, BufferPump copied) {
+    super(prev, copied);
+    this.buffer = copied.buffer;
+  }
+
+  @Override Pump withInputs(List<Pump> inputs) {
+    return new BufferPump(inputs.get(0), this);
+  }
+
   @Override public Pipe getPipeInternal() {
     return new Every(getPrev().toPipe(), getArgSelector(Fields.VALUES, args), buffer);
   }
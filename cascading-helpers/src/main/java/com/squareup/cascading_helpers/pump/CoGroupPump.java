@@ -1,17 +1,37 @@
 package com.squareup.cascading_helpers.pump;
 
 import cascading.pipe.CoGroup;
+import cascading.pipe.Each;
+import cascading.pipe.HashJoin;
 import cascading.pipe.Pipe;
+import cascading.pipe.assembly.Discard;
+import cascading.pipe.joiner.InnerJoin;
 import cascading.pipe.joiner.Joiner;
+import cascading.pipe.joiner.LeftJoin;
+import cascading.pipe.joiner.RightJoin;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import com.squareup.cascading_helpers.function.SaltHotKeys;
+import com.squareup.cascading_helpers.util.BloomFilter;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public class CoGroupPump extends Pump {
+  private static final String SALT = "__salt__";
+  private static final String RHS_SALT = "__rhs__salt__";
+
   private final Pump left;
   private final String[] cogroupFields;
   private final Pump right;
   private final String[] modifiedCogroupFields;
   private final Joiner joiner;
+  private boolean replicated;
+  private long bloomExpectedKeys;
+  private double bloomFalsePositiveRate;
+  private int skewBuckets;
+  private Tuple[] hotKeys;
 
   @Override public Set<Class> getEmittedClasses() {
     Set<Class> leftClasses = left.getEmittedClasses();
@@ -19,6 +39,9 @@ public class CoGroupPump extends Pump {
     Set<Class> combined = new HashSet<Class>();
     combined.addAll(leftClasses);
     combined.addAll(rightClasses);
+    if (isBloomFiltered()) {
+      combined.add(BloomFilter.class);
+    }
     return combined;
   }
 
@@ -32,11 +55,126 @@ public class CoGroupPump extends Pump {
     this.joiner = joiner;
   }
 
+  /**
+   * Perform this join on the map side with a {@link cascading.pipe.HashJoin} instead of a
+   * {@link cascading.pipe.CoGroup}. The right side is read fully into memory by every task, so
+   * it should be small; in exchange the join does not need a shuffle of its own.
+   * @return this pump.
+   */
+  public CoGroupPump replicated() {
+    this.replicated = true;
+    return this;
+  }
+
+  public boolean isReplicated() {
+    return replicated;
+  }
+
+  /**
+   * Before joining, drop the left tuples whose keys certainly aren't on the right, so they aren't
+   * shuffled. See {@link BloomFilterPump}. Only inner and right joins can drop those tuples.
+   * @param expectedKeys roughly how many distinct keys the right side has.
+   * @param falsePositiveRate the fraction of unmatched left tuples that may get through anyway.
+   * @return this pump.
+   */
+  public CoGroupPump bloomFiltered(long expectedKeys, double falsePositiveRate) {
+    if (!(joiner instanceof InnerJoin) && !(joiner instanceof RightJoin)) {
+      throw new IllegalArgumentException(
+          "only inner and right joins can be bloom filtered, not " + joiner);
+    }
+    if (expectedKeys < 1) {
+      throw new IllegalArgumentException("expected keys must be positive");
+    }
+    this.bloomExpectedKeys = expectedKeys;
+    this.bloomFalsePositiveRate = falsePositiveRate;
+    return this;
+  }
+
+  public boolean isBloomFiltered() {
+    return bloomExpectedKeys > 0;
+  }
+
+  /**
+   * Spread the given hot keys over several reducers instead of one. Left tuples with a hot key are
+   * dealt out among the buckets, and right tuples with a hot key are copied into all of them, so
+   * the left should be the side where the hot keys are heavy. The output is the same as without
+   * salting. Hash joins have no reducers to balance, so replicated joins ignore this.
+   * @param buckets how many reducers to spread each hot key over.
+   * @param hotKeys the values of the join fields to spread out, one tuple per key.
+   * @return this pump.
+   */
+  public CoGroupPump skewed(int buckets, Tuple... hotKeys) {
+    if (!(joiner instanceof InnerJoin) && !(joiner instanceof LeftJoin)) {
+      throw new IllegalArgumentException(
+          "only inner and left joins can be salted, not " + joiner);
+    }
+    if (cogroupFields.length == 0) {
+      throw new IllegalArgumentException("salting needs named join fields");
+    }
+    if (buckets < 1) {
+      throw new IllegalArgumentException("there must be at least one bucket");
+    }
+    this.skewBuckets = buckets;
+    this.hotKeys = hotKeys;
+    return this;
+  }
+
+  public boolean isSkewed() {
+    return skewBuckets > 1 && hotKeys.length > 0;
+  }
+
+  String[] getLeftFields() {
+    return cogroupFields;
+  }
+
+  String[] getRightFields() {
+    return modifiedCogroupFields;
+  }
+
+  Joiner getJoiner() {
+    return joiner;
+  }
+
+  @Override List<Pump> getInputs() {
+    return Arrays.asList(left, right);
+  }
+
+  @Override Pump withInputs(List<Pump> inputs) {
+    CoGroupPump copy = new CoGroupPump(inputs.get(0), cogroupFields, inputs.get(1),
+        modifiedCogroupFields, joiner);
+    copy.replicated = replicated;
+    copy.bloomExpectedKeys = bloomExpectedKeys;
+    copy.bloomFalsePositiveRate = bloomFalsePositiveRate;
+    copy.skewBuckets = skewBuckets;
+    copy.hotKeys = hotKeys;
+    return copy;
+  }
+
   @Override Pump getPrev() {
     throw new UnsupportedOperationException("doesn't make sense to get the singular prev of a cogroup");
   }
 
   @Override public Pipe getPipeInternal() {
-    return new CoGroup(left.toPipe(), getArgSelector(cogroupFields), right.toPipe(), getArgSelector(modifiedCogroupFields), joiner);
+    Fields leftFields = getArgSelector(cogroupFields);
+    Fields rightFields = getArgSelector(modifiedCogroupFields);
+    Pipe leftPipe = left.toPipe();
+    Pipe rightPipe = right.toPipe();
+    if (isBloomFiltered()) {
+      leftPipe = BloomFilterPump.filter(leftPipe, leftFields, rightPipe, rightFields,
+          bloomExpectedKeys, bloomFalsePositiveRate);
+    }
+    if (replicated) {
+      return new HashJoin(leftPipe, leftFields, rightPipe, rightFields, joiner);
+    }
+    if (isSkewed()) {
+      leftPipe = new Each(leftPipe, leftFields,
+          new SaltHotKeys(new Fields(SALT), hotKeys, skewBuckets, false), Fields.ALL);
+      rightPipe = new Each(rightPipe, rightFields,
+          new SaltHotKeys(new Fields(RHS_SALT), hotKeys, skewBuckets, true), Fields.ALL);
+      Pipe joined = new CoGroup(leftPipe, leftFields.append(new Fields(SALT)), rightPipe,
+          rightFields.append(new Fields(RHS_SALT)), joiner);
+      return new Discard(joined, new Fields(SALT, RHS_SALT));
+    }
+    return new CoGroup(leftPipe, leftFields, rightPipe, rightFields, joiner);
   }
 }
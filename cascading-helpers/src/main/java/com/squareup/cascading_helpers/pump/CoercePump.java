@@ -0,0 +1,41 @@
+package com.squareup.cascading_helpers.pump;
+
+import cascading.pipe.Pipe;
+import cascading.pipe.assembly.Coerce;
+import cascading.tuple.Fields;
+import java.util.List;
+
+public class CoercePump extends Pump {
+  private final Pump prev;
+  private final String[] fields;
+  private final Class<?>[] classes;
+
+  CoercePump(Pump prev, String[] fields, Class<?>[] classes) {
+    if (fields.length != classes.length) {
+      throw new IllegalArgumentException("need a class for every coerced field");
+    }
+    this.prev = prev;
+    this.fields = fields;
+    this.classes = classes;
+  }
+
+  String[] getFieldNames() {
+    return fields;
+  }
+
+  Class<?>[] getClasses() {
+    return classes;
+  }
+
+  @Override Pump getPrev() {
+    return prev;
+  }
+
+  @Override Pump withInputs(List<Pump> inputs) {
+    return new CoercePump(inputs.get(0), fields, classes);
+  }
+
+  @Override Pipe getPipeInternal() {
+    return new Coerce(prev.toPipe(), new Fields(fields), classes);
+  }
+}
@@ -0,0 +1,31 @@
+package com.squareup.cascading_helpers.pump;
+
+import cascading.pipe.Pipe;
+import cascading.pipe.assembly.Discard;
+import java.util.List;
+
+public class DiscardPump extends Pump {
+  private final Pump prev;
+  private final String[] fields;
+
+  DiscardPump(Pump prev, String[] fields) {
+    this.prev = prev;
+    this.fields = fields;
+  }
+
+  String[] getFieldNames() {
+    return fields;
+  }
+
+  @Override Pump getPrev() {
+    return prev;
+  }
+
+  @Override Pump withInputs(List<Pump> inputs) {
+    return new DiscardPump(inputs.get(0), fields);
+  }
+
+  @Override Pipe getPipeInternal() {
+    return new Discard(prev.toPipe(), getArgSelector(fields));
+  }
+}
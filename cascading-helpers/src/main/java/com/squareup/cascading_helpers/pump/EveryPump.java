@@ -8,6 +8,11 @@ public abstract class EveryPump extends InternalPump {
     this.args = args;
   }
 
+  protected EveryPump(Pump prev, EveryPump copied) {
+    super(prev, copied);
+    this.args = copied.args;
+  }
+
   //@Override Pipe toPipe() {
   //  return new Every(getPrev().toPipe(), getArgSelector(args), agg);
   //}
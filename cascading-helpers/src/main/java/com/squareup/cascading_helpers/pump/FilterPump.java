@@ -3,7 +3,10 @@ package com.squareup.cascading_helpers.pump;
 import cascading.operation.Filter;
 import cascading.pipe.Each;
 import cascading.pipe.Pipe;
+import cascading.tuple.Fields;
 import com.squareup.cascading_helpers.filter.StacktraceWrapperFilter;
+import com.squareup.cascading_helpers.operation.OperationCounters;
+import java.util.List;
 
 public class FilterPump extends InternalPump {
   private final Filter filter;
@@ -15,7 +18,42 @@ public class FilterPump extends InternalPump {
     this.args = args;
   }
 
+  private FilterPump(Pump prev, FilterPump copied) {
+    super(prev, copied);
+    this.filter = copied.filter;
+    this.args = copied.args;
+  }
+
+  @Override Pump withInputs(List<Pump> inputs) {
+    return new FilterPump(inputs.get(0), this);
+  }
+
   @Override public Pipe getPipeInternal() {
-    return new Each(getPrev().toPipe(), getArgSelector(args), new StacktraceWrapperFilter(filter, getStackTrace()));
+    return new Each(getPrev().toPipe(), getArgumentSelector(), getOperation());
+  }
+
+  /**
+   * @return the filter, wrapped for error reporting and counting if need be.
+   */
+  Filter getOperation() {
+    Filter operation = filter;
+    OperationCounters counters =
+        OperationCounters.forOperation(getCallSite(), getOrdinal(), filter);
+    if (getCallSite() != null || counters != null) {
+      operation = new StacktraceWrapperFilter(filter, getCallSite(), counters);
+    }
+    return operation;
+  }
+
+  Filter getFilter() {
+    return filter;
+  }
+
+  Fields getArgumentSelector() {
+    return getArgSelector(args);
+  }
+
+  String[] getArgumentNames() {
+    return args;
   }
 }
@@ -5,9 +5,11 @@ import cascading.pipe.Each;
 import cascading.pipe.Pipe;
 import cascading.tuple.Fields;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import com.squareup.cascading_helpers.function.StacktraceWrapperFunction;
 import com.squareup.cascading_helpers.operation.KnowsEmittedClasses;
+import com.squareup.cascading_helpers.operation.OperationCounters;
 
 public class FunctionPump extends InternalPump {
   private Function function;
@@ -19,8 +21,43 @@ public class FunctionPump extends InternalPump {
     this.args = args;
   }
 
+  private FunctionPump(Pump prev, FunctionPump copied) {
+    super(prev, copied);
+    this.function = copied.function;
+    this.args = copied.args;
+  }
+
+  @Override Pump withInputs(List<Pump> inputs) {
+    return new FunctionPump(inputs.get(0), this);
+  }
+
   @Override public Pipe getPipeInternal() {
-    return new Each(getPrev().toPipe(), getArgSelector(args), new StacktraceWrapperFunction(function, getStackTrace()), Fields.ALL);
+    return new Each(getPrev().toPipe(), getArgumentSelector(), getOperation(), Fields.ALL);
+  }
+
+  /**
+   * @return the function, wrapped for error reporting and counting if need be.
+   */
+  Function getOperation() {
+    Function operation = function;
+    OperationCounters counters =
+        OperationCounters.forOperation(getCallSite(), getOrdinal(), function);
+    if (getCallSite() != null || counters != null) {
+      operation = new StacktraceWrapperFunction(function, getCallSite(), counters);
+    }
+    return operation;
+  }
+
+  Fields getArgumentSelector() {
+    return getArgSelector(args);
+  }
+
+  String[] getArgumentNames() {
+    return args;
+  }
+
+  Fields getDeclaredFields() {
+    return function.getFieldDeclaration();
   }
 
   @Override public Set<Class> getEmittedClasses() {
@@ -0,0 +1,65 @@
+package com.squareup.cascading_helpers.pump;
+
+import cascading.operation.Operation;
+import cascading.pipe.Each;
+import cascading.pipe.Pipe;
+import cascading.tuple.Fields;
+import com.squareup.cascading_helpers.function.FusedFunction;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Turns the run of each() calls ending at the previous pump into a single Each running a
+ * {@link FusedFunction}. The run stops at anything other than a function or filter, and at
+ * functions that don't declare their fields by name. Each stage keeps its own call site for error
+ * reporting.
+ */
+public class FusedPump extends InternalPump {
+  public FusedPump(Pump prev) {
+    super(prev);
+  }
+
+  private FusedPump(Pump prev, FusedPump copied) {
+    super(prev, copied);
+  }
+
+  @Override Pump withInputs(List<Pump> inputs) {
+    return new FusedPump(inputs.get(0), this);
+  }
+
+  @Override Pipe getPipeInternal() {
+    List<Operation> operations = new ArrayList<Operation>();
+    List<Fields> argumentSelectors = new ArrayList<Fields>();
+    Pump start = getPrev();
+    while (true) {
+      if (start instanceof FunctionPump) {
+        FunctionPump functionPump = (FunctionPump) start;
+        Operation operation = functionPump.getOperation();
+        if (!operation.getFieldDeclaration().isDefined()) {
+          break;
+        }
+        operations.add(operation);
+        argumentSelectors.add(functionPump.getArgumentSelector());
+      } else if (start instanceof FilterPump) {
+        FilterPump filterPump = (FilterPump) start;
+        operations.add(filterPump.getOperation());
+        argumentSelectors.add(filterPump.getArgumentSelector());
+      } else {
+        break;
+      }
+      start = start.getPrev();
+    }
+
+    if (operations.size() < 2) {
+      return getPrev().toPipe();
+    }
+    Collections.reverse(operations);
+    Collections.reverse(argumentSelectors);
+    FusedFunction fused = new FusedFunction(
+        operations.toArray(new Operation[operations.size()]),
+        argumentSelectors.toArray(new Fields[argumentSelectors.size()]));
+    Fields outputSelector = fused.getFieldDeclaration().isArguments() ? Fields.RESULTS : Fields.ALL;
+    return new Each(start.toPipe(), Fields.ALL, fused, outputSelector);
+  }
+}
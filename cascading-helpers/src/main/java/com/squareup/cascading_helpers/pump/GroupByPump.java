@@ -3,6 +3,7 @@ package com.squareup.cascading_helpers.pump;
 import cascading.pipe.GroupBy;
 import cascading.pipe.Pipe;
 import cascading.tuple.Fields;
+import java.util.List;
 
 public class GroupByPump extends Pump {
   private final Pump prev;
@@ -16,6 +17,13 @@ public class GroupByPump extends Pump {
     this.fields = fields;
   }
 
+  @Override Pump withInputs(List<Pump> inputs) {
+    GroupByPump copy = new GroupByPump(inputs.get(0), fields);
+    copy.sortFields = sortFields;
+    copy.order = order;
+    return copy;
+  }
+
   /**
    * Perform a secondary sort of these grouped tuples while grouping!
    * @param sortFields
@@ -43,6 +51,14 @@ public class GroupByPump extends Pump {
     return sortFields.length > 0;
   }
 
+  String[] getFieldNames() {
+    return fields;
+  }
+
+  String[] getSortFieldNames() {
+    return sortFields;
+  }
+
   @Override Pump getPrev() {
     return this.prev;
   }
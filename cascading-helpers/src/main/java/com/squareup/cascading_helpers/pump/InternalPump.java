@@ -1,45 +1,49 @@
 package com.squareup.cascading_helpers.pump;
 
+import com.squareup.cascading_helpers.operation.CallSite;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public abstract class InternalPump extends Pump {
+  private static final AtomicInteger ORDINALS = new AtomicInteger();
+
   private final Pump prev;
 
-  private final String stackTrace;
+  private final CallSite callSite;
+  private final int ordinal;
 
   protected InternalPump(Pump prev) {
     this.prev = prev;
-    stackTrace = captureStackTrace();
+    // skip this constructor, the subclass constructor and the Pump method that called it
+    callSite = CallSite.capture(3);
+    ordinal = ORDINALS.incrementAndGet();
   }
 
-  private String captureStackTrace() {
-    StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
-
-    StringBuilder sb = new StringBuilder();
-    boolean first = true;
-    for (int i = 5; i < stackTrace.length; i++) {
-      StackTraceElement element = stackTrace[i];
-
-      if (!first) {
-        sb.append("\n");
-      }
-      first = false;
-      sb.append("\tat ")
-          .append(element.getClassName())
-          .append(".")
-          .append(element.getMethodName())
-          .append("(")
-          .append(element.getFileName())
-          .append(":")
-          .append(element.getLineNumber())
-          .append(")");
-    }
-    return sb.toString();
+  /** For copies, which keep the call site and ordinal of the pump they were copied from. */
+  protected InternalPump(Pump prev, InternalPump copied) {
+    this.prev = prev;
+    this.callSite = copied.callSite;
+    this.ordinal = copied.ordinal;
   }
 
   @Override Pump getPrev() {
     return prev;
   }
 
+  /**
+   * @return where this pump was created, or null if call site capture is turned off.
+   */
+  public CallSite getCallSite() {
+    return callSite;
+  }
+
+  /**
+   * @return a number that tells this pump apart from others created in this JVM.
+   */
+  int getOrdinal() {
+    return ordinal;
+  }
+
   public String getStackTrace() {
-    return stackTrace;
+    return callSite == null ? null : callSite.toString();
   }
 }
@@ -1,6 +1,7 @@
 package com.squareup.cascading_helpers.pump;
 
 import cascading.pipe.Pipe;
+import java.util.List;
 
 public class PipeAdapterPump extends Pump {
   private Pipe pipe;
@@ -23,6 +24,11 @@ public class PipeAdapterPump extends Pump {
     return prev;
   }
 
+  /** Its pipe was built on the previous pump's when it was made, so it can't be moved. */
+  @Override Pump withInputs(List<Pump> inputs) {
+    throw new UnsupportedOperationException("can't copy a pump built from a pipe");
+  }
+
   @Override public Pipe getPipeInternal() {
     return pipe;
   }
@@ -4,25 +4,38 @@ import cascading.operation.Aggregator;
 import cascading.operation.Buffer;
 import cascading.operation.Filter;
 import cascading.operation.Function;
+import cascading.pipe.Each;
+import cascading.pipe.GroupBy;
 import cascading.pipe.Pipe;
 import cascading.pipe.assembly.AggregateBy;
 import cascading.pipe.assembly.AverageBy;
-import cascading.pipe.assembly.Coerce;
 import cascading.pipe.assembly.CountBy;
-import cascading.pipe.assembly.Discard;
 import cascading.pipe.assembly.FirstBy;
-import cascading.pipe.assembly.Rename;
-import cascading.pipe.assembly.Retain;
 import cascading.pipe.assembly.SumBy;
 import cascading.pipe.assembly.Unique;
 import cascading.pipe.joiner.InnerJoin;
 import cascading.pipe.joiner.Joiner;
 import cascading.tuple.Fields;
 import cascading.tuple.Tuple;
+import com.squareup.cascading_helpers.aggregate.ApproxDistinctBy;
+import com.squareup.cascading_helpers.aggregate.ApproxQuantileBy;
+import com.squareup.cascading_helpers.aggregate.AverageFieldsBy;
+import com.squareup.cascading_helpers.aggregate.SumFieldsBy;
+import com.squareup.cascading_helpers.batch.BatchAdapter;
+import com.squareup.cascading_helpers.batch.BatchFilter;
+import com.squareup.cascading_helpers.batch.BatchFunction;
 import com.squareup.cascading_helpers.filter.FailOnNull;
+import com.squareup.cascading_helpers.filter.FilterPartialDuplicates;
+import com.squareup.cascading_helpers.filter.HashSample;
+import com.squareup.cascading_helpers.filter.Predicate;
+import com.squareup.cascading_helpers.filter.PredicateFilter;
+import com.squareup.cascading_helpers.filter.TaskLimit;
+import com.squareup.cascading_helpers.util.HyperLogLog;
+import com.squareup.cascading_helpers.util.QuantileSketch;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 import com.squareup.cascading_helpers.function.GetOrElse;
@@ -33,6 +46,20 @@ public abstract class Pump {
   abstract Pump getPrev();
   abstract Pipe getPipeInternal();
 
+  /**
+   * @return the pumps this one reads from.
+   */
+  List<Pump> getInputs() {
+    Pump prev = getPrev();
+    return prev == null ? Collections.<Pump>emptyList() : Collections.singletonList(prev);
+  }
+
+  /**
+   * @return a copy of this pump, with the same settings and call site, reading from the given
+   *     pumps in place of {@link #getInputs()}.
+   */
+  abstract Pump withInputs(List<Pump> inputs);
+
   public Set<Class> getEmittedClasses() {
     Set<Class> upstreamClasses = Collections.emptySet();
     if (getPrev() != null) {
@@ -85,6 +112,38 @@ public abstract class Pump {
     return new CoGroupPump(left, cogroupFields, right, modifiedCogroupFields, joiner);
   }
 
+  public CoGroupPump hashJoin(Pump other, String... joinFields) {
+    return hashJoin(this, other, joinFields);
+  }
+
+  public CoGroupPump hashJoin(Pump other, Joiner joiner, String... joinFields) {
+    return hashJoin(this, other, joiner, joinFields);
+  }
+
+  public static CoGroupPump hashJoin(Pump left, Pump right, String... joinFields) {
+    return hashJoin(left, right, new InnerJoin(), joinFields);
+  }
+
+  /**
+   * Join on the map side, holding the right side in memory. Only use this when the right side
+   * comfortably fits in the heap of every task.
+   */
+  public static CoGroupPump hashJoin(Pump left, Pump right, Joiner joiner, String... joinFields) {
+    return cogroup(left, right, joiner, joinFields).replicated();
+  }
+
+  /**
+   * Drop the tuples whose fields certainly don't match the same fields of any tuple in keys,
+   * using a Bloom filter of keys. See {@link BloomFilterPump}.
+   * @param expectedKeys roughly how many distinct keys there are.
+   * @param falsePositiveRate the fraction of unmatched tuples that may get through anyway.
+   */
+  public Pump bloomFilter(Pump keys, long expectedKeys, double falsePositiveRate,
+      String... fields) {
+    return new BloomFilterPump(this, new Fields(fields), keys, new Fields(fields), expectedKeys,
+        falsePositiveRate);
+  }
+
   static Fields getArgSelector(String... args) {
     return getArgSelector(Fields.ALL, args);
   }
@@ -104,40 +163,161 @@ public abstract class Pump {
     return new FilterPump(this, filter, args);
   }
 
+  /**
+   * Run a batch function over the given fields, {@link BatchAdapter#DEFAULT_BATCH_SIZE} tuples at
+   * a time. The function rewrites its arguments in place; see {@link BatchAdapter}.
+   */
+  public Pump eachBatch(BatchFunction function, String... args) {
+    return eachBatch(function, BatchAdapter.DEFAULT_BATCH_SIZE, args);
+  }
+
+  public Pump eachBatch(BatchFunction function, int batchSize, String... args) {
+    return new PipeAdapterPump(this, new Each(toPipe(), Fields.ALL,
+        new BatchAdapter(function, getArgSelector(args), batchSize), Fields.RESULTS));
+  }
+
+  /**
+   * Run a batch filter over the given fields, {@link BatchAdapter#DEFAULT_BATCH_SIZE} tuples at a
+   * time. See {@link BatchAdapter}.
+   */
+  public Pump eachBatch(BatchFilter filter, String... args) {
+    return eachBatch(filter, BatchAdapter.DEFAULT_BATCH_SIZE, args);
+  }
+
+  public Pump eachBatch(BatchFilter filter, int batchSize, String... args) {
+    return new PipeAdapterPump(this, new Each(toPipe(), Fields.ALL,
+        new BatchAdapter(filter, getArgSelector(args), batchSize), Fields.RESULTS));
+  }
+
+  /**
+   * Remove the tuples matching the predicate, all of whose conditions are checked by a single
+   * {@link PredicateFilter}.
+   */
+  public Pump removeWhere(Predicate predicate) {
+    PredicateFilter filter = new PredicateFilter(predicate);
+    return new FilterPump(this, filter, filter.getFieldNames());
+  }
+
   public Pump failOnNull(String errorText, String... args) {
     return new FilterPump(this, new FailOnNull(errorText, args), args);
   }
 
+  /**
+   * Remove tuples where any of the fields are null, counting each null field under
+   * {@link FailOnNull#COUNTER_GROUP}.
+   */
+  public Pump dropNulls(String... args) {
+    return new FilterPump(this, new FailOnNull(null, args, true), args);
+  }
+
+  /**
+   * Keep about fraction of the tuples, chosen by a hash of the given fields, or of the whole tuple
+   * if none are given, so the same seed always keeps the same tuples. See {@link HashSample}.
+   */
+  public Pump sample(double fraction, long seed, String... fields) {
+    return new FilterPump(this, new HashSample(fraction, seed), fields);
+  }
+
+  /**
+   * Keep at most limit tuples. Each map task passes on no more than limit tuples, and then a
+   * single reducer keeps the first limit of those, so only a little is shuffled however big the
+   * input is. Which tuples are kept is not defined.
+   */
+  public Pump limit(long limit) {
+    Pipe partial = new Each(toPipe(), new TaskLimit(limit));
+    Pipe grouped = new GroupBy(partial, Fields.NONE);
+    return new PipeAdapterPump(this, new Each(grouped, new TaskLimit(limit)));
+  }
+
   public Pump unique(String... uniqueFields) {
     return new PipeAdapterPump(this, new Unique(toPipe(), getArgSelector(uniqueFields)));
   }
 
+  /**
+   * Like {@link #unique(String...)}, but first removes duplicates on the map side with a
+   * {@link FilterPartialDuplicates} remembering up to capacity distinct tuples per task, which
+   * saves shuffling them when duplicates tend to be close together.
+   */
+  public Pump unique(int capacity, String... uniqueFields) {
+    Fields uniqueSelector = getArgSelector(uniqueFields);
+    Pipe partial = new Each(toPipe(), uniqueSelector, new FilterPartialDuplicates(capacity));
+    return new PipeAdapterPump(this, new Unique(partial, uniqueSelector));
+  }
+
   public GroupByPump groupby(String... fields) {
     return new GroupByPump(this, fields);
   }
 
-  public Pump aggregateby(AggregateBy.Functor functor, Aggregator aggregator, String... args) {
+  public AggregateByPump aggregateby(AggregateBy.Functor functor, Aggregator aggregator,
+      String... args) {
     return new AggregateByPump(this, functor, aggregator, args);
   }
 
-  public Pump average(String valueField, String averageField) {
+  public AggregateByPump average(String valueField, String averageField) {
     return new AggregateByPump(this,
         new AverageBy(new Fields(valueField), new Fields(averageField)));
   }
 
-  public Pump count(String countField) {
+  /**
+   * Average several fields at once without boxing. See {@link AverageFieldsBy}.
+   */
+  public AggregateByPump average(String[] valueFields, String[] averageFields) {
+    return new AggregateByPump(this,
+        new AverageFieldsBy(new Fields(valueFields), new Fields(averageFields)));
+  }
+
+  /**
+   * Estimate the number of distinct values of valueField in each group. See
+   * {@link ApproxDistinctBy}.
+   */
+  public AggregateByPump approxDistinct(String valueField, String countField) {
+    return approxDistinct(new String[] {valueField}, countField);
+  }
+
+  public AggregateByPump approxDistinct(String[] valueFields, String countField) {
+    return new AggregateByPump(this,
+        new ApproxDistinctBy(new Fields(valueFields), new Fields(countField)),
+        Collections.<Class>singleton(HyperLogLog.class));
+  }
+
+  /**
+   * Estimate a quantile of valueField in each group, e.g. 0.5 for the median. See
+   * {@link ApproxQuantileBy}.
+   */
+  public AggregateByPump approxQuantile(String valueField, double quantile,
+      String quantileField) {
+    return approxQuantiles(valueField, new double[] {quantile}, quantileField);
+  }
+
+  public AggregateByPump approxQuantiles(String valueField, double[] quantiles,
+      String... quantileFields) {
+    return new AggregateByPump(this,
+        new ApproxQuantileBy(new Fields(valueField), quantiles, new Fields(quantileFields)),
+        Collections.<Class>singleton(QuantileSketch.class));
+  }
+
+  public AggregateByPump count(String countField) {
     return new AggregateByPump(this, new CountBy(new Fields(countField)));
   }
 
-  public Pump first(String... firstFields) {
+  public AggregateByPump first(String... firstFields) {
     return new AggregateByPump(this, new FirstBy(new Fields(firstFields)));
   }
 
-  public Pump sum(String valueField, String sumField) {
+  public AggregateByPump sum(String valueField, String sumField) {
     return new AggregateByPump(this, new SumBy(new Fields(valueField), new Fields(sumField),
         double.class));
   }
 
+  /**
+   * Sum several fields at once without boxing. See {@link SumFieldsBy}.
+   * @param type long.class or double.class.
+   */
+  public AggregateByPump sum(String[] valueFields, String[] sumFields, Class type) {
+    return new AggregateByPump(this,
+        new SumFieldsBy(new Fields(valueFields), new Fields(sumFields), type));
+  }
+
   public AggregatorPump every(Aggregator agg, String... args) {
     return new AggregatorPump(this, agg, args);
   }
@@ -147,11 +327,11 @@ public abstract class Pump {
   }
 
   public Pump retain(String ... fieldsToKeep) {
-    return new PipeAdapterPump(this, new Retain(toPipe(), getArgSelector(fieldsToKeep)));
+    return new RetainPump(this, fieldsToKeep);
   }
 
   public Pump discard(String ... fieldsToDiscard) {
-    return new PipeAdapterPump(this, new Discard(toPipe(), getArgSelector(fieldsToDiscard)));
+    return new DiscardPump(this, fieldsToDiscard);
   }
 
   public Pump coerce(String field, Class toClass) {
@@ -165,11 +345,11 @@ public abstract class Pump {
   }
 
   public Pump coerce(String[] fields, Class<?>[] classes) {
-    return new PipeAdapterPump(this, new Coerce(toPipe(), new Fields(fields), classes));
+    return new CoercePump(this, fields, classes);
   }
 
   public Pump rename(String field, String toName) {
-    return new PipeAdapterPump(this, new Rename(toPipe(), new Fields(field), new Fields(toName)));
+    return new RenamePump(this, new String[] {field}, new String[] {toName});
   }
 
   public Pump replace(String field, String toName) {
@@ -180,6 +360,15 @@ public abstract class Pump {
     return new FunctionPump(this, new GetOrElse(value, toField), new String[] {fromField});
   }
 
+  /**
+   * Run the each() calls leading up to this point as a single operation, which saves building a
+   * tuple between every one of them. Stages shared with another branch of the assembly are run
+   * separately for that branch.
+   */
+  public Pump fuse() {
+    return new FusedPump(this);
+  }
+
   public Pump branch() {
     return branch(UUID.randomUUID().toString());
   }
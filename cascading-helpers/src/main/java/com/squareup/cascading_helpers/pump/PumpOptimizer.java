@@ -0,0 +1,716 @@
+package com.squareup.cascading_helpers.pump;
+
+import cascading.operation.filter.FilterNotNull;
+import cascading.operation.filter.FilterNull;
+import cascading.operation.regex.RegexFilter;
+import cascading.pipe.Pipe;
+import cascading.pipe.joiner.InnerJoin;
+import cascading.pipe.joiner.Joiner;
+import cascading.pipe.joiner.LeftJoin;
+import cascading.pipe.joiner.RightJoin;
+import cascading.tuple.Fields;
+import com.squareup.cascading_helpers.filter.FilterEquals;
+import com.squareup.cascading_helpers.filter.HashSample;
+import com.squareup.cascading_helpers.filter.PredicateFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rewrites a pump assembly before it's turned into pipes, so that less of it is shuffled:
+ * <ul>
+ *   <li>retains, discards and filters that look at nothing but the tuple in front of them, such
+ *   as RegexFilter, move above the group by or cogroup they follow, as far as the fields they
+ *   use allow;</li>
+ *   <li>adjacent renames become a single rename;</li>
+ *   <li>coercions of a field to the class it was last coerced to, or to Object, are dropped;</li>
+ *   <li>fields that nothing after a group by or cogroup reads are dropped before it, going by
+ *   the argument fields of every operation.</li>
+ * </ul>
+ * Moving something past a cogroup, or dropping fields, needs to know which fields a pump outputs.
+ * That is known from the fields of the sources, and of the retains, renames and functions that
+ * follow them. Fields are kept wherever that isn't known, or an operation reads every field.
+ *
+ * Any other filter stays where it is, as it may keep state, sample at random or limit what it
+ * sees, or depend on the order of the group, and moving it could change the output. Given that,
+ * the output is the same as without optimizing, in the same field order. Pumps read by more than
+ * one other pump stay as they are, as do the pumps before a pump that was built into a pipe when
+ * it was created, such as unique() or limit(). Each rewrite is logged and kept for
+ * {@link #getRewrites()}.
+ */
+public class PumpOptimizer {
+  private static final Logger LOG = LoggerFactory.getLogger(PumpOptimizer.class);
+  private static final String[] SIDES = {"left", "right"};
+  // filters that decide on each tuple by its arguments alone
+  private static final Set<Class<?>> STATELESS_FILTERS = new HashSet<Class<?>>(
+      Arrays.<Class<?>>asList(RegexFilter.class, FilterNull.class, FilterNotNull.class,
+          FilterEquals.class, PredicateFilter.class, HashSample.class));
+
+  private final Map<String, Fields> sourceFields;
+  private final Map<Pump, Integer> consumers = new IdentityHashMap<Pump, Integer>();
+  // pumps that can't be copied without doing their work twice
+  private final Set<Pump> pinned = Collections.newSetFromMap(new IdentityHashMap<Pump, Boolean>());
+  // pumps read by a pump that was built into a pipe when it was created
+  private final Set<Pump> built = Collections.newSetFromMap(new IdentityHashMap<Pump, Boolean>());
+  private final Map<Pump, Pump> optimized = new IdentityHashMap<Pump, Pump>();
+  private final Map<Pump, List<String>> outgoing = new IdentityHashMap<Pump, List<String>>();
+  // the fields read from each pump after it, or null for all of them
+  private final Map<Pump, Set<String>> demand = new IdentityHashMap<Pump, Set<String>>();
+  private final Map<Pump, Pump> pruned = new IdentityHashMap<Pump, Pump>();
+  private final List<String> rewrites = new ArrayList<String>();
+
+  public PumpOptimizer() {
+    this(Collections.<String, Fields>emptyMap());
+  }
+
+  /**
+   * @param sourceFields the fields of the sources, by name, where they're known.
+   */
+  public PumpOptimizer(Map<String, Fields> sourceFields) {
+    this.sourceFields = sourceFields;
+  }
+
+  public Pump optimize(Pump tail) {
+    return optimize(Collections.singletonList(tail)).get(0);
+  }
+
+  /**
+   * Optimize the tails of an assembly together, so that the pumps they share stay shared. Use a
+   * new optimizer for every assembly.
+   * @return the optimized tails, in the same order.
+   */
+  public List<Pump> optimize(List<Pump> tails) {
+    for (Pump tail : tails) {
+      count(tail);
+    }
+    List<Pump> rewrittenTails = new ArrayList<Pump>(tails.size());
+    for (Pump tail : tails) {
+      rewrittenTails.add(rewrite(tail));
+    }
+    return prune(rewrittenTails);
+  }
+
+  /**
+   * @return a description of every rewrite made so far.
+   */
+  public List<String> getRewrites() {
+    return Collections.unmodifiableList(rewrites);
+  }
+
+  private void count(Pump pump) {
+    Integer count = consumers.get(pump);
+    consumers.put(pump, count == null ? 1 : count + 1);
+    if (count != null) {
+      pinned.add(pump);
+    } else if (pump instanceof PipeAdapterPump) {
+      for (Pump input : pump.getInputs()) {
+        pin(input);
+      }
+    } else {
+      for (Pump input : pump.getInputs()) {
+        count(input);
+      }
+    }
+  }
+
+  private void pin(Pump pump) {
+    if (built.add(pump)) {
+      pinned.add(pump);
+      for (Pump input : pump.getInputs()) {
+        pin(input);
+      }
+    }
+  }
+
+  private Pump rewrite(Pump pump) {
+    Pump rewritten = optimized.get(pump);
+    if (rewritten == null) {
+      rewritten = pump;
+      if (!(pump instanceof PipeAdapterPump) && !built.contains(pump)) {
+        List<Pump> inputs = new ArrayList<Pump>();
+        boolean changed = false;
+        for (Pump input : pump.getInputs()) {
+          Pump rewrittenInput = rewrite(input);
+          changed |= rewrittenInput != input;
+          inputs.add(rewrittenInput);
+        }
+        if (changed) {
+          rewritten = pump.withInputs(inputs);
+        }
+        rewritten = simplify(rewritten);
+      }
+      if (pinned.contains(pump)) {
+        pinned.add(rewritten);
+      }
+      optimized.put(pump, rewritten);
+    }
+    return rewritten;
+  }
+
+  /** Rewrites the pump, whose inputs are rewritten already, until no rule applies. */
+  private Pump simplify(Pump pump) {
+    Pump simplified = null;
+    if (pump instanceof FilterPump) {
+      simplified = moveFilter((FilterPump) pump);
+    } else if (pump instanceof RetainPump) {
+      simplified = moveRetain((RetainPump) pump);
+    } else if (pump instanceof DiscardPump) {
+      simplified = moveDiscard((DiscardPump) pump);
+    } else if (pump instanceof RenamePump) {
+      simplified = mergeRenames((RenamePump) pump);
+    } else if (pump instanceof CoercePump) {
+      simplified = dropCoercions((CoercePump) pump);
+    }
+    return simplified == null ? pump : simplify(simplified);
+  }
+
+  private Pump moveFilter(FilterPump filter) {
+    Pump prev = filter.getPrev();
+    if (pinned.contains(prev) || !STATELESS_FILTERS.contains(filter.getFilter().getClass())) {
+      return null;
+    }
+    if (prev instanceof GroupByPump) {
+      report("moved " + describe(filter) + " above group by " + groupingFields(prev));
+      return prev.withInputs(list(simplify(filter.withInputs(prev.getInputs()))));
+    }
+    if (prev instanceof CoGroupPump) {
+      CoGroupPump cogroup = (CoGroupPump) prev;
+      List<String> args = Arrays.asList(filter.getArgumentNames());
+      List<Pump> inputs = new ArrayList<Pump>(cogroup.getInputs());
+      for (int side = 0; side < inputs.size(); side++) {
+        List<String> sideFields = outgoing(inputs.get(side));
+        if (!args.isEmpty() && sideFields != null && sideFields.containsAll(args)
+            && alwaysMatches(cogroup.getJoiner(), side)) {
+          report("moved " + describe(filter) + " above the " + SIDES[side] + " of cogroup "
+              + groupingFields(cogroup));
+          inputs.set(side, simplify(filter.withInputs(list(inputs.get(side)))));
+          return cogroup.withInputs(inputs);
+        }
+      }
+    }
+    return null;
+  }
+
+  private Pump moveRetain(RetainPump retain) {
+    Pump prev = retain.getPrev();
+    List<String> fields = Arrays.asList(retain.getFieldNames());
+    if (fields.isEmpty() || pinned.contains(prev)) {
+      return null;
+    }
+    if (prev instanceof GroupByPump) {
+      List<String> keys = groupingFields(prev);
+      if (keys.isEmpty()) {
+        return null;
+      }
+      Pump input = prev.getPrev();
+      if (fields.containsAll(keys)) {
+        report("moved retain of " + fields + " above group by " + keys);
+        return prev.withInputs(list(simplify(retain.withInputs(list(input)))));
+      }
+      List<String> kept = union(fields, keys);
+      if (!narrows(input, kept)) {
+        return null;
+      }
+      report("retained " + kept + " before group by " + keys);
+      Pump narrowed = simplify(new RetainPump(input, toArray(kept)));
+      return retain.withInputs(list(prev.withInputs(list(narrowed))));
+    }
+    if (prev instanceof CoGroupPump) {
+      CoGroupPump cogroup = (CoGroupPump) prev;
+      List<Pump> inputs = new ArrayList<Pump>(cogroup.getInputs());
+      boolean narrowed = false;
+      for (int side = 0; side < inputs.size(); side++) {
+        List<String> sideFields = outgoing(inputs.get(side));
+        if (sideFields == null) {
+          continue;
+        }
+        List<String> keys = joinFields(cogroup, side);
+        List<String> kept = new ArrayList<String>();
+        for (String field : sideFields) {
+          if (fields.contains(field) || keys.contains(field)) {
+            kept.add(field);
+          }
+        }
+        if (kept.size() < sideFields.size()) {
+          report("retained " + kept + " before the " + SIDES[side] + " of cogroup "
+              + groupingFields(cogroup));
+          inputs.set(side, simplify(new RetainPump(inputs.get(side), toArray(kept))));
+          narrowed = true;
+        }
+      }
+      return narrowed ? retain.withInputs(list(cogroup.withInputs(inputs))) : null;
+    }
+    return null;
+  }
+
+  private Pump moveDiscard(DiscardPump discard) {
+    Pump prev = discard.getPrev();
+    List<String> fields = Arrays.asList(discard.getFieldNames());
+    if (fields.isEmpty() || pinned.contains(prev)) {
+      return null;
+    }
+    List<Pump> inputs = new ArrayList<Pump>(prev.getInputs());
+    List<String> moved = new ArrayList<String>();
+    if (prev instanceof GroupByPump) {
+      List<String> keys = groupingFields(prev);
+      if (keys.isEmpty()) {
+        return null;
+      }
+      List<String> movable = new ArrayList<String>(fields);
+      movable.removeAll(keys);
+      if (!movable.isEmpty()) {
+        report("moved discard of " + movable + " above group by " + keys);
+        inputs.set(0, simplify(new DiscardPump(inputs.get(0), toArray(movable))));
+        moved.addAll(movable);
+      }
+    } else if (prev instanceof CoGroupPump) {
+      CoGroupPump cogroup = (CoGroupPump) prev;
+      for (int side = 0; side < inputs.size(); side++) {
+        List<String> sideFields = outgoing(inputs.get(side));
+        if (sideFields == null) {
+          continue;
+        }
+        List<String> movable = new ArrayList<String>(fields);
+        movable.retainAll(sideFields);
+        movable.removeAll(joinFields(cogroup, side));
+        if (!movable.isEmpty()) {
+          report("moved discard of " + movable + " above the " + SIDES[side] + " of cogroup "
+              + groupingFields(cogroup));
+          inputs.set(side, simplify(new DiscardPump(inputs.get(side), toArray(movable))));
+          moved.addAll(movable);
+        }
+      }
+    }
+    if (moved.isEmpty()) {
+      return null;
+    }
+    Pump grouped = prev.withInputs(inputs);
+    List<String> remaining = new ArrayList<String>(fields);
+    remaining.removeAll(moved);
+    return remaining.isEmpty() ? grouped : new DiscardPump(grouped, toArray(remaining));
+  }
+
+  /**
+   * Renamed fields move to the end of the tuple, in the order of the rename, so the merged rename
+   * lists the fields the second one renames last.
+   */
+  private Pump mergeRenames(RenamePump rename) {
+    Pump prev = rename.getPrev();
+    if (!(prev instanceof RenamePump) || pinned.contains(prev)) {
+      return null;
+    }
+    RenamePump first = (RenamePump) prev;
+    List<String> firstFrom = Arrays.asList(first.getFromFields());
+    List<String> firstTo = Arrays.asList(first.getToFields());
+    List<String> secondFrom = Arrays.asList(rename.getFromFields());
+    List<String> secondTo = Arrays.asList(rename.getToFields());
+    List<String> from = new ArrayList<String>();
+    List<String> to = new ArrayList<String>();
+    for (int i = 0; i < firstFrom.size(); i++) {
+      if (!secondFrom.contains(firstTo.get(i))) {
+        from.add(firstFrom.get(i));
+        to.add(firstTo.get(i));
+      }
+    }
+    for (int i = 0; i < secondFrom.size(); i++) {
+      int renamed = firstTo.indexOf(secondFrom.get(i));
+      if (renamed < 0 && firstFrom.contains(secondFrom.get(i))) {
+        return null;
+      }
+      from.add(renamed < 0 ? secondFrom.get(i) : firstFrom.get(renamed));
+      to.add(secondTo.get(i));
+    }
+    if (new HashSet<String>(from).size() < from.size()
+        || new HashSet<String>(to).size() < to.size()) {
+      return null;
+    }
+    report("merged renames of " + firstFrom + " to " + firstTo + " and " + secondFrom + " to "
+        + secondTo);
+    return new RenamePump(first.getPrev(), toArray(from), toArray(to));
+  }
+
+  private Pump dropCoercions(CoercePump coerce) {
+    String[] fields = coerce.getFieldNames();
+    Class<?>[] classes = coerce.getClasses();
+    List<String> kept = new ArrayList<String>();
+    List<Class<?>> keptClasses = new ArrayList<Class<?>>();
+    List<String> dropped = new ArrayList<String>();
+    for (int i = 0; i < fields.length; i++) {
+      if (classes[i] == Object.class || classes[i] == coercedTo(coerce.getPrev(), fields[i])) {
+        dropped.add(fields[i]);
+      } else {
+        kept.add(fields[i]);
+        keptClasses.add(classes[i]);
+      }
+    }
+    if (dropped.isEmpty() && fields.length > 0) {
+      return null;
+    }
+    report("dropped no-op coercion of " + dropped);
+    if (kept.isEmpty()) {
+      return coerce.getPrev();
+    }
+    return new CoercePump(coerce.getPrev(), toArray(kept),
+        keptClasses.toArray(new Class<?>[keptClasses.size()]));
+  }
+
+  /**
+   * Works out the fields read from every pump, from the tails up, and then retains just those
+   * before every group by and cogroup.
+   */
+  private List<Pump> prune(List<Pump> tails) {
+    List<Pump> order = new ArrayList<Pump>();
+    Set<Pump> shared = Collections.newSetFromMap(new IdentityHashMap<Pump, Boolean>());
+    Set<Pump> visited = Collections.newSetFromMap(new IdentityHashMap<Pump, Boolean>());
+    for (Pump tail : tails) {
+      visit(tail, visited, shared, order);
+      require(tail, null);
+    }
+    // every pump comes after the pumps reading it
+    for (int i = order.size() - 1; i >= 0; i--) {
+      Pump pump = order.get(i);
+      if (pump instanceof EveryPump) {
+        // everies read the values of the grouping, whichever every comes before them
+        Pump grouping = pump;
+        Set<String> values = new HashSet<String>();
+        while (grouping instanceof EveryPump) {
+          String[] args = ((EveryPump) grouping).args;
+          if (args.length == 0) {
+            values = null;
+          } else if (values != null) {
+            values.addAll(Arrays.asList(args));
+          }
+          grouping = grouping.getPrev();
+        }
+        require(grouping, values);
+      } else if (isRebuildable(pump)) {
+        List<Pump> inputs = pump.getInputs();
+        for (int side = 0; side < inputs.size(); side++) {
+          require(inputs.get(side), required(pump, side));
+        }
+      }
+    }
+
+    List<Pump> prunedTails = new ArrayList<Pump>(tails.size());
+    for (Pump tail : tails) {
+      prunedTails.add(prune(tail, shared));
+    }
+    return prunedTails;
+  }
+
+  private void visit(Pump pump, Set<Pump> visited, Set<Pump> shared, List<Pump> order) {
+    if (!visited.add(pump)) {
+      shared.add(pump);
+      return;
+    }
+    if (isRebuildable(pump)) {
+      for (Pump input : pump.getInputs()) {
+        visit(input, visited, shared, order);
+      }
+    }
+    order.add(pump);
+  }
+
+  private boolean isRebuildable(Pump pump) {
+    return !(pump instanceof PipeAdapterPump) && !built.contains(pump);
+  }
+
+  private void require(Pump pump, Set<String> fields) {
+    if (!demand.containsKey(pump)) {
+      demand.put(pump, fields == null ? null : new HashSet<String>(fields));
+    } else if (demand.get(pump) != null) {
+      if (fields == null) {
+        demand.put(pump, null);
+      } else {
+        demand.get(pump).addAll(fields);
+      }
+    }
+  }
+
+  /**
+   * @return the fields the pump reads from one of its inputs, or null for all of them.
+   */
+  private Set<String> required(Pump pump, int input) {
+    Set<String> needed = demand.get(pump);
+    if (pump instanceof RetainPump) {
+      return fieldSet(((RetainPump) pump).getFieldNames());
+    } else if (pump instanceof BranchPump || pump instanceof FusedPump) {
+      return needed;
+    } else if (pump instanceof BloomFilterPump && input == 1) {
+      return fieldSet(names(((BloomFilterPump) pump).getOtherKeyFields()));
+    } else if (needed == null) {
+      return null;
+    }
+
+    Set<String> required = new HashSet<String>(needed);
+    List<String> read;
+    if (pump instanceof DiscardPump) {
+      read = Arrays.asList(((DiscardPump) pump).getFieldNames());
+    } else if (pump instanceof RenamePump) {
+      required.removeAll(Arrays.asList(((RenamePump) pump).getToFields()));
+      read = Arrays.asList(((RenamePump) pump).getFromFields());
+    } else if (pump instanceof CoercePump) {
+      read = Arrays.asList(((CoercePump) pump).getFieldNames());
+    } else if (pump instanceof FilterPump) {
+      read = Arrays.asList(((FilterPump) pump).getArgumentNames());
+    } else if (pump instanceof FunctionPump) {
+      List<String> declared = names(((FunctionPump) pump).getDeclaredFields());
+      if (declared == null) {
+        return null;
+      }
+      required.removeAll(declared);
+      read = Arrays.asList(((FunctionPump) pump).getArgumentNames());
+    } else if (pump instanceof BloomFilterPump) {
+      read = names(((BloomFilterPump) pump).getKeyFields());
+    } else if (pump instanceof GroupByPump) {
+      read = ((GroupByPump) pump).getFieldNames().length == 0 ? null : groupingFields(pump);
+    } else if (pump instanceof CoGroupPump) {
+      read = joinFields((CoGroupPump) pump, input);
+    } else {
+      return null;
+    }
+    // reading no fields in particular means reading all of them
+    if (read == null || read.isEmpty()) {
+      return null;
+    }
+    required.addAll(read);
+    return required;
+  }
+
+  private Pump prune(Pump pump, Set<Pump> shared) {
+    Pump rewritten = pruned.get(pump);
+    if (rewritten == null) {
+      rewritten = pump;
+      if (isRebuildable(pump)) {
+        List<Pump> inputs = pump.getInputs();
+        List<Pump> prunedInputs = new ArrayList<Pump>();
+        boolean changed = false;
+        for (int side = 0; side < inputs.size(); side++) {
+          Pump input = prune(inputs.get(side), shared);
+          if (pump instanceof GroupByPump || pump instanceof CoGroupPump) {
+            boolean replaceable = !shared.contains(inputs.get(side))
+                && isRebuildable(inputs.get(side));
+            input = retainRequired(pump, side, input, replaceable);
+          }
+          changed |= input != inputs.get(side);
+          prunedInputs.add(input);
+        }
+        if (changed) {
+          rewritten = pump.withInputs(prunedInputs);
+        }
+      }
+      pruned.put(pump, rewritten);
+    }
+    return rewritten;
+  }
+
+  private Pump retainRequired(Pump grouping, int side, Pump input, boolean replaceable) {
+    Set<String> required = required(grouping, side);
+    List<String> fields = outgoing(input);
+    if (required == null || fields == null) {
+      return input;
+    }
+    List<String> kept = new ArrayList<String>();
+    List<String> dropped = new ArrayList<String>();
+    for (String field : fields) {
+      if (required.contains(field)) {
+        kept.add(field);
+      } else {
+        dropped.add(field);
+      }
+    }
+    if (kept.isEmpty() || dropped.isEmpty()) {
+      return input;
+    }
+    if (grouping instanceof CoGroupPump) {
+      report("pruned " + dropped + " before the " + SIDES[side] + " of cogroup "
+          + groupingFields(grouping));
+    } else {
+      report("pruned " + dropped + " before group by " + groupingFields(grouping));
+    }
+    // a retain of its own would only be read here
+    if (input instanceof RetainPump && replaceable) {
+      input = input.getPrev();
+    }
+    return new RetainPump(input, toArray(kept));
+  }
+
+  /**
+   * @return the class the field was last coerced to before the given pump, or null if it wasn't
+   *     or something since may have changed it.
+   */
+  private static Class<?> coercedTo(Pump pump, String field) {
+    while (true) {
+      if (pump instanceof CoercePump) {
+        int coerced = Arrays.asList(((CoercePump) pump).getFieldNames()).indexOf(field);
+        if (coerced >= 0) {
+          return ((CoercePump) pump).getClasses()[coerced];
+        }
+      } else if (pump instanceof RenamePump) {
+        RenamePump rename = (RenamePump) pump;
+        if (Arrays.asList(rename.getFromFields()).contains(field)
+            || Arrays.asList(rename.getToFields()).contains(field)) {
+          return null;
+        }
+      } else if (pump instanceof RetainPump) {
+        if (!Arrays.asList(((RetainPump) pump).getFieldNames()).contains(field)) {
+          return null;
+        }
+      } else if (pump instanceof DiscardPump) {
+        String[] discarded = ((DiscardPump) pump).getFieldNames();
+        if (discarded.length == 0 || Arrays.asList(discarded).contains(field)) {
+          return null;
+        }
+      } else if (!(pump instanceof FilterPump) && !(pump instanceof FunctionPump)
+          && !(pump instanceof FusedPump) && !(pump instanceof BranchPump)
+          && !(pump instanceof GroupByPump)) {
+        return null;
+      }
+      pump = pump.getPrev();
+    }
+  }
+
+  /**
+   * @return the names of the fields the pump outputs, in order, or null if they aren't known.
+   */
+  private List<String> outgoing(Pump pump) {
+    if (outgoing.containsKey(pump)) {
+      return outgoing.get(pump);
+    }
+    List<String> fields = null;
+    if (pump instanceof PipeAdapterPump) {
+      Pipe pipe = pump.toPipe();
+      if (pump.getPrev() == null && pipe.getPrevious().length == 0) {
+        fields = names(sourceFields.get(pipe.getName()));
+      }
+    } else if (pump instanceof RetainPump) {
+      String[] retained = ((RetainPump) pump).getFieldNames();
+      if (retained.length > 0) {
+        fields = Arrays.asList(retained);
+      }
+    } else if (pump instanceof DiscardPump) {
+      List<String> discarded = Arrays.asList(((DiscardPump) pump).getFieldNames());
+      List<String> incoming = outgoing(pump.getPrev());
+      if (incoming != null && !discarded.isEmpty() && incoming.containsAll(discarded)) {
+        fields = new ArrayList<String>(incoming);
+        fields.removeAll(discarded);
+      }
+    } else if (pump instanceof RenamePump) {
+      RenamePump rename = (RenamePump) pump;
+      List<String> incoming = outgoing(pump.getPrev());
+      if (incoming != null && incoming.containsAll(Arrays.asList(rename.getFromFields()))) {
+        fields = new ArrayList<String>(incoming);
+        fields.removeAll(Arrays.asList(rename.getFromFields()));
+        fields.addAll(Arrays.asList(rename.getToFields()));
+      }
+    } else if (pump instanceof FunctionPump) {
+      List<String> incoming = outgoing(pump.getPrev());
+      List<String> declared = names(((FunctionPump) pump).getDeclaredFields());
+      if (incoming != null && declared != null) {
+        fields = union(incoming, declared);
+      }
+    } else if (pump instanceof CoGroupPump) {
+      List<String> left = outgoing(pump.getInputs().get(0));
+      List<String> right = outgoing(pump.getInputs().get(1));
+      if (left != null && right != null) {
+        fields = union(left, right);
+      }
+    } else if (pump instanceof CoercePump || pump instanceof FilterPump
+        || pump instanceof FusedPump || pump instanceof BranchPump
+        || pump instanceof GroupByPump || pump instanceof BloomFilterPump) {
+      fields = outgoing(pump.getPrev());
+    }
+    outgoing.put(pump, fields);
+    return fields;
+  }
+
+  private static List<String> names(Fields fields) {
+    if (fields == null || !fields.isDefined()) {
+      return null;
+    }
+    List<String> names = new ArrayList<String>();
+    for (int i = 0; i < fields.size(); i++) {
+      if (!(fields.get(i) instanceof String)) {
+        return null;
+      }
+      names.add((String) fields.get(i));
+    }
+    return names;
+  }
+
+  /**
+   * @return whether every tuple out of the join has a tuple from the given side, rather than
+   *     nulls, so that filtering that side first removes the same tuples.
+   */
+  private static boolean alwaysMatches(Joiner joiner, int side) {
+    return joiner instanceof InnerJoin
+        || (side == 0 ? joiner instanceof LeftJoin : joiner instanceof RightJoin);
+  }
+
+  private static List<String> groupingFields(Pump pump) {
+    if (pump instanceof CoGroupPump) {
+      return joinFields((CoGroupPump) pump, 0);
+    }
+    GroupByPump groupby = (GroupByPump) pump;
+    return union(Arrays.asList(groupby.getFieldNames()),
+        Arrays.asList(groupby.getSortFieldNames()));
+  }
+
+  private static List<String> joinFields(CoGroupPump cogroup, int side) {
+    return Arrays.asList(side == 0 ? cogroup.getLeftFields() : cogroup.getRightFields());
+  }
+
+  private static String describe(FilterPump filter) {
+    String description = "filter on " + Arrays.asList(filter.getArgumentNames());
+    if (filter.getCallSite() != null && filter.getCallSite().getCaller() != null) {
+      description += " from " + filter.getCallSite().getCaller();
+    }
+    return description;
+  }
+
+  private void report(String rewrite) {
+    rewrites.add(rewrite);
+    LOG.info("pump optimizer {}", rewrite);
+  }
+
+  /**
+   * @return whether the pump is known to output fields other than the given ones.
+   */
+  private boolean narrows(Pump pump, List<String> kept) {
+    List<String> fields = outgoing(pump);
+    return fields != null && !kept.containsAll(fields);
+  }
+
+  private static Set<String> fieldSet(String[] fields) {
+    return fields.length == 0 ? null : new HashSet<String>(Arrays.asList(fields));
+  }
+
+  private static Set<String> fieldSet(List<String> fields) {
+    return fields == null ? null : fieldSet(toArray(fields));
+  }
+
+  private static List<String> union(List<String> first, List<String> second) {
+    List<String> union = new ArrayList<String>(first);
+    for (String field : second) {
+      if (!union.contains(field)) {
+        union.add(field);
+      }
+    }
+    return union;
+  }
+
+  private static List<Pump> list(Pump pump) {
+    return Collections.singletonList(pump);
+  }
+
+  private static String[] toArray(List<String> fields) {
+    return fields.toArray(new String[fields.size()]);
+  }
+}
@@ -0,0 +1,41 @@
+package com.squareup.cascading_helpers.pump;
+
+import cascading.pipe.Pipe;
+import cascading.pipe.assembly.Rename;
+import cascading.tuple.Fields;
+import java.util.List;
+
+/**
+ * Renames fields. Like {@link Rename}, the renamed fields move to the end of the tuple.
+ */
+public class RenamePump extends Pump {
+  private final Pump prev;
+  private final String[] fromFields;
+  private final String[] toFields;
+
+  RenamePump(Pump prev, String[] fromFields, String[] toFields) {
+    this.prev = prev;
+    this.fromFields = fromFields;
+    this.toFields = toFields;
+  }
+
+  String[] getFromFields() {
+    return fromFields;
+  }
+
+  String[] getToFields() {
+    return toFields;
+  }
+
+  @Override Pump getPrev() {
+    return prev;
+  }
+
+  @Override Pump withInputs(List<Pump> inputs) {
+    return new RenamePump(inputs.get(0), fromFields, toFields);
+  }
+
+  @Override Pipe getPipeInternal() {
+    return new Rename(prev.toPipe(), new Fields(fromFields), new Fields(toFields));
+  }
+}
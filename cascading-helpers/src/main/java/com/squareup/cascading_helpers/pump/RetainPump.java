@@ -0,0 +1,31 @@
+package com.squareup.cascading_helpers.pump;
+
+import cascading.pipe.Pipe;
+import cascading.pipe.assembly.Retain;
+import java.util.List;
+
+public class RetainPump extends Pump {
+  private final Pump prev;
+  private final String[] fields;
+
+  RetainPump(Pump prev, String[] fields) {
+    this.prev = prev;
+    this.fields = fields;
+  }
+
+  String[] getFieldNames() {
+    return fields;
+  }
+
+  @Override Pump getPrev() {
+    return prev;
+  }
+
+  @Override Pump withInputs(List<Pump> inputs) {
+    return new RetainPump(inputs.get(0), fields);
+  }
+
+  @Override Pipe getPipeInternal() {
+    return new Retain(prev.toPipe(), getArgSelector(fields));
+  }
+}
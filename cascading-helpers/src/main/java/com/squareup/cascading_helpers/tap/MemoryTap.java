@@ -0,0 +1,165 @@
+package com.squareup.cascading_helpers.tap;
+
+import cascading.flow.FlowProcess;
+import cascading.scheme.Scheme;
+import cascading.scheme.SinkCall;
+import cascading.scheme.SourceCall;
+import cascading.tap.SinkMode;
+import cascading.tap.Tap;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import cascading.tuple.TupleEntryCollector;
+import cascading.tuple.TupleEntryIterator;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * A local mode tap that keeps its tuples in a list, for running flows built with
+ * {@link com.squareup.cascading_helpers.FlowBuilder#buildLocal()} without touching the file
+ * system. A source tap reads the tuples it was given; a sink tap collects what the flow writes,
+ * which {@link #getTuples()} returns once the flow has completed.
+ */
+public class MemoryTap extends Tap<Properties, InputStream, OutputStream> {
+  private final String identifier = "memory:" + UUID.randomUUID();
+  private final List<Tuple> tuples;
+  private long modifiedTime = System.currentTimeMillis();
+
+  /**
+   * A source tap reading the given tuples, each with the given fields.
+   */
+  public MemoryTap(Fields fields, List<Tuple> tuples) {
+    super(new MemoryScheme(fields), SinkMode.KEEP);
+    this.tuples = new ArrayList<Tuple>(tuples);
+  }
+
+  public MemoryTap(Fields fields, Tuple... tuples) {
+    this(fields, Arrays.asList(tuples));
+  }
+
+  /**
+   * A sink tap, which keeps whatever fields the flow writes to it.
+   */
+  public MemoryTap() {
+    super(new MemoryScheme(Fields.ALL), SinkMode.REPLACE);
+    this.tuples = new ArrayList<Tuple>();
+  }
+
+  /**
+   * @return a copy of the tuples in the tap.
+   */
+  public synchronized List<Tuple> getTuples() {
+    return new ArrayList<Tuple>(tuples);
+  }
+
+  @Override public String getIdentifier() {
+    return identifier;
+  }
+
+  @Override public TupleEntryIterator openForRead(FlowProcess<Properties> flowProcess,
+      InputStream input) {
+    return new MemoryIterator(getSourceFields(), getTuples().iterator());
+  }
+
+  @Override public TupleEntryCollector openForWrite(FlowProcess<Properties> flowProcess,
+      OutputStream output) {
+    return new MemoryCollector();
+  }
+
+  @Override public boolean createResource(Properties conf) {
+    return true;
+  }
+
+  @Override public synchronized boolean deleteResource(Properties conf) {
+    tuples.clear();
+    modifiedTime = System.currentTimeMillis();
+    return true;
+  }
+
+  @Override public boolean resourceExists(Properties conf) {
+    return true;
+  }
+
+  @Override public synchronized long getModifiedTime(Properties conf) {
+    return modifiedTime;
+  }
+
+  private synchronized void addAll(List<Tuple> added) {
+    tuples.addAll(added);
+    modifiedTime = System.currentTimeMillis();
+  }
+
+  private static class MemoryIterator extends TupleEntryIterator {
+    private final Iterator<Tuple> iterator;
+    private final TupleEntry entry;
+
+    MemoryIterator(Fields fields, Iterator<Tuple> iterator) {
+      super(fields);
+      this.iterator = iterator;
+      this.entry = new TupleEntry(fields);
+    }
+
+    @Override public boolean hasNext() {
+      return iterator.hasNext();
+    }
+
+    @Override public TupleEntry next() {
+      // a copy, so that nothing downstream can change the tap's tuples
+      entry.setTuple(new Tuple(iterator.next()));
+      return entry;
+    }
+
+    @Override public void remove() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override public void close() {
+    }
+  }
+
+  /** Collects into a list of its own, so the tap only sees complete output. */
+  private class MemoryCollector extends TupleEntryCollector {
+    private final List<Tuple> collected = new ArrayList<Tuple>();
+
+    @Override protected void collect(TupleEntry tupleEntry) {
+      collected.add(tupleEntry.getTupleCopy());
+    }
+
+    @Override public void close() {
+      addAll(collected);
+      collected.clear();
+    }
+  }
+
+  /** Only declares the tap's fields; the tap reads and writes its tuples itself. */
+  private static class MemoryScheme
+      extends Scheme<Properties, InputStream, OutputStream, Void, Void> {
+    MemoryScheme(Fields fields) {
+      super(fields, fields);
+    }
+
+    @Override public void sourceConfInit(FlowProcess<Properties> flowProcess,
+        Tap<Properties, InputStream, OutputStream> tap, Properties conf) {
+    }
+
+    @Override public void sinkConfInit(FlowProcess<Properties> flowProcess,
+        Tap<Properties, InputStream, OutputStream> tap, Properties conf) {
+    }
+
+    @Override public boolean source(FlowProcess<Properties> flowProcess,
+        SourceCall<Void, InputStream> sourceCall) {
+      throw new UnsupportedOperationException("memory taps read their own tuples");
+    }
+
+    @Override public void sink(FlowProcess<Properties> flowProcess,
+        SinkCall<Void, OutputStream> sinkCall) {
+      throw new UnsupportedOperationException("memory taps write their own tuples");
+    }
+  }
+}
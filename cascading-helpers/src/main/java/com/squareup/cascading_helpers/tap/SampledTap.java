@@ -0,0 +1,165 @@
+package com.squareup.cascading_helpers.tap;
+
+import cascading.flow.FlowProcess;
+import cascading.tap.Tap;
+import cascading.tuple.TupleEntry;
+import cascading.tuple.TupleEntryCollector;
+import cascading.tuple.TupleEntryIterator;
+import com.squareup.cascading_helpers.filter.HashSample;
+import com.squareup.cascading_helpers.util.TupleHasher;
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+/**
+ * A source tap that reads only a sample of another tap, chosen by whole tuple the same way
+ * {@link HashSample} chooses them and optionally cut off after a number of tuples from each part
+ * of the input, so that a flow can be tried out on a small part of its input without changing its
+ * assembly. Everything but reading is passed on to the sampled tap.
+ */
+public class SampledTap<Config, Input, Output> extends Tap<Config, Input, Output> {
+  private final Tap<Config, Input, Output> tap;
+  private final double fraction;
+  private final long seed;
+  private final long limit;
+
+  /**
+   * @param fraction how much of the tap to read, between 0 and 1.
+   */
+  public SampledTap(Tap<Config, Input, Output> tap, double fraction, long seed) {
+    this(tap, fraction, seed, Long.MAX_VALUE);
+  }
+
+  /**
+   * @param limit the most tuples to read from each split, or other part of the input the tap is
+   * opened for, after sampling.
+   */
+  public SampledTap(Tap<Config, Input, Output> tap, double fraction, long seed, long limit) {
+    super(tap.getScheme(), tap.getSinkMode());
+    if (fraction < 0 || fraction > 1) {
+      throw new IllegalArgumentException("fraction must be between 0 and 1, not " + fraction);
+    }
+    if (limit < 0) {
+      throw new IllegalArgumentException("limit must not be negative");
+    }
+    this.tap = tap;
+    this.fraction = fraction;
+    this.seed = seed;
+    this.limit = limit;
+  }
+
+  public Tap<Config, Input, Output> getSampledTap() {
+    return tap;
+  }
+
+  @Override public String getIdentifier() {
+    return tap.getIdentifier();
+  }
+
+  @Override public String getFullIdentifier(FlowProcess<Config> flowProcess) {
+    return tap.getFullIdentifier(flowProcess);
+  }
+
+  @Override public String getFullIdentifier(Config conf) {
+    return tap.getFullIdentifier(conf);
+  }
+
+  @Override public void sourceConfInit(FlowProcess<Config> flowProcess, Config conf) {
+    tap.sourceConfInit(flowProcess, conf);
+  }
+
+  @Override public void sinkConfInit(FlowProcess<Config> flowProcess, Config conf) {
+    tap.sinkConfInit(flowProcess, conf);
+  }
+
+  @Override public TupleEntryIterator openForRead(FlowProcess<Config> flowProcess, Input input)
+      throws IOException {
+    return new SampledIterator(tap.openForRead(flowProcess, input));
+  }
+
+  @Override public TupleEntryCollector openForWrite(FlowProcess<Config> flowProcess,
+      Output output) throws IOException {
+    return tap.openForWrite(flowProcess, output);
+  }
+
+  @Override public boolean createResource(Config conf) throws IOException {
+    return tap.createResource(conf);
+  }
+
+  @Override public boolean deleteResource(Config conf) throws IOException {
+    return tap.deleteResource(conf);
+  }
+
+  @Override public boolean commitResource(Config conf) throws IOException {
+    return tap.commitResource(conf);
+  }
+
+  @Override public boolean rollbackResource(Config conf) throws IOException {
+    return tap.rollbackResource(conf);
+  }
+
+  @Override public boolean resourceExists(Config conf) throws IOException {
+    return tap.resourceExists(conf);
+  }
+
+  @Override public long getModifiedTime(Config conf) throws IOException {
+    return tap.getModifiedTime(conf);
+  }
+
+  @Override public boolean equals(Object object) {
+    if (!(object instanceof SampledTap)) {
+      return false;
+    }
+    SampledTap other = (SampledTap) object;
+    return tap.equals(other.tap) && fraction == other.fraction && seed == other.seed
+        && limit == other.limit;
+  }
+
+  @Override public int hashCode() {
+    return tap.hashCode() * 31 + (int) seed;
+  }
+
+  @Override public String toString() {
+    return "Sampled(" + fraction + ")[" + tap + "]";
+  }
+
+  /** Skips the entries that aren't in the sample. */
+  private class SampledIterator extends TupleEntryIterator {
+    private final TupleEntryIterator iterator;
+    private final TupleHasher hasher = new TupleHasher();
+    private TupleEntry next;
+    private long read;
+
+    SampledIterator(TupleEntryIterator iterator) {
+      super(iterator.getFields());
+      this.iterator = iterator;
+    }
+
+    @Override public boolean hasNext() {
+      while (next == null && read < limit && iterator.hasNext()) {
+        TupleEntry entry = iterator.next();
+        if (HashSample.isSampled(hasher.hash(entry.getTuple()), fraction, seed)) {
+          next = entry;
+        }
+      }
+      return next != null;
+    }
+
+    @Override public TupleEntry next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      TupleEntry entry = next;
+      next = null;
+      read++;
+      return entry;
+    }
+
+    @Override public void remove() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override public void close() throws IOException {
+      iterator.close();
+    }
+  }
+}
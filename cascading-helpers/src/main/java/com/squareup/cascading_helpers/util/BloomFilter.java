@@ -0,0 +1,98 @@
+package com.squareup.cascading_helpers.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import org.apache.hadoop.io.Writable;
+
+/**
+ * A Bloom filter over 64-bit hashes, such as those from {@link TupleHasher}. It's a Writable so
+ * that it can be carried in a tuple from the tasks that build it to the tasks that use it.
+ */
+public final class BloomFilter implements Writable {
+  private long numBits;
+  private int numHashes;
+  private long[] bits;
+
+  /** For deserialization only. */
+  public BloomFilter() {}
+
+  /**
+   * @param expectedKeys how many distinct keys will be added.
+   * @param falsePositiveRate how often a key that wasn't added may appear to have been, once the
+   * expected number of keys have been.
+   */
+  public BloomFilter(long expectedKeys, double falsePositiveRate) {
+    if (expectedKeys < 1) {
+      throw new IllegalArgumentException("expected keys must be positive");
+    }
+    if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+      throw new IllegalArgumentException("false positive rate must be between 0 and 1");
+    }
+    double ln2 = Math.log(2);
+    long words = (long) Math.ceil(
+        -expectedKeys * Math.log(falsePositiveRate) / (ln2 * ln2) / 64);
+    if (words > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("a bloom filter for " + expectedKeys
+          + " keys at that rate is too large");
+    }
+    bits = new long[(int) Math.max(1, words)];
+    numBits = bits.length * 64L;
+    numHashes = (int) Math.max(1, Math.round((double) numBits / expectedKeys * ln2));
+  }
+
+  public BloomFilter(BloomFilter other) {
+    numBits = other.numBits;
+    numHashes = other.numHashes;
+    bits = other.bits.clone();
+  }
+
+  public void add(long hash) {
+    // derive the k probes from two hashes, as in Kirsch and Mitzenmacher
+    long step = Hashing.mix(hash) | 1;
+    for (int i = 0; i < numHashes; i++) {
+      long bit = ((hash + i * step) & Long.MAX_VALUE) % numBits;
+      bits[(int) (bit >>> 6)] |= 1L << bit;
+    }
+  }
+
+  public boolean mightContain(long hash) {
+    long step = Hashing.mix(hash) | 1;
+    for (int i = 0; i < numHashes; i++) {
+      long bit = ((hash + i * step) & Long.MAX_VALUE) % numBits;
+      if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Add every key added to another filter built with the same parameters.
+   */
+  public void merge(BloomFilter other) {
+    if (other.numBits != numBits || other.numHashes != numHashes) {
+      throw new IllegalArgumentException("can't merge bloom filters of different shapes");
+    }
+    for (int i = 0; i < bits.length; i++) {
+      bits[i] |= other.bits[i];
+    }
+  }
+
+  @Override public void write(DataOutput out) throws IOException {
+    out.writeInt(numHashes);
+    out.writeInt(bits.length);
+    for (long word : bits) {
+      out.writeLong(word);
+    }
+  }
+
+  @Override public void readFields(DataInput in) throws IOException {
+    numHashes = in.readInt();
+    bits = new long[in.readInt()];
+    for (int i = 0; i < bits.length; i++) {
+      bits[i] = in.readLong();
+    }
+    numBits = bits.length * 64L;
+  }
+}
@@ -0,0 +1,277 @@
+package com.squareup.cascading_helpers.util;
+
+import cascading.tuple.Tuple;
+import cascading.tuple.hadoop.TupleSerialization;
+import cascading.tuple.hadoop.io.HadoopTupleInputStream;
+import cascading.tuple.hadoop.io.HadoopTupleOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * Sorts more tuples than fit in memory. Added tuples are buffered until their estimated size
+ * reaches the memory limit, then sorted and spilled to a run file with Cascading's Hadoop tuple
+ * serialization, as Cascading's own spillable lists are; {@link #sorted()} merges the runs back
+ * together, a bounded number of files at a time. The sort is stable: tuples that compare equal
+ * come out in the order they were added.
+ *
+ * Close the sorter to delete its run files.
+ */
+public class ExternalSorter implements Closeable {
+  // what a tuple and its list of values cost on the heap, roughly
+  private static final int TUPLE_OVERHEAD = 64;
+  // a reference, and the object header and value of a boxed primitive or other small value
+  private static final int VALUE_OVERHEAD = 32;
+  private static final int BUFFER_SIZE = 64 * 1024;
+  /** The most runs merged at once, which bounds open files and read buffers. */
+  static final int MERGE_WIDTH = 64;
+
+  private final Comparator<Tuple> comparator;
+  private final long memoryLimit;
+  private final File directory;
+  private final Configuration conf;
+  private final List<Tuple> buffer = new ArrayList<Tuple>();
+  private final List<File> runs = new ArrayList<File>();
+  private final List<Run> open = new ArrayList<Run>();
+  private TupleSerialization serialization;
+  private long bufferedBytes;
+  private boolean sorting;
+
+  /**
+   * @param memoryLimit roughly how many bytes of tuples to buffer before spilling a run.
+   * @param directory where to write run files, or null for the default temporary directory.
+   */
+  public ExternalSorter(Comparator<Tuple> comparator, long memoryLimit, File directory) {
+    this(comparator, memoryLimit, directory, null);
+  }
+
+  /**
+   * @param conf the configuration whose serializations and serialization tokens to write run
+   *     files with, or null for Hadoop's defaults.
+   */
+  public ExternalSorter(Comparator<Tuple> comparator, long memoryLimit, File directory,
+      Configuration conf) {
+    if (memoryLimit < 1) {
+      throw new IllegalArgumentException("memoryLimit must be positive");
+    }
+    this.comparator = comparator;
+    this.memoryLimit = memoryLimit;
+    this.directory = directory;
+    this.conf = conf;
+  }
+
+  /**
+   * Add a tuple, which the sorter may keep until it's read back; don't change it afterwards.
+   */
+  public void add(Tuple tuple) throws IOException {
+    if (sorting) {
+      throw new IllegalStateException("can't add tuples once sorted");
+    }
+    bufferedBytes += estimateSize(tuple);
+    buffer.add(tuple);
+    if (bufferedBytes >= memoryLimit) {
+      spill();
+    }
+  }
+
+  /**
+   * @return the number of run files spilled so far.
+   */
+  public int getRunCount() {
+    return runs.size();
+  }
+
+  /**
+   * @return every added tuple, in order. Sorting again returns the same tuples again.
+   */
+  public Iterator<Tuple> sorted() throws IOException {
+    sorting = true;
+    if (runs.isEmpty()) {
+      Collections.sort(buffer, comparator);
+      return Collections.unmodifiableList(buffer).iterator();
+    }
+    if (!buffer.isEmpty()) {
+      spill();
+    }
+    // merge the earliest runs first so that equal tuples keep the order they were added in
+    while (runs.size() > MERGE_WIDTH) {
+      List<File> merged = runs.subList(0, MERGE_WIDTH);
+      File run = newRun();
+      Merge merge = new Merge(new ArrayList<File>(merged));
+      try {
+        write(run, merge);
+      } finally {
+        merge.close();
+      }
+      for (File file : merged) {
+        file.delete();
+      }
+      merged.clear();
+      runs.add(0, run);
+    }
+    return new Merge(new ArrayList<File>(runs));
+  }
+
+  /** Deletes the run files, closing any still being read. */
+  @Override public void close() throws IOException {
+    for (Run run : new ArrayList<Run>(open)) {
+      run.close();
+    }
+    for (File run : runs) {
+      run.delete();
+    }
+    runs.clear();
+    buffer.clear();
+  }
+
+  /**
+   * @return roughly what the tuple takes up on the heap, going by its strings, byte arrays and
+   *     nested tuples, without encoding it.
+   */
+  static long estimateSize(Tuple tuple) {
+    long size = TUPLE_OVERHEAD;
+    for (int i = 0; i < tuple.size(); i++) {
+      Object value = tuple.getObject(i);
+      if (value instanceof String) {
+        size += VALUE_OVERHEAD + 2L * ((String) value).length();
+      } else if (value instanceof byte[]) {
+        size += VALUE_OVERHEAD + ((byte[]) value).length;
+      } else if (value instanceof Tuple) {
+        size += estimateSize((Tuple) value);
+      } else {
+        size += VALUE_OVERHEAD;
+      }
+    }
+    return size;
+  }
+
+  private void spill() throws IOException {
+    Collections.sort(buffer, comparator);
+    File run = newRun();
+    runs.add(run);
+    write(run, buffer.iterator());
+    buffer.clear();
+    bufferedBytes = 0;
+  }
+
+  private File newRun() throws IOException {
+    return File.createTempFile("sort-", ".run", directory);
+  }
+
+  private void write(File run, Iterator<Tuple> tuples) throws IOException {
+    HadoopTupleOutputStream out = new HadoopTupleOutputStream(
+        new BufferedOutputStream(new FileOutputStream(run), BUFFER_SIZE),
+        getSerialization().getElementWriter());
+    try {
+      while (tuples.hasNext()) {
+        out.writeBoolean(true);
+        out.writeTuple(tuples.next());
+      }
+      out.writeBoolean(false);
+    } finally {
+      out.close();
+    }
+  }
+
+  /** Made on the first spill, as most sorts never spill. */
+  private TupleSerialization getSerialization() {
+    if (serialization == null) {
+      serialization = new TupleSerialization(conf == null ? new Configuration() : conf);
+    }
+    return serialization;
+  }
+
+  /** A run file being read, one tuple ahead. */
+  private class Run {
+    final int index;
+    final HadoopTupleInputStream in;
+    Tuple head;
+
+    Run(int index, File file) throws IOException {
+      this.index = index;
+      in = new HadoopTupleInputStream(
+          new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE),
+          getSerialization().getElementReader());
+      open.add(this);
+    }
+
+    /**
+     * @return whether there was another tuple to read.
+     */
+    boolean advance() throws IOException {
+      head = in.readBoolean() ? in.readTuple() : null;
+      if (head == null) {
+        close();
+      }
+      return head != null;
+    }
+
+    void close() throws IOException {
+      open.remove(this);
+      in.close();
+    }
+  }
+
+  /** Merges runs, taking equal tuples from the earlier run first. */
+  private class Merge implements Iterator<Tuple> {
+    private final PriorityQueue<Run> queue;
+
+    Merge(List<File> files) throws IOException {
+      queue = new PriorityQueue<Run>(files.size(), new Comparator<Run>() {
+        @Override public int compare(Run a, Run b) {
+          int compared = comparator.compare(a.head, b.head);
+          return compared != 0 ? compared : a.index - b.index;
+        }
+      });
+      for (int i = 0; i < files.size(); i++) {
+        Run run = new Run(i, files.get(i));
+        if (run.advance()) {
+          queue.add(run);
+        }
+      }
+    }
+
+    @Override public boolean hasNext() {
+      return !queue.isEmpty();
+    }
+
+    @Override public Tuple next() {
+      Run run = queue.poll();
+      if (run == null) {
+        throw new NoSuchElementException();
+      }
+      Tuple next = run.head;
+      try {
+        if (run.advance()) {
+          queue.add(run);
+        }
+      } catch (IOException e) {
+        throw new IllegalStateException("can't read sorted run", e);
+      }
+      return next;
+    }
+
+    @Override public void remove() {
+      throw new UnsupportedOperationException();
+    }
+
+    void close() throws IOException {
+      for (Run run : queue) {
+        run.close();
+      }
+      queue.clear();
+    }
+  }
+}
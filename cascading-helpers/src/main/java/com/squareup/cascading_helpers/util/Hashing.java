@@ -0,0 +1,49 @@
+package com.squareup.cascading_helpers.util;
+
+/**
+ * Hash mixing shared by the hash tables and sketches in this library.
+ */
+public final class Hashing {
+  /* Utility. Don't instantiate. */
+  private Hashing() {}
+
+  /**
+   * Spread the bits of a hash so that nearby keys land far apart. This is the finalizer from
+   * MurmurHash3.
+   */
+  public static long mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  /**
+   * Hash a range of bytes to 64 bits with FNV-1a, mixed so that every bit of the result is usable.
+   */
+  public static long hash(byte[] bytes, int offset, int length) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = offset; i < offset + length; i++) {
+      h ^= bytes[i] & 0xff;
+      h *= 0x100000001b3L;
+    }
+    return mix(h);
+  }
+
+  /**
+   * @return the smallest power of two that can hold the given number of entries at a load factor
+   * of one half.
+   */
+  public static int tableSize(int entries) {
+    int size = 2;
+    while (size < 2L * entries) {
+      size <<= 1;
+      if (size <= 0) {
+        throw new IllegalArgumentException("too many entries: " + entries);
+      }
+    }
+    return size;
+  }
+}
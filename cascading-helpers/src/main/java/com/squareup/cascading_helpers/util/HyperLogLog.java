@@ -0,0 +1,102 @@
+package com.squareup.cascading_helpers.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import org.apache.hadoop.io.Writable;
+
+/**
+ * A HyperLogLog sketch for estimating how many distinct 64-bit hashes have been added. With
+ * precision p it uses 2^p bytes, and its estimates have a standard error of about
+ * 1.04 / sqrt(2^p): 1.6% at the default precision of 12. Small counts are estimated by linear
+ * counting, which is close to exact.
+ */
+public final class HyperLogLog implements Writable {
+  public static final int DEFAULT_PRECISION = 12;
+
+  private int precision;
+  private byte[] registers;
+
+  /** For deserialization only. */
+  public HyperLogLog() {}
+
+  /**
+   * @param precision the log of the number of registers, from 4 to 18.
+   */
+  public HyperLogLog(int precision) {
+    if (precision < 4 || precision > 18) {
+      throw new IllegalArgumentException("precision must be between 4 and 18");
+    }
+    this.precision = precision;
+    this.registers = new byte[1 << precision];
+  }
+
+  public HyperLogLog(HyperLogLog other) {
+    precision = other.precision;
+    registers = other.registers.clone();
+  }
+
+  /**
+   * @param hash a well mixed hash, such as one from {@link TupleHasher}.
+   */
+  public void add(long hash) {
+    int index = (int) (hash >>> (64 - precision));
+    long rest = hash << precision;
+    int rank = rest == 0 ? 64 - precision + 1 : Long.numberOfLeadingZeros(rest) + 1;
+    if (rank > registers[index]) {
+      registers[index] = (byte) rank;
+    }
+  }
+
+  public void merge(HyperLogLog other) {
+    if (other.precision != precision) {
+      throw new IllegalArgumentException("can't merge sketches of different precisions");
+    }
+    for (int i = 0; i < registers.length; i++) {
+      if (other.registers[i] > registers[i]) {
+        registers[i] = other.registers[i];
+      }
+    }
+  }
+
+  public long estimate() {
+    int m = registers.length;
+    double sum = 0;
+    int zeros = 0;
+    for (byte register : registers) {
+      sum += 1.0 / (1L << register);
+      if (register == 0) {
+        zeros++;
+      }
+    }
+    double estimate = alpha(m) * m * m / sum;
+    if (estimate <= 2.5 * m && zeros > 0) {
+      estimate = m * Math.log((double) m / zeros);
+    }
+    return Math.round(estimate);
+  }
+
+  private static double alpha(int m) {
+    switch (m) {
+      case 16:
+        return 0.673;
+      case 32:
+        return 0.697;
+      case 64:
+        return 0.709;
+      default:
+        return 0.7213 / (1 + 1.079 / m);
+    }
+  }
+
+  @Override public void write(DataOutput out) throws IOException {
+    out.writeByte(precision);
+    out.write(registers);
+  }
+
+  @Override public void readFields(DataInput in) throws IOException {
+    precision = in.readByte();
+    registers = new byte[1 << precision];
+    in.readFully(registers);
+  }
+}
@@ -0,0 +1,126 @@
+package com.squareup.cascading_helpers.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A file mapped into memory in 1 GB chunks, so that it may be larger than a single
+ * {@link MappedByteBuffer} allows. Mapped pages live in the OS page cache, which means every
+ * process on a machine that maps the same file shares one copy of it.
+ */
+public final class MappedFile {
+  private static final int CHUNK_BITS = 30;
+  private static final long CHUNK_SIZE = 1L << CHUNK_BITS;
+  private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private final MappedByteBuffer[] chunks;
+  private final long length;
+
+  private MappedFile(MappedByteBuffer[] chunks, long length) {
+    this.chunks = chunks;
+    this.length = length;
+  }
+
+  public static MappedFile readOnly(File file) throws IOException {
+    return map(file, file.length(), FileChannel.MapMode.READ_ONLY, "r");
+  }
+
+  /**
+   * Create (or truncate) a file of the given length, filled with zeros, and map it for writing.
+   */
+  public static MappedFile create(File file, long length) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      raf.setLength(0);
+      raf.setLength(length);
+    } finally {
+      raf.close();
+    }
+    return map(file, length, FileChannel.MapMode.READ_WRITE, "rw");
+  }
+
+  private static MappedFile map(File file, long length, FileChannel.MapMode mode, String access)
+      throws IOException {
+    int numChunks = (int) ((length + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+    MappedByteBuffer[] chunks = new MappedByteBuffer[numChunks];
+    RandomAccessFile raf = new RandomAccessFile(file, access);
+    try {
+      FileChannel channel = raf.getChannel();
+      for (int i = 0; i < numChunks; i++) {
+        long start = (long) i << CHUNK_BITS;
+        chunks[i] = channel.map(mode, start, Math.min(CHUNK_SIZE, length - start));
+      }
+    } finally {
+      // the mappings stay valid after the channel is closed
+      raf.close();
+    }
+    return new MappedFile(chunks, length);
+  }
+
+  public long length() {
+    return length;
+  }
+
+  public byte get(long pos) {
+    return chunks[(int) (pos >>> CHUNK_BITS)].get((int) (pos & CHUNK_MASK));
+  }
+
+  public int getInt(long pos) {
+    int offset = (int) (pos & CHUNK_MASK);
+    if (offset + 4 <= CHUNK_SIZE) {
+      return chunks[(int) (pos >>> CHUNK_BITS)].getInt(offset);
+    }
+    int value = 0;
+    for (int i = 0; i < 4; i++) {
+      value = (value << 8) | (get(pos + i) & 0xff);
+    }
+    return value;
+  }
+
+  public long getLong(long pos) {
+    int offset = (int) (pos & CHUNK_MASK);
+    if (offset + 8 <= CHUNK_SIZE) {
+      return chunks[(int) (pos >>> CHUNK_BITS)].getLong(offset);
+    }
+    return ((long) getInt(pos) << 32) | (getInt(pos + 4) & 0xffffffffL);
+  }
+
+  public void putLong(long pos, long value) {
+    int offset = (int) (pos & CHUNK_MASK);
+    if (offset + 8 <= CHUNK_SIZE) {
+      chunks[(int) (pos >>> CHUNK_BITS)].putLong(offset, value);
+      return;
+    }
+    for (int i = 0; i < 8; i++) {
+      chunks[(int) ((pos + i) >>> CHUNK_BITS)]
+          .put((int) ((pos + i) & CHUNK_MASK), (byte) (value >>> (56 - 8 * i)));
+    }
+  }
+
+  public void get(long pos, byte[] dst, int dstOffset, int len) {
+    for (int i = 0; i < len; i++) {
+      dst[dstOffset + i] = get(pos + i);
+    }
+  }
+
+  /**
+   * @return whether the bytes at pos are the same as the first len bytes of other.
+   */
+  public boolean matches(long pos, byte[] other, int len) {
+    for (int i = 0; i < len; i++) {
+      if (get(pos + i) != other[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public void force() {
+    for (MappedByteBuffer chunk : chunks) {
+      chunk.force();
+    }
+  }
+}
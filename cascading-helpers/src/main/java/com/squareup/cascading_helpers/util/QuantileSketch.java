@@ -0,0 +1,218 @@
+package com.squareup.cascading_helpers.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import org.apache.hadoop.io.Writable;
+
+/**
+ * A KLL sketch (Karnin, Lang and Liberty) for estimating quantiles of a stream of doubles. Values
+ * are kept in levels, where a value at level h stands for 2^h of the original values; when the
+ * sketch is full, a level is sorted and every other value is promoted to the next. The rank error
+ * is roughly 1.7 / k, so about 1% at the default k of 200, using a few KB however many values are
+ * added.
+ */
+public final class QuantileSketch implements Writable {
+  public static final int DEFAULT_K = 200;
+
+  private static final double LEVEL_RATIO = 2.0 / 3.0;
+
+  private int k;
+  private long count;
+  private double[][] levels;
+  private int[] sizes;
+  private int numLevels;
+
+  // the coin flips only need to be unbiased, so a fixed seed keeps results repeatable
+  private transient Random random;
+
+  /** For deserialization only. */
+  public QuantileSketch() {}
+
+  public QuantileSketch(int k) {
+    if (k < 8) {
+      throw new IllegalArgumentException("k must be at least 8");
+    }
+    this.k = k;
+    levels = new double[1][];
+    levels[0] = new double[k];
+    sizes = new int[1];
+    numLevels = 1;
+  }
+
+  public QuantileSketch(QuantileSketch other) {
+    k = other.k;
+    count = other.count;
+    numLevels = other.numLevels;
+    sizes = other.sizes.clone();
+    levels = new double[other.levels.length][];
+    for (int i = 0; i < numLevels; i++) {
+      levels[i] = other.levels[i].clone();
+    }
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public void add(double value) {
+    append(0, value);
+    count++;
+    compressWhileFull();
+  }
+
+  public void merge(QuantileSketch other) {
+    if (other.k != k) {
+      throw new IllegalArgumentException("can't merge sketches with different k");
+    }
+    for (int level = 0; level < other.numLevels; level++) {
+      for (int i = 0; i < other.sizes[level]; i++) {
+        append(level, other.levels[level][i]);
+      }
+    }
+    count += other.count;
+    compressWhileFull();
+  }
+
+  /**
+   * @param fraction the quantile, from 0 to 1.
+   * @return an estimate of the value at that quantile, or NaN if nothing has been added.
+   */
+  public double quantile(double fraction) {
+    if (count == 0) {
+      return Double.NaN;
+    }
+    int total = 0;
+    for (int level = 0; level < numLevels; level++) {
+      total += sizes[level];
+    }
+    // sort the values, carrying each one's weight along
+    double[] values = new double[total];
+    long[] weights = new long[total];
+    Integer[] order = new Integer[total];
+    int n = 0;
+    for (int level = 0; level < numLevels; level++) {
+      for (int i = 0; i < sizes[level]; i++) {
+        values[n] = levels[level][i];
+        weights[n] = 1L << level;
+        order[n] = n;
+        n++;
+      }
+    }
+    final double[] sortValues = values;
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override public int compare(Integer a, Integer b) {
+        return Double.compare(sortValues[a], sortValues[b]);
+      }
+    });
+
+    long totalWeight = 0;
+    for (long weight : weights) {
+      totalWeight += weight;
+    }
+    double target = fraction * totalWeight;
+    long cumulative = 0;
+    for (Integer index : order) {
+      cumulative += weights[index];
+      if (cumulative >= target) {
+        return values[index];
+      }
+    }
+    return values[order[total - 1]];
+  }
+
+  private int capacity(int level) {
+    return Math.max(2, (int) Math.ceil(k * Math.pow(LEVEL_RATIO, numLevels - 1 - level)));
+  }
+
+  private void append(int level, double value) {
+    while (level >= numLevels) {
+      addLevel();
+    }
+    if (sizes[level] == levels[level].length) {
+      levels[level] = Arrays.copyOf(levels[level], Math.max(8, levels[level].length * 2));
+    }
+    levels[level][sizes[level]++] = value;
+  }
+
+  private void addLevel() {
+    if (numLevels == levels.length) {
+      levels = Arrays.copyOf(levels, numLevels * 2);
+      sizes = Arrays.copyOf(sizes, numLevels * 2);
+    }
+    levels[numLevels] = new double[8];
+    sizes[numLevels] = 0;
+    numLevels++;
+  }
+
+  private void compressWhileFull() {
+    while (true) {
+      int size = 0;
+      int capacity = 0;
+      for (int level = 0; level < numLevels; level++) {
+        size += sizes[level];
+        capacity += capacity(level);
+      }
+      if (size < capacity) {
+        return;
+      }
+      for (int level = 0; level < numLevels; level++) {
+        if (sizes[level] >= capacity(level)) {
+          compact(level);
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Promote every other value of a level to the next one, keeping one back if there's an odd
+   * number.
+   */
+  private void compact(int level) {
+    if (random == null) {
+      random = new Random(k);
+    }
+    double[] values = levels[level];
+    int size = sizes[level];
+    Arrays.sort(values, 0, size);
+    int kept = size % 2;
+    double keptValue = values[size - 1];
+    int offset = random.nextBoolean() ? 1 : 0;
+    for (int i = offset; i < size - kept; i += 2) {
+      append(level + 1, values[i]);
+    }
+    values[0] = keptValue;
+    sizes[level] = kept;
+  }
+
+  @Override public void write(DataOutput out) throws IOException {
+    out.writeInt(k);
+    out.writeLong(count);
+    out.writeInt(numLevels);
+    for (int level = 0; level < numLevels; level++) {
+      out.writeInt(sizes[level]);
+      for (int i = 0; i < sizes[level]; i++) {
+        out.writeDouble(levels[level][i]);
+      }
+    }
+  }
+
+  @Override public void readFields(DataInput in) throws IOException {
+    k = in.readInt();
+    count = in.readLong();
+    numLevels = in.readInt();
+    levels = new double[Math.max(1, numLevels)][];
+    sizes = new int[levels.length];
+    for (int level = 0; level < numLevels; level++) {
+      sizes[level] = in.readInt();
+      levels[level] = new double[Math.max(8, sizes[level])];
+      for (int i = 0; i < sizes[level]; i++) {
+        levels[level][i] = in.readDouble();
+      }
+    }
+  }
+}
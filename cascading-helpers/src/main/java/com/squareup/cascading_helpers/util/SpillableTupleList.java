@@ -0,0 +1,73 @@
+package com.squareup.cascading_helpers.util;
+
+import cascading.tuple.Tuple;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.Iterator;
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * Holds more tuples than fit in memory, in the order they were added, for reading as many times
+ * as needed. It's an {@link ExternalSorter} whose tuples all compare equal, which its stable merge
+ * keeps in order, so it spills to run files past its memory limit the same way.
+ *
+ * Add every tuple before reading any, and close the list to delete its run files.
+ */
+public class SpillableTupleList implements Iterable<Tuple>, Closeable {
+  private static final Comparator<Tuple> ADDED = new Comparator<Tuple>() {
+    @Override public int compare(Tuple a, Tuple b) {
+      return 0;
+    }
+  };
+
+  private final ExternalSorter sorter;
+  private int size;
+
+  /**
+   * @param memoryLimit roughly how many bytes of tuples to buffer before spilling a run.
+   * @param directory where to write run files, or null for the default temporary directory.
+   * @param conf the configuration whose serializations to write run files with, or null for
+   *     Hadoop's defaults.
+   */
+  public SpillableTupleList(long memoryLimit, File directory, Configuration conf) {
+    sorter = new ExternalSorter(ADDED, memoryLimit, directory, conf);
+  }
+
+  /**
+   * Add a tuple, which the list may keep; don't change it afterwards.
+   */
+  public void add(Tuple tuple) throws IOException {
+    sorter.add(tuple);
+    size++;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * @return the number of run files spilled so far.
+   */
+  public int getRunCount() {
+    return sorter.getRunCount();
+  }
+
+  @Override public Iterator<Tuple> iterator() {
+    try {
+      return sorter.sorted();
+    } catch (IOException e) {
+      throw new IllegalStateException("can't read spilled tuples", e);
+    }
+  }
+
+  /** Deletes the run files, closing any still being read. */
+  @Override public void close() throws IOException {
+    sorter.close();
+  }
+}
@@ -0,0 +1,146 @@
+package com.squareup.cascading_helpers.util;
+
+import cascading.tuple.Tuple;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+
+/**
+ * A compact binary encoding for tuples, used where this library writes tuples to local files
+ * itself. Strings and boxed primitives are written directly; any other Serializable element falls
+ * back to Java serialization.
+ *
+ * Equal tuples whose elements have the same types always encode to the same bytes, so encoded
+ * tuples may be compared and hashed as byte strings.
+ */
+public final class TupleCodec {
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private static final byte NULL = 0;
+  private static final byte STRING = 1;
+  private static final byte INTEGER = 2;
+  private static final byte LONG = 3;
+  private static final byte DOUBLE = 4;
+  private static final byte FLOAT = 5;
+  private static final byte SHORT = 6;
+  private static final byte BYTE = 7;
+  private static final byte BOOLEAN = 8;
+  private static final byte SERIALIZED = 9;
+
+  /* Utility. Don't instantiate. */
+  private TupleCodec() {}
+
+  public static void write(DataOutput out, Tuple tuple) throws IOException {
+    write(out, tuple, 0, tuple.size());
+  }
+
+  /**
+   * Write count elements of a tuple, starting at start, exactly as if they were a tuple of their
+   * own.
+   */
+  public static void write(DataOutput out, Tuple tuple, int start, int count) throws IOException {
+    out.writeInt(count);
+    for (int i = start; i < start + count; i++) {
+      writeElement(out, tuple.getObject(i));
+    }
+  }
+
+  public static Tuple read(DataInput in) throws IOException {
+    int size = in.readInt();
+    Tuple tuple = Tuple.size(size);
+    for (int i = 0; i < size; i++) {
+      tuple.set(i, readElement(in));
+    }
+    return tuple;
+  }
+
+  private static void writeElement(DataOutput out, Object value) throws IOException {
+    if (value == null) {
+      out.writeByte(NULL);
+    } else if (value instanceof String) {
+      byte[] bytes = ((String) value).getBytes(UTF8);
+      out.writeByte(STRING);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    } else if (value instanceof Integer) {
+      out.writeByte(INTEGER);
+      out.writeInt((Integer) value);
+    } else if (value instanceof Long) {
+      out.writeByte(LONG);
+      out.writeLong((Long) value);
+    } else if (value instanceof Double) {
+      out.writeByte(DOUBLE);
+      out.writeDouble((Double) value);
+    } else if (value instanceof Float) {
+      out.writeByte(FLOAT);
+      out.writeFloat((Float) value);
+    } else if (value instanceof Short) {
+      out.writeByte(SHORT);
+      out.writeShort((Short) value);
+    } else if (value instanceof Byte) {
+      out.writeByte(BYTE);
+      out.writeByte((Byte) value);
+    } else if (value instanceof Boolean) {
+      out.writeByte(BOOLEAN);
+      out.writeBoolean((Boolean) value);
+    } else if (value instanceof Serializable) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream objectOut = new ObjectOutputStream(bytes);
+      objectOut.writeObject(value);
+      objectOut.close();
+      out.writeByte(SERIALIZED);
+      out.writeInt(bytes.size());
+      out.write(bytes.toByteArray());
+    } else {
+      throw new IllegalArgumentException("can't encode tuple element of " + value.getClass());
+    }
+  }
+
+  private static Object readElement(DataInput in) throws IOException {
+    byte type = in.readByte();
+    switch (type) {
+      case NULL:
+        return null;
+      case STRING:
+        return new String(readBytes(in), UTF8);
+      case INTEGER:
+        return in.readInt();
+      case LONG:
+        return in.readLong();
+      case DOUBLE:
+        return in.readDouble();
+      case FLOAT:
+        return in.readFloat();
+      case SHORT:
+        return in.readShort();
+      case BYTE:
+        return in.readByte();
+      case BOOLEAN:
+        return in.readBoolean();
+      case SERIALIZED:
+        ObjectInputStream objectIn =
+            new ObjectInputStream(new ByteArrayInputStream(readBytes(in)));
+        try {
+          return objectIn.readObject();
+        } catch (ClassNotFoundException e) {
+          throw new IOException("can't decode tuple element: " + e.getMessage());
+        } finally {
+          objectIn.close();
+        }
+      default:
+        throw new IOException("unknown tuple element type " + type);
+    }
+  }
+
+  private static byte[] readBytes(DataInput in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return bytes;
+  }
+}
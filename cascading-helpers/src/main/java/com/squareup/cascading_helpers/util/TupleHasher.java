@@ -0,0 +1,42 @@
+package com.squareup.cascading_helpers.util;
+
+import cascading.tuple.Tuple;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Hashes tuples to 64 bits through their {@link TupleCodec} encoding, so the hash of a tuple is
+ * the same in every JVM, unlike {@link Tuple#hashCode()}. Reuses one buffer, so an instance
+ * should only be used by one thread.
+ */
+public final class TupleHasher {
+  private final Buffer buffer = new Buffer();
+  private final DataOutputStream out = new DataOutputStream(buffer);
+
+  public long hash(Tuple tuple) {
+    return hash(tuple, 0, tuple.size());
+  }
+
+  /**
+   * @return the hash of count elements of the tuple starting at start, which is the same as the
+   * hash of a tuple holding only those elements.
+   */
+  public long hash(Tuple tuple, int start, int count) {
+    buffer.reset();
+    try {
+      TupleCodec.write(out, tuple, start, count);
+    } catch (IOException e) {
+      // writing to memory doesn't fail
+      throw new RuntimeException(e);
+    }
+    return Hashing.hash(buffer.bytes(), 0, buffer.size());
+  }
+
+  /** A byte stream whose buffer can be read without copying it. */
+  private static class Buffer extends ByteArrayOutputStream {
+    byte[] bytes() {
+      return buf;
+    }
+  }
+}
@@ -4,12 +4,18 @@ import org.junit.Test;
 
 import java.util.Map;
 
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertSame;
 import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
 
 public class CascadingHelperTest {
   private static final class X {}
   private static final class Y {}
   private static final class Z {}
+  private static final class V {}
+  private static final class W {}
 
   @Test
   public void testWithTokensFor() throws Exception {
@@ -24,4 +30,73 @@ public class CascadingHelperTest {
     assertTrue(tokensString.contains(Y.class.getName()));
     assertTrue(tokensString.contains(Z.class.getName()));
   }
+
+  @Test
+  public void testPropertiesFollowChanges() throws Exception {
+    Map<Object,Object> properties = CascadingHelper.get().getFlowConnector().getProperties();
+    assertEquals(properties, CascadingHelper.get().getFlowConnector().getProperties());
+
+    CascadingHelper.DEFAULT_PROPERTIES.put("cascading_helpers.test.property", "value");
+    try {
+      properties = CascadingHelper.get().getFlowConnector().getProperties();
+      assertEquals("value", properties.get("cascading_helpers.test.property"));
+    } finally {
+      CascadingHelper.DEFAULT_PROPERTIES.remove("cascading_helpers.test.property");
+    }
+  }
+
+  @Test
+  public void testBasePropertiesAreReused() throws Exception {
+    Map<Object,Object> base = CascadingHelper.getBaseProperties();
+    CascadingHelper.get().getFlowConnector();
+    assertSame(base, CascadingHelper.getBaseProperties());
+
+    CascadingHelper.get().withTokensFor(W.class);
+    Map<Object,Object> withW = CascadingHelper.getBaseProperties();
+    assertNotSame(base, withW);
+    assertTrue(((String) withW.get("cascading.serialization.tokens")).contains(W.class.getName()));
+    assertSame(withW, CascadingHelper.getBaseProperties());
+
+    try {
+      CascadingHelper.get().withToken(CascadingHelper.hashToken(V.class), V.class);
+      Map<Object,Object> withV = CascadingHelper.getBaseProperties();
+      assertNotSame(withW, withV);
+      String tokensString = (String) withV.get("cascading.serialization.tokens");
+      assertTrue(tokensString.contains(V.class.getName()));
+    } finally {
+      CascadingHelper.EXPLICIT_TOKENS.clear();
+    }
+  }
+
+  @Test
+  public void testTokensAreStable() throws Exception {
+    Map<Object,Object> properties = CascadingHelper.get().withTokensFor(X.class).getFlowConnector().getProperties();
+    String tokensString = (String) properties.get("cascading.serialization.tokens");
+    assertTrue(tokensString.contains(CascadingHelper.hashToken(X.class) + "=" + X.class.getName()));
+  }
+
+  @Test
+  public void testExplicitTokens() throws Exception {
+    try {
+      Map<Object,Object> properties = CascadingHelper.get().withToken(200, Z.class).getFlowConnector().getProperties();
+      String tokensString = (String) properties.get("cascading.serialization.tokens");
+      assertTrue(tokensString.contains("200=" + Z.class.getName()));
+
+      try {
+        CascadingHelper.get().withToken(200, Y.class);
+        fail();
+      } catch (IllegalArgumentException expected) {
+      }
+
+      // clashes with the token Y's name hashes to
+      CascadingHelper.get().withTokensFor(Y.class).withToken(CascadingHelper.hashToken(Y.class), X.class);
+      try {
+        CascadingHelper.get().getFlowConnector();
+        fail();
+      } catch (IllegalStateException expected) {
+      }
+    } finally {
+      CascadingHelper.EXPLICIT_TOKENS.clear();
+    }
+  }
 }
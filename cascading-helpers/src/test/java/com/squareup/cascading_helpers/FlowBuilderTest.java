@@ -2,20 +2,40 @@ package com.squareup.cascading_helpers;
 
 import cascading.flow.Flow;
 import cascading.flow.FlowListener;
+import cascading.flow.hadoop.HadoopFlowProcess;
+import cascading.operation.regex.RegexFilter;
+import cascading.scheme.hadoop.TextLine;
+import cascading.tap.SinkMode;
+import cascading.tap.Tap;
+import cascading.tap.hadoop.Hfs;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntryIterator;
 import com.squareup.cascading_helpers.pump.Pump;
+import com.squareup.cascading_helpers.tap.MemoryTap;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.junit.Before;
 import org.junit.Test;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.core.IsCollectionContaining.hasItems;
 import static org.junit.Assert.*;
 
 public class FlowBuilderTest {
+  private static final String SAMPLE_PATH = "/tmp/TestPump/sample";
+  // so that the limit applies to the whole input
+  private static final Map<Object, Object> ONE_SPLIT = Collections.<Object, Object>singletonMap(
+      "mapred.min.split.size", String.valueOf(Long.MAX_VALUE));
+
   @Before
   public void setUp() throws Exception {
     CascadingHelper.setTestMode();
@@ -56,6 +76,93 @@ public class FlowBuilderTest {
     assertTrue(listener.completed);
   }
 
+  @Test
+  public void sampleAndLimitSources() throws Exception {
+    Tap input = sampleInput(1000);
+    Pump p = Pump.prime("input").retain("line");
+    FlowBuilder builder = new FlowBuilder()
+        .source(p, input)
+        .tailSink(p, new Hfs(new TextLine(), Tests.OUTPUT_PATH, SinkMode.REPLACE))
+        .properties(ONE_SPLIT)
+        .sample(0.5, 42);
+
+    List<String> sampled = run(builder);
+    assertTrue(sampled.size() > 400 && sampled.size() < 600);
+    assertEquals(sampled, run(builder));
+    assertFalse(sampled.equals(run(builder.sample(0.5, 43))));
+
+    List<String> limited = run(builder.sample(0.5, 42).limitSources(10));
+    assertEquals(sampled.subList(0, 10), limited);
+
+    assertEquals(1000, run(builder.sample(1, 42).limitSources(Long.MAX_VALUE)).size());
+    assertSame(input, builder.getFlowDef().getSources().get("input"));
+  }
+
+  @Test
+  public void buildLocal() throws Exception {
+    Pump p = Pump.prime("input")
+        .each(new RegexFilter("^[0-9]+$", false), "line")
+        .groupby("line");
+
+    MemoryTap sink = new MemoryTap();
+    Flow flow = new FlowBuilder()
+        .source(p, new MemoryTap(new Fields("line"),
+            new Tuple("2"), new Tuple("asdf"), new Tuple("1")))
+        .tailSink(p, sink)
+        .buildLocal();
+    flow.complete();
+
+    assertEquals(Arrays.asList(new Tuple("1"), new Tuple("2")), sink.getTuples());
+  }
+
+  @Test
+  public void optimize() throws Exception {
+    Pump p = Pump.prime("input")
+        .groupby("line")
+        .each(new RegexFilter("^[0-9]+$", false), "line");
+
+    MemoryTap sink = new MemoryTap();
+    Flow flow = new FlowBuilder()
+        .optimize()
+        .source(p, new MemoryTap(new Fields("line"),
+            new Tuple("2"), new Tuple("asdf"), new Tuple("1")))
+        .tailSink(p, sink)
+        .buildLocal();
+    flow.complete();
+
+    assertEquals(Arrays.asList(new Tuple("1"), new Tuple("2")), sink.getTuples());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void optimizeAfterSinks() throws Exception {
+    new FlowBuilder()
+        .tailSink(Pump.prime("input"), new MemoryTap())
+        .optimize();
+  }
+
+  private static Tap sampleInput(int lines) throws IOException {
+    FileSystem.get(new Configuration()).delete(new Path(SAMPLE_PATH), true);
+    List<Tuple> tuples = new ArrayList<Tuple>();
+    for (int i = 0; i < lines; i++) {
+      tuples.add(new Tuple("line " + i));
+    }
+    Tap tap = Tests.getTap(SAMPLE_PATH);
+    Tests.fillTap(tuples, tap);
+    return tap;
+  }
+
+  /** Runs the flow and returns the lines it wrote, in order. */
+  private static List<String> run(FlowBuilder builder) throws IOException {
+    builder.build().complete();
+    List<String> lines = new ArrayList<String>();
+    TupleEntryIterator iterator = Tests.getOutTap().openForRead(new HadoopFlowProcess());
+    while (iterator.hasNext()) {
+      lines.add(iterator.next().getString("line"));
+    }
+    iterator.close();
+    return lines;
+  }
+
   private static class TestListener implements FlowListener {
     public boolean completed = false;
 
@@ -0,0 +1,62 @@
+package com.squareup.cascading_helpers.batch;
+
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import com.squareup.cascading_helpers.TestHelpers;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.fail;
+
+public class BatchAdapterTest {
+  @Test
+  public void testFilterEquals() {
+    List<Tuple> results = TestHelpers.exec(
+        new BatchAdapter(new BatchFilterEquals(1, "two"), new Fields("a", "b"), 2),
+        new Fields("a", "b", "c"),
+        new Tuple(1, "two", "x"),
+        new Tuple(1, "three", "y"),
+        new Tuple(2, "two", "z"),
+        new Tuple(1, "two", "w"),
+        new Tuple(null, "two", "v"));
+
+    // the last tuple only comes out when the adapter is flushed
+    assertEquals(Arrays.asList(
+        new Tuple(1, "three", "y"),
+        new Tuple(2, "two", "z"),
+        new Tuple(null, "two", "v")),
+        results);
+  }
+
+  @Test
+  public void testGetOrElse() {
+    List<Tuple> results = TestHelpers.exec(
+        new BatchAdapter(new BatchGetOrElse("none", 0L), new Fields("b", "c"), 2),
+        new Fields("a", "b", "c"),
+        new Tuple("x", null, 1L),
+        new Tuple("y", "present", null),
+        new Tuple(null, null, null));
+
+    assertEquals(Arrays.asList(
+        new Tuple("x", "none", 1L),
+        new Tuple("y", "present", 0L),
+        new Tuple(null, "none", 0L)),
+        results);
+  }
+
+  @Test
+  public void testFailOnNull() {
+    try {
+      TestHelpers.exec(
+          new BatchAdapter(new BatchFailOnNull("missing b"), new Fields("b"), 10),
+          new Fields("a", "b"),
+          new Tuple(null, "present"),
+          new Tuple("a", null));
+      fail("Expected NullPointerException");
+    } catch (NullPointerException e) {
+      assertEquals("missing b", e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,185 @@
+package com.squareup.cascading_helpers.exec;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.Buffer;
+import cascading.operation.BufferCall;
+import cascading.operation.Filter;
+import cascading.operation.FilterCall;
+import cascading.operation.aggregator.Count;
+import cascading.operation.aggregator.First;
+import cascading.operation.regex.RegexFilter;
+import cascading.pipe.Every;
+import cascading.pipe.GroupBy;
+import cascading.pipe.Pipe;
+import cascading.pipe.joiner.LeftJoin;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import com.squareup.cascading_helpers.CascadingHelper;
+import com.squareup.cascading_helpers.pump.Pump;
+import com.squareup.cascading_helpers.tap.MemoryTap;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class InMemoryExecutorTest {
+  private static final Fields WORD_FIELDS = new Fields("word", "count");
+  private static final Fields COLOR_FIELDS = new Fields("word", "color");
+
+  private MemoryTap words;
+  private MemoryTap colors;
+
+  @Before
+  public void setUp() throws Exception {
+    CascadingHelper.setTestMode();
+    List<Tuple> tuples = new ArrayList<Tuple>();
+    for (int i = 0; i < 1000; i++) {
+      tuples.add(new Tuple("word" + (i % 37), (long) i));
+    }
+    words = new MemoryTap(WORD_FIELDS, tuples);
+    colors = new MemoryTap(COLOR_FIELDS,
+        new Tuple("word1", "red"), new Tuple("word2", "blue"), new Tuple("word40", "green"));
+  }
+
+  @Test
+  public void eachAndAggregate() throws Exception {
+    Pump p = Pump.prime("words")
+        .each(new RegexFilter("[13579]$"), "word")
+        .sum("count", "total")
+        .retain("word", "total");
+
+    assertMatchesLocalFlow(p);
+  }
+
+  @Test
+  public void groupbyAndCogroup() throws Exception {
+    Pump p = Pump.prime("words")
+        .groupby("word")
+        .every(new Count(new Fields("n")))
+        .cogroup(Pump.prime("colors"), new LeftJoin(), "word")
+        .retain("word", "n", "color");
+
+    assertMatchesLocalFlow(p);
+  }
+
+  @Test
+  public void branchesReadingTheSameStep() throws Exception {
+    Pump common = Pump.prime("words").each(new RegexFilter("[13579]$"), "word");
+    Pump p = common.branch()
+        .groupby("word")
+        .every(new Count(new Fields("n")))
+        .cogroup(common.branch().sum("count", "total"), "word")
+        .retain("word", "n", "total");
+
+    assertMatchesLocalFlow(p);
+  }
+
+  @Test
+  public void secondarySort() throws Exception {
+    Pump p = Pump.prime("words")
+        .groupby("word")
+        .secondarySort("count")
+        .inReverse()
+        .every(new First(), "count");
+
+    assertMatchesLocalFlow(p);
+  }
+
+  @Test
+  public void bufferWithValues() throws Exception {
+    Pipe grouped = new GroupBy(new Pipe("words"), new Fields("word"), new Fields("count"));
+    Pump p = Pump.prime(new Every(grouped, new Fields("count"), new RunningTotal(), Fields.ALL));
+
+    assertMatchesLocalFlow(p);
+  }
+
+  @Test
+  public void customKeyComparator() throws Exception {
+    Fields lastCharacter = new Fields("word");
+    lastCharacter.setComparator("word", new LastCharacter());
+    Pipe grouped = new GroupBy(new Pipe("words"), lastCharacter);
+    Pump p = Pump.prime(new Every(grouped, new Count(new Fields("n")), Fields.RESULTS));
+
+    assertMatchesLocalFlow(p);
+  }
+
+  @Test
+  public void countsAcrossPartitions() throws Exception {
+    Pump p = Pump.prime("words").each(new CountingFilter());
+
+    InMemoryExecutor executor = new InMemoryExecutor(4).source("words", words);
+    executor.run(p, new MemoryTap());
+
+    assertEquals(1000, executor.getCounterValue("test", "seen"));
+  }
+
+  private void assertMatchesLocalFlow(Pump p) {
+    MemoryTap local = new MemoryTap();
+    CascadingHelper.newBuilder()
+        .source("words", words)
+        .source("colors", colors)
+        .tailSink(p, local)
+        .buildLocal()
+        .complete();
+
+    for (int parallelism : new int[] {1, 3, 8}) {
+      // a single byte of sort memory spills every grouped tuple to disk
+      for (long sortMemory : new long[] {1, 1 << 20}) {
+        MemoryTap executed = new MemoryTap();
+        new InMemoryExecutor(parallelism)
+            .sortMemory(sortMemory)
+            .source("words", words)
+            .source("colors", colors)
+            .run(p, executed);
+        assertEquals(sorted(local.getTuples()), sorted(executed.getTuples()));
+      }
+    }
+  }
+
+  private static List<String> sorted(List<Tuple> tuples) {
+    List<String> lines = new ArrayList<String>();
+    for (Tuple tuple : tuples) {
+      lines.add(tuple.toString());
+    }
+    Collections.sort(lines);
+    return lines;
+  }
+
+  /** Emits the total of the values read so far after each one. */
+  private static class RunningTotal extends BaseOperation implements Buffer {
+    RunningTotal() {
+      super(1, new Fields("total"));
+    }
+
+    @Override public void operate(FlowProcess flowProcess, BufferCall bufferCall) {
+      long total = 0;
+      Iterator<TupleEntry> arguments = bufferCall.getArgumentsIterator();
+      while (arguments.hasNext()) {
+        total += arguments.next().getLong(0);
+        bufferCall.getOutputCollector().add(new Tuple(total));
+      }
+    }
+  }
+
+  /** Calls words equal if they end in the same character. */
+  private static class LastCharacter implements Comparator<String>, Serializable {
+    @Override public int compare(String a, String b) {
+      return a.charAt(a.length() - 1) - b.charAt(b.length() - 1);
+    }
+  }
+
+  private static class CountingFilter extends BaseOperation implements Filter {
+    @Override public boolean isRemove(FlowProcess flowProcess, FilterCall filterCall) {
+      flowProcess.increment("test", "seen", 1);
+      return false;
+    }
+  }
+}
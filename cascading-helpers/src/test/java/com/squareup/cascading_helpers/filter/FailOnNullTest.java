@@ -0,0 +1,40 @@
+package com.squareup.cascading_helpers.filter;
+
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import com.squareup.cascading_helpers.TestHelpers;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class FailOnNullTest {
+  private static final Fields FIELDS = new Fields("first", "second", "third");
+
+  @Test
+  public void testFails() throws Exception {
+    FailOnNull filter = new FailOnNull("missing", new String[] {"first", "third"});
+    assertEquals(Arrays.asList(false, false),
+        TestHelpers.exec(filter, FIELDS, new Tuple(1, 2, 3), new Tuple(1, null, 3)));
+    try {
+      TestHelpers.exec(filter, FIELDS, new Tuple(1, 2, null));
+      fail("Expected NullPointerException");
+    } catch (NullPointerException e) {
+      assertEquals("missing", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testCountAndDrop() throws Exception {
+    List<Boolean> result = TestHelpers.exec(
+        new FailOnNull(null, new String[] {"first", "third"}, true),
+        FIELDS,
+        new Tuple(1, null, 3),
+        new Tuple(null, 2, 3),
+        new Tuple(null, 2, null));
+
+    assertEquals(Arrays.asList(false, true, true), result);
+  }
+}
@@ -0,0 +1,32 @@
+package com.squareup.cascading_helpers.filter;
+
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import com.squareup.cascading_helpers.TestHelpers;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class FilterPartialDuplicatesTest {
+  @Test
+  public void testRemovesRecentDuplicates() throws Exception {
+    List<Boolean> result = TestHelpers.exec(
+        new FilterPartialDuplicates(2),
+        new Fields("first", "second"),
+        new Tuple(1, "a"),
+        new Tuple(1, "a"),
+        new Tuple(2, "a"),
+        new Tuple(1, "a"),
+        new Tuple(3, "a"),
+        new Tuple(2, "a"),
+        new Tuple(1, "a")
+    );
+
+    // 2 is evicted by 3 because 1 was used more recently
+    assertEquals(
+        Arrays.asList(false, true, false, true, false, false, false),
+        result);
+  }
+}
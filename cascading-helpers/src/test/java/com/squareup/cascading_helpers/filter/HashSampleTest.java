@@ -0,0 +1,49 @@
+package com.squareup.cascading_helpers.filter;
+
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import com.squareup.cascading_helpers.TestHelpers;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HashSampleTest {
+  private static final Fields FIELDS = new Fields("id");
+
+  @Test
+  public void testAllOrNothing() throws Exception {
+    Tuple[] input = {new Tuple(1), new Tuple("a"), new Tuple((Object) null)};
+    assertEquals(Arrays.asList(false, false, false),
+        TestHelpers.exec(new HashSample(1, 42), FIELDS, input));
+    assertEquals(Arrays.asList(true, true, true),
+        TestHelpers.exec(new HashSample(0, 42), FIELDS, input));
+  }
+
+  @Test
+  public void testDeterministic() throws Exception {
+    Tuple[] input = new Tuple[100];
+    for (int i = 0; i < input.length; i++) {
+      input[i] = new Tuple(i % 10);
+    }
+    List<Boolean> first = TestHelpers.exec(new HashSample(0.5, 7), FIELDS, input);
+    assertEquals(first, TestHelpers.exec(new HashSample(0.5, 7), FIELDS, input));
+    // equal arguments are always kept or removed together
+    for (int i = 10; i < input.length; i++) {
+      assertEquals(first.get(i % 10), first.get(i));
+    }
+  }
+
+  @Test
+  public void testFraction() throws Exception {
+    int kept = 0;
+    for (long i = 0; i < 100000; i++) {
+      if (HashSample.isSampled(i, 0.01, 3)) {
+        kept++;
+      }
+    }
+    assertTrue("kept " + kept, kept > 900 && kept < 1100);
+  }
+}
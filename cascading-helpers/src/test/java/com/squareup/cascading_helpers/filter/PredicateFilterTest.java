@@ -0,0 +1,103 @@
+package com.squareup.cascading_helpers.filter;
+
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import com.squareup.cascading_helpers.TestHelpers;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+import static com.squareup.cascading_helpers.filter.Predicate.and;
+import static com.squareup.cascading_helpers.filter.Predicate.between;
+import static com.squareup.cascading_helpers.filter.Predicate.equalTo;
+import static com.squareup.cascading_helpers.filter.Predicate.in;
+import static com.squareup.cascading_helpers.filter.Predicate.isNull;
+import static com.squareup.cascading_helpers.filter.Predicate.not;
+import static com.squareup.cascading_helpers.filter.Predicate.notNull;
+import static com.squareup.cascading_helpers.filter.Predicate.or;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class PredicateFilterTest {
+  private static final Fields FIELDS = new Fields("id", "name", "score");
+
+  private static List<Boolean> exec(Predicate predicate, Tuple... input) {
+    return TestHelpers.exec(new PredicateFilter(predicate), FIELDS, input);
+  }
+
+  @Test
+  public void testEquality() throws Exception {
+    // integral constants match integral values of any type, and nothing else
+    assertEquals(Arrays.asList(true, true, false, false),
+        exec(equalTo("id", 1),
+            new Tuple(1L, "a", 0.5),
+            new Tuple(1, "a", 0.5),
+            new Tuple(1.0, "a", 0.5),
+            new Tuple("1", "a", 0.5)));
+
+    assertEquals(Arrays.asList(true, false, true),
+        exec(equalTo("name", "a"),
+            new Tuple(1, "a", 0.5),
+            new Tuple(1, "b", 0.5),
+            new Tuple(1, "a", null)));
+
+    assertEquals(Arrays.asList(true, true, false),
+        exec(equalTo("score", 0.5),
+            new Tuple(1, "a", 0.5),
+            new Tuple(1, "a", 0.5f),
+            new Tuple(1, "a", null)));
+  }
+
+  @Test
+  public void testIn() throws Exception {
+    assertEquals(Arrays.asList(true, true, false, false),
+        exec(in("id", 3L, 1, 7),
+            new Tuple(7, "a", 0.5),
+            new Tuple(1L, "a", 0.5),
+            new Tuple(2, "a", 0.5),
+            new Tuple(null, "a", 0.5)));
+
+    assertEquals(Arrays.asList(true, true, true, false),
+        exec(in("id", "x", 1, null),
+            new Tuple("x", "a", 0.5),
+            new Tuple(1L, "a", 0.5),
+            new Tuple(null, "a", 0.5),
+            new Tuple(2, "a", 0.5)));
+  }
+
+  @Test
+  public void testNullsAndRanges() throws Exception {
+    assertEquals(Arrays.asList(true, false),
+        exec(isNull("name"), new Tuple(1, null, 0.5), new Tuple(1, "a", 0.5)));
+    assertEquals(Arrays.asList(false, true),
+        exec(notNull("name"), new Tuple(1, null, 0.5), new Tuple(1, "a", 0.5)));
+
+    assertEquals(Arrays.asList(true, true, false, false, true),
+        exec(between("id", 1, 10),
+            new Tuple(1, "a", 0.5),
+            new Tuple(10L, "a", 0.5),
+            new Tuple(11, "a", 0.5),
+            new Tuple(null, "a", 0.5),
+            new Tuple(2.5, "a", 0.5)));
+
+    assertEquals(Arrays.asList(true, false),
+        exec(between("score", 0.0, 1.0), new Tuple(1, "a", 1), new Tuple(1, "a", 1.5)));
+  }
+
+  @Test
+  public void testCombinations() throws Exception {
+    Predicate predicate = or(
+        and(equalTo("name", "a"), between("score", 0.0, 1.0)),
+        not(notNull("id")));
+
+    assertEquals(Arrays.asList(true, false, false, true),
+        exec(predicate,
+            new Tuple(1, "a", 0.5),
+            new Tuple(1, "a", 1.5),
+            new Tuple(1, "b", 0.5),
+            new Tuple(null, "b", 0.5)));
+
+    assertArrayEquals(new String[] {"name", "score", "id"},
+        new PredicateFilter(predicate).getFieldNames());
+  }
+}
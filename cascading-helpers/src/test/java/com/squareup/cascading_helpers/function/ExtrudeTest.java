@@ -37,6 +37,21 @@ public class ExtrudeTest {
     assertEquals(Arrays.asList(new Tuple("first"), new Tuple("second")), results);
   }
 
+  @Test
+  public void testNamesAndNulls() {
+    List<Tuple> results = TestHelpers.exec(
+        new Extrude("name", "output", true),
+        new Fields("first", "second", "third"),
+        new Tuple("a", null, "c"),
+        new Tuple(null, "b", null));
+
+    assertEquals(Arrays.asList(
+        new Tuple("first", "a"),
+        new Tuple("third", "c"),
+        new Tuple("second", "b")),
+        results);
+  }
+
   @Test
   public void testInFlow() throws Exception {
     FileSystem fs = FileSystem.get(new Configuration());
@@ -0,0 +1,127 @@
+package com.squareup.cascading_helpers.function;
+
+import cascading.flow.hadoop.HadoopFlowProcess;
+import cascading.operation.FunctionCall;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import cascading.tuple.TupleEntryCollector;
+import com.squareup.cascading_helpers.TestHelpers;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TestFastMapLookup {
+  private static final Map<Tuple,Tuple> SIMPLE_KEY_MAP = new HashMap<Tuple, Tuple>() {{
+    put(new Tuple("first"), new Tuple("first result"));
+    put(new Tuple("second"), new Tuple("second result"));
+  }};
+
+  private static final Map<Tuple, Tuple> COMPOUND_KEY_MAP = new HashMap<Tuple, Tuple>() {{
+    put(new Tuple("first", "first prime"), new Tuple("first result", "plus some more"));
+    put(new Tuple("second", "second prime"), new Tuple("second result", null));
+  }};
+
+  private static final Map<Tuple, Tuple> LONG_KEY_MAP = new HashMap<Tuple, Tuple>() {{
+    put(new Tuple(1L), new Tuple("one"));
+    put(new Tuple(2), new Tuple("two"));
+    put(new Tuple(-1L), new Tuple("minus one"));
+  }};
+
+  @Test
+  public void testSimpleKey() throws Exception {
+    List<Tuple> results = TestHelpers.exec(
+        new FastMapLookup(SIMPLE_KEY_MAP, new Fields("value")),
+        new Fields("blah"),
+        new Tuple("first"),
+        new Tuple("second"),
+        new Tuple("not in the map"),
+        new Tuple(1L));
+
+    assertEquals(Arrays.asList(
+        new Tuple("first result"),
+        new Tuple("second result"),
+        new Tuple((Object)null),
+        new Tuple((Object)null)),
+        results);
+  }
+
+  @Test
+  public void testCompoundKey() throws Exception {
+    List<Tuple> results = TestHelpers.exec(
+        new FastMapLookup(COMPOUND_KEY_MAP, new Fields("value1", "value2")),
+        new Fields("blah", "blahh"),
+        new Tuple("first", "first prime"),
+        new Tuple("second", "second prime"),
+        new Tuple("not in the map", "lolcatz"));
+
+    assertEquals(Arrays.asList(
+        new Tuple("first result", "plus some more"),
+        new Tuple("second result", null),
+        new Tuple((Object)null, null)),
+        results);
+  }
+
+  @Test
+  public void testLongKey() throws Exception {
+    List<Tuple> results = TestHelpers.exec(
+        new FastMapLookup(LONG_KEY_MAP, new Fields("value")),
+        new Fields("blah"),
+        new Tuple(1L),
+        new Tuple(2L),
+        new Tuple(-1),
+        new Tuple(3L),
+        new Tuple("1"),
+        new Tuple((Object)null));
+
+    assertEquals(Arrays.asList(
+        new Tuple("one"),
+        new Tuple("two"),
+        new Tuple("minus one"),
+        new Tuple((Object)null),
+        new Tuple((Object)null),
+        new Tuple((Object)null)),
+        results);
+  }
+
+  @Test
+  public void testMissesShareOneTuple() throws Exception {
+    // TestHelpers copies what it collects, so look at the emitted tuples directly
+    final List<Tuple> results = new ArrayList<Tuple>();
+    FunctionCall call = mock(FunctionCall.class);
+    when(call.getOutputCollector()).thenReturn(new TupleEntryCollector() {
+      @Override protected void collect(TupleEntry tupleEntry) throws IOException {
+        results.add(tupleEntry.getTuple());
+      }
+    });
+
+    FastMapLookup lookup = new FastMapLookup(SIMPLE_KEY_MAP, new Fields("value"));
+    lookup.prepare(new HadoopFlowProcess(), null);
+    for (String key : Arrays.asList("missing", "also missing")) {
+      when(call.getArguments()).thenReturn(new TupleEntry(new Fields("blah"), new Tuple(key)));
+      lookup.operate(new HadoopFlowProcess(), call);
+    }
+
+    assertEquals(new Tuple((Object) null), results.get(0));
+    assertSame(results.get(0), results.get(1));
+  }
+
+  @Test
+  public void testEmptyMap() throws Exception {
+    List<Tuple> results = TestHelpers.exec(
+        new FastMapLookup(new HashMap<Tuple, Tuple>(), new Fields("value")),
+        new Fields("blah"),
+        new Tuple("missing"));
+
+    assertEquals(Arrays.asList(new Tuple((Object)null)), results);
+  }
+}
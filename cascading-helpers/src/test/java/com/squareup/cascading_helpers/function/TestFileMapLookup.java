@@ -0,0 +1,97 @@
+package com.squareup.cascading_helpers.function;
+
+import cascading.flow.hadoop.HadoopFlowProcess;
+import cascading.scheme.hadoop.SequenceFile;
+import cascading.tap.Tap;
+import cascading.tap.hadoop.Hfs;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntryCollector;
+import com.squareup.cascading_helpers.TestHelpers;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.JobConf;
+import org.junit.Before;
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+
+public class TestFileMapLookup {
+  private static final String TABLE_PATH = "/tmp/TestFileMapLookup/table";
+  private static final Fields TABLE_FIELDS = new Fields("key", "subkey", "value", "count");
+
+  private Tap table;
+
+  @Before
+  public void setUp() throws Exception {
+    table = new Hfs(new SequenceFile(TABLE_FIELDS), TABLE_PATH);
+    write(
+        new Tuple("first", 1, "first result", 10L),
+        new Tuple("second", 2, "second result", null),
+        new Tuple("first", 1, "duplicate result", 30L));
+  }
+
+  private void write(Tuple... tuples) throws Exception {
+    FileSystem.get(new Configuration()).delete(new Path(TABLE_PATH), true);
+    TupleEntryCollector collector = table.openForWrite(new HadoopFlowProcess());
+    for (Tuple tuple : tuples) {
+      collector.add(tuple);
+    }
+    collector.close();
+  }
+
+  @Test
+  public void testLookup() throws Exception {
+    List<Tuple> results = TestHelpers.exec(
+        new FileMapLookup(table, new Fields("key", "subkey"), new Fields("value", "count")),
+        new Fields("blah", "blahh"),
+        new Tuple("first", 1),
+        new Tuple("second", 2),
+        new Tuple("second", 1),
+        new Tuple("not in the map", 2),
+        new Tuple("first", 1L));
+
+    assertEquals(Arrays.asList(
+        new Tuple("first result", 10L),
+        new Tuple("second result", null),
+        new Tuple(null, null),
+        new Tuple(null, null),
+        new Tuple(null, null)),
+        results);
+  }
+
+  @Test
+  public void testReusesIndex() throws Exception {
+    FileMapLookup lookup =
+        new FileMapLookup(table, new Fields("key", "subkey"), new Fields("value"));
+    TestHelpers.exec(lookup, new Fields("blah", "blahh"), new Tuple("first", 1));
+    List<Tuple> results = TestHelpers.exec(
+        new FileMapLookup(table, new Fields("key", "subkey"), new Fields("value")),
+        new Fields("blah", "blahh"),
+        new Tuple("second", 2));
+
+    assertEquals(Arrays.asList(new Tuple("second result")), results);
+  }
+
+  @Test
+  public void testIndexesPerTaskWithoutModifiedTime() throws Exception {
+    table = new Hfs(new SequenceFile(TABLE_FIELDS), TABLE_PATH) {
+      @Override public long getModifiedTime(JobConf conf) {
+        return 0;
+      }
+    };
+    assertEquals(Arrays.asList(new Tuple("first result")), TestHelpers.exec(
+        new FileMapLookup(table, new Fields("key", "subkey"), new Fields("value")),
+        new Fields("blah", "blahh"),
+        new Tuple("first", 1)));
+
+    write(new Tuple("first", 1, "rewritten result", 10L));
+    assertEquals(Arrays.asList(new Tuple("rewritten result")), TestHelpers.exec(
+        new FileMapLookup(table, new Fields("key", "subkey"), new Fields("value")),
+        new Fields("blah", "blahh"),
+        new Tuple("first", 1)));
+  }
+}
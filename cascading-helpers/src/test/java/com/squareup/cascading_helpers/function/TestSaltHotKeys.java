@@ -0,0 +1,70 @@
+package com.squareup.cascading_helpers.function;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.FunctionCall;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import cascading.tuple.TupleEntryCollector;
+import com.squareup.cascading_helpers.TestHelpers;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TestSaltHotKeys {
+  private static final Tuple[] HOT_KEYS = {new Tuple("hot")};
+
+  @Test
+  public void testDealsHotKeys() throws Exception {
+    List<Tuple> results = TestHelpers.exec(
+        new SaltHotKeys(new Fields("salt"), HOT_KEYS, 3, false),
+        new Fields("key"),
+        new Tuple("hot"),
+        new Tuple("cold"),
+        new Tuple("hot"),
+        new Tuple("hot"),
+        new Tuple("hot"));
+
+    assertEquals(Arrays.asList(
+        new Tuple(0), new Tuple(0), new Tuple(1), new Tuple(2), new Tuple(0)),
+        results);
+  }
+
+  @Test
+  public void testTasksStartAtDifferentBuckets() throws Exception {
+    final List<Tuple> results = new ArrayList<Tuple>();
+    FunctionCall call = mock(FunctionCall.class);
+    when(call.getArguments()).thenReturn(new TupleEntry(new Fields("key"), new Tuple("hot")));
+    when(call.getOutputCollector()).thenReturn(new TupleEntryCollector() {
+      @Override protected void collect(TupleEntry tupleEntry) throws IOException {
+        results.add(tupleEntry.getTupleCopy());
+      }
+    });
+    FlowProcess flowProcess = mock(FlowProcess.class);
+    when(flowProcess.getCurrentSliceNum()).thenReturn(4);
+
+    SaltHotKeys salt = new SaltHotKeys(new Fields("salt"), HOT_KEYS, 3, false);
+    salt.prepare(flowProcess, null);
+    salt.operate(flowProcess, call);
+    salt.operate(flowProcess, call);
+
+    assertEquals(Arrays.asList(new Tuple(1), new Tuple(2)), results);
+  }
+
+  @Test
+  public void testReplicatesHotKeys() throws Exception {
+    List<Tuple> results = TestHelpers.exec(
+        new SaltHotKeys(new Fields("salt"), HOT_KEYS, 3, true),
+        new Fields("key"),
+        new Tuple("cold"),
+        new Tuple("hot"));
+
+    assertEquals(Arrays.asList(new Tuple(0), new Tuple(0), new Tuple(1), new Tuple(2)), results);
+  }
+}
@@ -0,0 +1,62 @@
+package com.squareup.cascading_helpers.operation;
+
+import cascading.operation.filter.FilterNull;
+import cascading.pipe.Each;
+import com.squareup.cascading_helpers.Tests;
+import com.squareup.cascading_helpers.function.StacktraceWrapperFunction;
+import com.squareup.cascading_helpers.pump.Pump;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CallSiteTest {
+  @After
+  public void tearDown() {
+    CallSite.setCapture(CallSite.Capture.FULL);
+  }
+
+  @Test
+  public void testFull() {
+    CallSite callSite = CallSite.capture(0);
+    assertEquals("testFull", callSite.getCaller().getMethodName());
+    assertTrue(callSite.getFrames().length > 1);
+    assertTrue(callSite.toString().startsWith("\tat " + CallSiteTest.class.getName() + ".testFull("));
+  }
+
+  @Test
+  public void testCallerOnly() {
+    CallSite.setCapture(CallSite.Capture.CALLER);
+    CallSite callSite = CallSite.capture(0);
+    assertEquals(1, callSite.getFrames().length);
+    assertEquals("testCallerOnly", callSite.getCaller().getMethodName());
+  }
+
+  @Test
+  public void testNone() {
+    CallSite.setCapture(CallSite.Capture.NONE);
+    assertNull(CallSite.capture(0));
+  }
+
+  @Test
+  public void testDescribedAs() {
+    assertEquals("somewhere", CallSite.describedAs("somewhere").toString());
+    assertNull(CallSite.describedAs("somewhere").getCaller());
+  }
+
+  @Test
+  public void testPumpsSkipWrappingWhenDisabled() {
+    Tests.FunctionThatKnows function = new Tests.FunctionThatKnows(Tests.Left.class);
+
+    Each wrapped = (Each) Pump.prime().each(function).toPipe();
+    assertTrue(wrapped.getOperation() instanceof StacktraceWrapperFunction);
+
+    CallSite.setCapture(CallSite.Capture.NONE);
+    Each unwrapped = (Each) Pump.prime().each(function).toPipe();
+    assertEquals(function, unwrapped.getOperation());
+    Each unwrappedFilter = (Each) Pump.prime().each(new FilterNull()).toPipe();
+    assertTrue(unwrappedFilter.getOperation() instanceof FilterNull);
+  }
+}
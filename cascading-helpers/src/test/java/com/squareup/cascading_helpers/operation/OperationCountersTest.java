@@ -0,0 +1,181 @@
+package com.squareup.cascading_helpers.operation;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.ConcreteCall;
+import cascading.operation.Function;
+import cascading.operation.FunctionCall;
+import cascading.operation.Insert;
+import cascading.operation.OperationCall;
+import cascading.operation.filter.FilterNull;
+import cascading.pipe.Each;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import cascading.tuple.TupleEntryCollector;
+import com.squareup.cascading_helpers.filter.StacktraceWrapperFilter;
+import com.squareup.cascading_helpers.function.StacktraceWrapperFunction;
+import com.squareup.cascading_helpers.pump.Pump;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OperationCountersTest {
+  @After
+  public void tearDown() {
+    OperationCounters.disable();
+    CallSite.setCapture(CallSite.Capture.FULL);
+  }
+
+  @Test
+  public void testDisabledByDefault() {
+    assertNull(OperationCounters.forOperation(CallSite.capture(0), 1, new FilterNull()));
+  }
+
+  @Test
+  public void testNamedAfterCallSite() {
+    OperationCounters.enable(1);
+    OperationCounters counters =
+        OperationCounters.forOperation(CallSite.capture(0), 1, new FilterNull());
+    assertTrue(counters.getName().startsWith("OperationCountersTest.java:"));
+    assertTrue(counters.getName().endsWith(" FilterNull"));
+  }
+
+  @Test
+  public void testNumberedWithoutCallSite() {
+    OperationCounters.enable(1);
+    assertEquals("FilterNull #1",
+        OperationCounters.forOperation(null, 1, new FilterNull()).getName());
+    assertEquals("FilterNull #2",
+        OperationCounters.forOperation(null, 2, new FilterNull()).getName());
+  }
+
+  @Test
+  public void testCountsFilter() {
+    OperationCounters.enable(1);
+    FilterNull filter = new FilterNull();
+    OperationCounters counters = OperationCounters.forOperation(null, 1, filter);
+    StacktraceWrapperFilter wrapper = new StacktraceWrapperFilter(filter, null, counters);
+    FlowProcess flowProcess = mock(FlowProcess.class);
+    ConcreteCall call = new ConcreteCall(new Fields("a"));
+
+    call.setArguments(new TupleEntry(new Fields("a"), new Tuple("x")));
+    wrapper.isRemove(flowProcess, call);
+    call.setArguments(new TupleEntry(new Fields("a"), new Tuple((Object) null)));
+    wrapper.isRemove(flowProcess, call);
+    wrapper.cleanup(flowProcess, call);
+
+    verify(flowProcess).increment(OperationCounters.GROUP, "FilterNull #1 in", 2L);
+    verify(flowProcess).increment(OperationCounters.GROUP, "FilterNull #1 removed", 1L);
+  }
+
+  @Test
+  public void testCountsFunctionOutput() {
+    OperationCounters.enable(1);
+    Insert insert = new Insert(new Fields("b"), "y");
+    OperationCounters counters = OperationCounters.forOperation(null, 1, insert);
+    StacktraceWrapperFunction wrapper = new StacktraceWrapperFunction(insert, null, counters);
+    FlowProcess flowProcess = mock(FlowProcess.class);
+    final List<Tuple> output = new ArrayList<Tuple>();
+    TupleEntryCollector collector = new TupleEntryCollector(new Fields("b")) {
+      @Override protected void collect(TupleEntry tupleEntry) {
+        output.add(tupleEntry.getTupleCopy());
+      }
+    };
+    ConcreteCall call = new ConcreteCall(new Fields("a"), new Fields("b"));
+    call.setArguments(new TupleEntry(new Fields("a"), new Tuple("x")));
+    call.setOutputCollector(collector);
+
+    wrapper.operate(flowProcess, call);
+    wrapper.operate(flowProcess, call);
+    wrapper.cleanup(flowProcess, call);
+
+    assertEquals(2, output.size());
+    assertSame(collector, call.getOutputCollector());
+    verify(flowProcess).increment(OperationCounters.GROUP, "Insert #1 in", 2L);
+    verify(flowProcess).increment(OperationCounters.GROUP, "Insert #1 out", 2L);
+  }
+
+  @Test
+  public void testCountsFlushedOutputOfAnyCall() {
+    OperationCounters.enable(1);
+    LastValue last = new LastValue();
+    OperationCounters counters = OperationCounters.forOperation(null, 1, last);
+    StacktraceWrapperFunction wrapper = new StacktraceWrapperFunction(last, null, counters);
+    FlowProcess flowProcess = mock(FlowProcess.class);
+    final List<Tuple> output = new ArrayList<Tuple>();
+    FunctionCall call = mock(FunctionCall.class);
+    when(call.getArguments()).thenReturn(new TupleEntry(new Fields("a"), new Tuple("x")));
+    when(call.getOutputCollector()).thenReturn(new TupleEntryCollector() {
+      @Override protected void collect(TupleEntry tupleEntry) {
+        output.add(tupleEntry.getTupleCopy());
+      }
+    });
+
+    wrapper.operate(flowProcess, call);
+    wrapper.operate(flowProcess, call);
+    wrapper.flush(flowProcess, call);
+    wrapper.cleanup(flowProcess, call);
+
+    assertEquals(Arrays.asList(new Tuple("x")), output);
+    verify(flowProcess).increment(OperationCounters.GROUP, "LastValue #1 in", 2L);
+    verify(flowProcess).increment(OperationCounters.GROUP, "LastValue #1 out", 1L);
+  }
+
+  @Test
+  public void testPumpsWithoutCallSitesCountSeparately() {
+    CallSite.setCapture(CallSite.Capture.NONE);
+    OperationCounters.enable(100);
+    Pump first = Pump.prime().each(new FilterNull(), "a");
+    Pump second = first.each(new FilterNull(), "b");
+    FlowProcess flowProcess = mock(FlowProcess.class);
+
+    ((Each) first.toPipe()).getOperation().cleanup(flowProcess, null);
+    ((Each) second.toPipe()).getOperation().cleanup(flowProcess, null);
+
+    ArgumentCaptor<String> names = ArgumentCaptor.forClass(String.class);
+    verify(flowProcess, times(6))
+        .increment(eq(OperationCounters.GROUP), names.capture(), anyLong());
+    assertEquals(6, new HashSet<String>(names.getAllValues()).size());
+  }
+
+  @Test
+  public void testPumpWrapsWhenCountingWithoutCallSites() {
+    CallSite.setCapture(CallSite.Capture.NONE);
+    OperationCounters.enable(100);
+    Each each = (Each) Pump.prime().each(new Insert(new Fields("b"), "y")).toPipe();
+    assertTrue(each.getOperation() instanceof StacktraceWrapperFunction);
+  }
+
+  /** Emits the last argument it saw when flushed. */
+  private static class LastValue extends BaseOperation implements Function {
+    private transient Tuple last;
+
+    LastValue() {
+      super(1, new Fields("last"));
+    }
+
+    @Override public void operate(FlowProcess flowProcess, FunctionCall functionCall) {
+      last = functionCall.getArguments().getTupleCopy();
+    }
+
+    @Override public void flush(FlowProcess flowProcess, OperationCall operationCall) {
+      ((FunctionCall) operationCall).getOutputCollector().add(last);
+    }
+  }
+}
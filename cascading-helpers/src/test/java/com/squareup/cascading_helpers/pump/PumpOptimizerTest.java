@@ -0,0 +1,216 @@
+package com.squareup.cascading_helpers.pump;
+
+import cascading.operation.aggregator.Count;
+import cascading.operation.aggregator.Sum;
+import cascading.operation.regex.RegexFilter;
+import cascading.pipe.joiner.LeftJoin;
+import cascading.tap.Tap;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import com.squareup.cascading_helpers.CascadingHelper;
+import com.squareup.cascading_helpers.FlowBuilder;
+import com.squareup.cascading_helpers.filter.TaskLimit;
+import com.squareup.cascading_helpers.tap.MemoryTap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PumpOptimizerTest {
+  private static final Fields WORD_FIELDS = new Fields("word", "count", "extra");
+  private static final Fields COLOR_FIELDS = new Fields("word", "color", "junk");
+
+  private Map<String, Tap> sources;
+
+  @Before
+  public void setUp() throws Exception {
+    CascadingHelper.setTestMode();
+    sources = new HashMap<String, Tap>();
+    sources.put("words", new MemoryTap(WORD_FIELDS,
+        new Tuple("apple", 1L, "x"), new Tuple("banana", 2L, "y"), new Tuple("apple", 3L, "z")));
+    sources.put("colors", new MemoryTap(COLOR_FIELDS,
+        new Tuple("apple", "red", "x"), new Tuple("cherry", "red", "y")));
+  }
+
+  @Test
+  public void testMovesFilterAboveGroupBy() throws Exception {
+    Pump p = Pump.prime("words")
+        .groupby("word")
+        .each(new RegexFilter("^a"), "word");
+
+    PumpOptimizer optimizer = new PumpOptimizer();
+    Pump optimized = optimizer.optimize(p);
+
+    assertTrue(optimized instanceof GroupByPump);
+    assertTrue(optimized.getPrev() instanceof FilterPump);
+    assertEquals(1, optimizer.getRewrites().size());
+    assertSameOutput(p);
+  }
+
+  @Test
+  public void testKeepsStatefulFiltersAfterGroupBy() {
+    Pump p = Pump.prime("words")
+        .groupby("word")
+        .each(new TaskLimit(1));
+
+    PumpOptimizer optimizer = new PumpOptimizer(sourceFields());
+
+    assertSame(p, optimizer.optimize(p));
+    assertEquals(Collections.<String>emptyList(), optimizer.getRewrites());
+  }
+
+  @Test
+  public void testMovesProjectionsAboveCoGroup() throws Exception {
+    Pump p = Pump.prime("words")
+        .cogroup(Pump.prime("colors"), "word")
+        .each(new RegexFilter("^red$"), "color")
+        .discard("extra", "junk");
+
+    Pump optimized = new PumpOptimizer(sourceFields()).optimize(p);
+
+    assertTrue(optimized instanceof CoGroupPump);
+    Pump left = optimized.getInputs().get(0);
+    Pump right = optimized.getInputs().get(1);
+    assertTrue(left instanceof DiscardPump);
+    assertTrue(right instanceof DiscardPump);
+    assertTrue(right.getPrev() instanceof FilterPump);
+    assertSameOutput(p);
+  }
+
+  @Test
+  public void testNarrowsBeforeGroupBy() throws Exception {
+    Pump p = Pump.prime("words")
+        .groupby("word")
+        .retain("count");
+
+    Pump optimized = new PumpOptimizer(sourceFields()).optimize(p);
+
+    assertTrue(optimized instanceof RetainPump);
+    assertTrue(optimized.getPrev().getPrev() instanceof RetainPump);
+    assertEquals(Arrays.asList("count", "word"), retained(optimized.getPrev().getPrev()));
+    assertSameOutput(p);
+  }
+
+  @Test
+  public void testKeepsFiltersOnTheOuterSide() {
+    Pump p = Pump.prime("words")
+        .cogroup(Pump.prime("colors"), new LeftJoin(), "word")
+        .each(new RegexFilter("^red$"), "color");
+
+    PumpOptimizer optimizer = new PumpOptimizer(sourceFields());
+
+    assertSame(p, optimizer.optimize(p));
+    assertEquals(Collections.<String>emptyList(), optimizer.getRewrites());
+  }
+
+  @Test
+  public void testMergesRenames() throws Exception {
+    Pump p = Pump.prime("words")
+        .rename("word", "name")
+        .rename("extra", "other")
+        .rename("name", "w");
+
+    Pump optimized = new PumpOptimizer().optimize(p);
+
+    assertTrue(optimized instanceof RenamePump);
+    assertTrue(optimized.getPrev() instanceof PipeAdapterPump);
+    assertEquals(Arrays.asList("extra", "word"),
+        Arrays.asList(((RenamePump) optimized).getFromFields()));
+    assertEquals(Arrays.asList("other", "w"),
+        Arrays.asList(((RenamePump) optimized).getToFields()));
+    assertSameOutput(p);
+  }
+
+  @Test
+  public void testDropsNoopCoercions() throws Exception {
+    Pump p = Pump.prime("words")
+        .coerce("count", long.class)
+        .each(new RegexFilter("^[ab]"), "word")
+        .coerce(new String[] {"count", "word"}, new Class<?>[] {long.class, Object.class});
+
+    Pump optimized = new PumpOptimizer().optimize(p);
+
+    assertTrue(optimized instanceof FilterPump);
+    assertTrue(optimized.getPrev() instanceof CoercePump);
+    assertSameOutput(p);
+  }
+
+  @Test
+  public void testLeavesSharedPumpsAlone() {
+    Pump grouped = Pump.prime("words").groupby("word");
+    Pump filtered = grouped.each(new RegexFilter("^a"), "word");
+    Pump counted = grouped.every(new Count());
+
+    PumpOptimizer optimizer = new PumpOptimizer();
+    List<Pump> optimized = optimizer.optimize(Arrays.asList(filtered, counted));
+
+    assertSame(filtered, optimized.get(0));
+    assertSame(counted, optimized.get(1));
+    assertEquals(Collections.<String>emptyList(), optimizer.getRewrites());
+  }
+
+  @Test
+  public void testPrunesUnreadFields() throws Exception {
+    Pump p = Pump.prime("words")
+        .cogroup(Pump.prime("colors"), "word")
+        .groupby("color")
+        .every(new Sum(new Fields("total")), "count");
+
+    Pump optimized = new PumpOptimizer(sourceFields()).optimize(p);
+
+    Pump grouped = optimized.getPrev();
+    assertEquals(Arrays.asList("count", "color"), retained(grouped.getPrev()));
+    Pump joined = grouped.getPrev().getPrev();
+    assertEquals(Arrays.asList("word", "count"), retained(joined.getInputs().get(0)));
+    assertEquals(Arrays.asList("color", "__rhs__word"), retained(joined.getInputs().get(1)));
+    assertSameOutput(p);
+  }
+
+  @Test
+  public void testKeepsValuesReadByEvery() {
+    Pump p = Pump.prime("words")
+        .groupby("word")
+        .every(new Sum(new Fields("total")), "count")
+        .every(new Count());
+
+    PumpOptimizer optimizer = new PumpOptimizer(sourceFields());
+
+    assertSame(p, optimizer.optimize(p));
+    assertEquals(Collections.<String>emptyList(), optimizer.getRewrites());
+  }
+
+  private static List<String> retained(Pump pump) {
+    return Arrays.asList(((RetainPump) pump).getFieldNames());
+  }
+
+  private Map<String, Fields> sourceFields() {
+    Map<String, Fields> fields = new HashMap<String, Fields>();
+    fields.put("words", WORD_FIELDS);
+    fields.put("colors", COLOR_FIELDS);
+    return fields;
+  }
+
+  private void assertSameOutput(Pump p) {
+    assertEquals(run(p, false), run(p, true));
+  }
+
+  private List<Tuple> run(Pump p, boolean optimize) {
+    MemoryTap sink = new MemoryTap();
+    FlowBuilder builder = CascadingHelper.newBuilder().sources(sources);
+    if (optimize) {
+      builder.optimize();
+    }
+    builder.tailSink(p, sink).buildLocal().complete();
+    List<Tuple> output = new ArrayList<Tuple>(sink.getTuples());
+    Collections.sort(output);
+    return output;
+  }
+}
@@ -21,8 +21,11 @@ import cascading.operation.regex.RegexFilter;
 import cascading.operation.regex.RegexSplitter;
 import cascading.operation.text.DateFormatter;
 import cascading.pipe.CoGroup;
+import cascading.pipe.Each;
+import cascading.pipe.HashJoin;
 import cascading.pipe.Pipe;
 import cascading.pipe.assembly.AggregateBy;
+import cascading.pipe.joiner.LeftJoin;
 import cascading.scheme.hadoop.SequenceFile;
 import cascading.scheme.hadoop.TextLine;
 import cascading.tap.Tap;
@@ -34,6 +37,11 @@ import cascading.tuple.TupleEntryCollector;
 import cascading.tuple.TupleEntryIterator;
 import com.squareup.cascading_helpers.CascadingHelper;
 import com.squareup.cascading_helpers.Tests;
+import com.squareup.cascading_helpers.batch.BatchFilterEquals;
+import com.squareup.cascading_helpers.batch.BatchGetOrElse;
+import com.squareup.cascading_helpers.function.FusedFunction;
+import com.squareup.cascading_helpers.util.HyperLogLog;
+import com.squareup.cascading_helpers.util.QuantileSketch;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -51,6 +59,7 @@ import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class TestPump  {
@@ -170,6 +179,36 @@ public class TestPump  {
     assertEquals(Arrays.asList("1970-01-02", "1970-01-01", "1970-01-02"), getOutputStrings());
   }
 
+  @Test
+  public void testFuse() throws IOException {
+    Pump fused = Pump.prime()
+        .each(new RegexFilter("^[0-9]+$", false), "line")
+        .each(new Insert(new Fields("constant"), "c"))
+        .each(new RegexFilter("^0$", true), "line")
+        .each(new DateFormatter(new Fields("date"), "yyyy-MM-dd"), "offset")
+        .fuse();
+    Pipe p = fused.retain("line", "constant").toPipe();
+
+    assertTrue(((Each) fused.toPipe()).getOperation() instanceof FusedFunction);
+    CascadingHelper.get().getFlowConnector().connect(Tests.getInTap(), Tests.getOutTap(), p).complete();
+
+    assertEquals(Arrays.asList("115200000\tc", "115200000\tc"), getOutputStrings());
+  }
+
+  @Test
+  public void testFuseFilters() throws IOException {
+    Pipe p = Pump.prime()
+        .each(new RegexFilter("^[0-9]+$", false), "line")
+        .each(new RegexFilter("^0$", true), "line")
+        .fuse()
+        .retain("line")
+        .toPipe();
+
+    CascadingHelper.get().getFlowConnector().connect(Tests.getInTap(), Tests.getOutTap(), p).complete();
+
+    assertEquals(Arrays.asList("115200000", "115200000"), getOutputStrings());
+  }
+
   @Test
   public void testFailOnNull() throws IOException {
     try {
@@ -187,6 +226,46 @@ public class TestPump  {
     }
   }
 
+  @Test
+  public void testDropNulls() throws IOException {
+    Pipe p = Pump.prime()
+        .dropNulls("line")
+        .toPipe();
+
+    Tap tap = getSequenceFileTap(NULL_INPUT_PATH);
+    CascadingHelper.get().getFlowConnector().connect(tap, Tests.getOutTap(), p).complete();
+
+    assertEquals(Arrays.asList("1970-01-01\tfirst", "1970-01-03\tfiltered"), getOutputStrings());
+  }
+
+  @Test
+  public void testSample() throws Exception {
+    Pipe p = Pump.prime()
+        .sample(0.5, 42, "line")
+        .toPipe();
+
+    CascadingHelper.get().getFlowConnector().connect(Tests.getInTap(), Tests.getOutTap(), p).complete();
+
+    List<String> output = getOutputStrings();
+    assertTrue(Arrays.asList("115200000", "0", "asdf").containsAll(output));
+    // duplicate lines are sampled together
+    int count = Collections.frequency(output, "115200000");
+    assertTrue(count == 0 || count == 2);
+  }
+
+  @Test
+  public void testLimit() throws Exception {
+    Pipe p = Pump.prime()
+        .limit(2)
+        .toPipe();
+
+    CascadingHelper.get().getFlowConnector().connect(Tests.getInTap(), Tests.getOutTap(), p).complete();
+
+    List<String> output = getOutputStrings();
+    assertEquals(2, output.size());
+    assertTrue(Arrays.asList("115200000", "0", "asdf").containsAll(output));
+  }
+
   @Test
   public void testGroupBy() throws Exception {
     Pipe p = Pump.prime()
@@ -295,6 +374,127 @@ public class TestPump  {
     assertEquals(nonStaticHeads[1].toString(), staticHeads[1].toString());
   }
 
+  @Test
+  public void testHashJoin() throws Exception {
+    Pump left = Pump.prime("left")
+        .each(new RegexFilter("^[0-9]+$", false), "line")
+        .retain("line")
+        .coerce("line", int.class)
+        .each(new DateFormatter(new Fields("date"), "yyyy-MM-dd"))
+        .retain("date");
+    Pump right = Pump.prime("right")
+        .each(new RegexSplitter(new Fields("date", "tag"),"\t"), "line");
+
+    Pipe pipe = Pump.hashJoin(left, right, "date")
+        .retain("date", "tag")
+        .toPipe();
+
+    Map<String, Tap> inputTaps = new HashMap<String, Tap>() {{
+      put("left", Tests.getInTap());
+      put("right", Tests.getTap(INPUT2_PATH));
+    }};
+
+    CascadingHelper.get().getFlowConnector().connect(inputTaps, Tests.getOutTap(), pipe).complete();
+
+    // a hash join streams the left side, so its order is preserved
+    assertEquals(Arrays.asList("1970-01-02\tsecond", "1970-01-01\tfirst", "1970-01-02\tsecond"),
+        getOutputStrings());
+  }
+
+  @Test
+  public void testBloomFilteredCoGroup() throws Exception {
+    Pump left = Pump.prime("left")
+        .each(new RegexFilter("^[0-9]+$", false), "line")
+        .retain("line")
+        .coerce("line", int.class)
+        .each(new DateFormatter(new Fields("date"), "yyyy-MM-dd"))
+        .retain("date");
+    Pump right = Pump.prime("right")
+        .each(new RegexSplitter(new Fields("date", "tag"),"\t"), "line")
+        .each(new RegexFilter("first", false), "tag");
+
+    Pipe pipe = Pump.cogroup(left, right, "date")
+        .bloomFiltered(10, 0.01)
+        .retain("date", "tag")
+        .toPipe();
+
+    Map<String, Tap> inputTaps = new HashMap<String, Tap>() {{
+      put("left", Tests.getInTap());
+      put("right", Tests.getTap(INPUT2_PATH));
+    }};
+
+    CascadingHelper.get().getFlowConnector().connect(inputTaps, Tests.getOutTap(), pipe).complete();
+
+    assertEquals(Arrays.asList("1970-01-01\tfirst"), getOutputStrings());
+  }
+
+  @Test
+  public void testBloomFilter() throws Exception {
+    Pump keys = Pump.prime("right")
+        .each(new RegexSplitter(new Fields("date", "tag"),"\t"), "line")
+        .each(new RegexFilter("first", false), "tag");
+
+    Pipe pipe = Pump.prime("left")
+        .each(new RegexFilter("^[0-9]+$", false), "line")
+        .retain("line")
+        .coerce("line", int.class)
+        .each(new DateFormatter(new Fields("date"), "yyyy-MM-dd"))
+        .retain("date")
+        .bloomFilter(keys, 10, 0.01, "date")
+        .toPipe();
+
+    Map<String, Tap> inputTaps = new HashMap<String, Tap>() {{
+      put("left", Tests.getInTap());
+      put("right", Tests.getTap(INPUT2_PATH));
+    }};
+
+    CascadingHelper.get().getFlowConnector().connect(inputTaps, Tests.getOutTap(), pipe).complete();
+
+    assertEquals(Arrays.asList("1970-01-01"), getOutputStrings());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBloomFilteredLeftJoin() {
+    Pump.prime("left").cogroup(Pump.prime("right"), new LeftJoin(), "date").bloomFiltered(10, 0.01);
+  }
+
+  @Test
+  public void testSkewedCoGroup() throws Exception {
+    Pump left = Pump.prime("left")
+        .each(new RegexFilter("^[0-9]+$", false), "line")
+        .retain("line")
+        .coerce("line", int.class)
+        .each(new DateFormatter(new Fields("date"), "yyyy-MM-dd"))
+        .retain("date");
+    Pump right = Pump.prime("right")
+        .each(new RegexSplitter(new Fields("date", "tag"),"\t"), "line");
+
+    Pipe pipe = Pump.cogroup(left, right, "date")
+        .skewed(2, new Tuple("1970-01-02"))
+        .retain("date", "tag")
+        .toPipe();
+
+    Map<String, Tap> inputTaps = new HashMap<String, Tap>() {{
+      put("left", Tests.getInTap());
+      put("right", Tests.getTap(INPUT2_PATH));
+    }};
+
+    CascadingHelper.get().getFlowConnector().connect(inputTaps, Tests.getOutTap(), pipe).complete();
+
+    assertEquals(Arrays.asList("1970-01-01\tfirst", "1970-01-02\tsecond", "1970-01-02\tsecond"),
+        getOutputStrings());
+  }
+
+  @Test
+  public void testReplicatedCoGroup() {
+    Pump left = Pump.prime("left");
+    Pump right = Pump.prime("right");
+
+    assertTrue(left.cogroup(right, "date").replicated().toPipe() instanceof HashJoin);
+    assertTrue(left.hashJoin(right, "date").toPipe() instanceof HashJoin);
+    assertTrue(left.cogroup(right, "date").toPipe() instanceof CoGroup);
+  }
+
   @Test
   public void testGroupBySecondarySort() throws IOException {
     String inputPath = "/tmp/TestPump/group_by_sec_sort";
@@ -390,6 +590,25 @@ public class TestPump  {
     assertEquals(Arrays.asList("0", "115200000", "asdf"), getOutputStrings());
   }
 
+  @Test
+  public void testUniqueWithCapacity() throws Exception {
+    CascadingHelper.get().getFlowConnector().connect(Tests.getInTap(), Tests.getOutTap(), Pump.prime().retain("line").unique(1, "line").toPipe()).complete();
+    assertEquals(Arrays.asList("0", "115200000", "asdf"), getOutputStrings());
+  }
+
+  @Test
+  public void testEachBatch() throws Exception {
+    Pipe p = Pump.prime()
+        .retain("line")
+        .eachBatch(new BatchFilterEquals("115200000"), 3, "line")
+        .eachBatch(new BatchGetOrElse("unused"), "line")
+        .toPipe();
+
+    CascadingHelper.get().getFlowConnector().connect(Tests.getInTap(), Tests.getOutTap(), p).complete();
+
+    assertEquals(Arrays.asList("0", "asdf"), getOutputStrings());
+  }
+
   // note(duxbury): this doesn't verify anything. it's meant to be used for manually observing the results of the stack trace goodness.
   @Test
   public void testFunctionStackTraces() {
@@ -461,6 +680,85 @@ public class TestPump  {
     assertEquals(Arrays.asList("0\t1\t10", "115200000\t2\t12", "asdf\t1\t22"), getOutputStrings());
   }
 
+  @Test
+  public void testApproxAggregateBy() throws Exception {
+    Pump pump = Pump.prime()
+        .groupby("line")
+        .approxDistinct("offset", "distinct")
+        .approxQuantile("offset", 0.5, "median")
+        .retain("line", "distinct", "median")
+        .coerce("median", int.class);
+    assertEquals(new HashSet<Class>(Arrays.<Class>asList(HyperLogLog.class, QuantileSketch.class)),
+        pump.getEmittedClasses());
+    Pipe p = pump.toPipe();
+
+    CascadingHelper.get().getFlowConnector().connect(Tests.getInTap(), Tests.getOutTap(), p).complete();
+
+    assertEquals(Arrays.asList("0\t1\t10", "115200000\t2\t0", "asdf\t1\t22"), getOutputStrings());
+  }
+
+  @Test
+  public void testPrimitiveAggregateBy() throws Exception {
+    Pipe p = Pump.prime()
+        .each(new Insert(new Fields("one"), 1))
+        .groupby("line")
+        .sum(new String[] {"offset", "one"}, new String[] {"sum", "count"}, long.class)
+        .average(new String[] {"offset"}, new String[] {"average"})
+        .retain("line", "sum", "count", "average")
+        .toPipe();
+
+    CascadingHelper.get().getFlowConnector().connect(Tests.getInTap(), Tests.getOutTap(), p).complete();
+
+    assertEquals(Arrays.asList("0\t10\t1\t10.0", "115200000\t12\t2\t6.0", "asdf\t22\t1\t22.0"),
+        getOutputStrings());
+  }
+
+  @Test
+  public void testAggregateByThreshold() throws Exception {
+    Pipe p = Pump.prime()
+        .groupby("line")
+        .count("count").threshold(1)
+        .sum("offset", "sum")
+        .retain("line", "count", "sum")
+        .coerce("sum", int.class)
+        .toPipe();
+
+    CascadingHelper.get().getFlowConnector().connect(Tests.getInTap(), Tests.getOutTap(), p).complete();
+
+    assertEquals(Arrays.asList("0\t1\t10", "115200000\t2\t12", "asdf\t1\t22"), getOutputStrings());
+  }
+
+  @Test
+  public void testAdaptiveAggregateBy() throws Exception {
+    Pipe p = Pump.prime()
+        .groupby("line")
+        .count("count").threshold(1).adaptive(2)
+        .sum("offset", "sum")
+        .retain("line", "count", "sum")
+        .coerce("sum", int.class)
+        .toPipe();
+
+    CascadingHelper.get().getFlowConnector().connect(Tests.getInTap(), Tests.getOutTap(), p).complete();
+
+    assertEquals(Arrays.asList("0\t1\t10", "115200000\t2\t12", "asdf\t1\t22"), getOutputStrings());
+  }
+
+  @Test
+  public void testAdaptiveAggregateByConfiguredThreshold() throws Exception {
+    Pipe p = Pump.prime()
+        .groupby("line")
+        .count("count").adaptive(2)
+        .retain("line", "count")
+        .toPipe();
+
+    Map<Object, Object> properties = new HashMap<Object, Object>();
+    properties.put(AggregateBy.AGGREGATE_BY_THRESHOLD, "1");
+    CascadingHelper.get().getFlowConnector(properties)
+        .connect(Tests.getInTap(), Tests.getOutTap(), p).complete();
+
+    assertEquals(Arrays.asList("0\t1", "115200000\t2", "asdf\t1"), getOutputStrings());
+  }
+
   @Test
   public void testMixAggregateBy() throws Exception {
     try {
@@ -0,0 +1,54 @@
+package com.squareup.cascading_helpers.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+public class BloomFilterTest {
+  @Test
+  public void testNoFalseNegatives() {
+    BloomFilter filter = new BloomFilter(1000, 0.01);
+    for (long i = 0; i < 1000; i++) {
+      filter.add(Hashing.mix(i));
+    }
+    for (long i = 0; i < 1000; i++) {
+      assertTrue(filter.mightContain(Hashing.mix(i)));
+    }
+  }
+
+  @Test
+  public void testFalsePositiveRate() {
+    BloomFilter filter = new BloomFilter(10000, 0.01);
+    for (long i = 0; i < 10000; i++) {
+      filter.add(Hashing.mix(i));
+    }
+    int falsePositives = 0;
+    for (long i = 10000; i < 110000; i++) {
+      if (filter.mightContain(Hashing.mix(i))) {
+        falsePositives++;
+      }
+    }
+    assertTrue("false positives: " + falsePositives, falsePositives < 2000);
+  }
+
+  @Test
+  public void testMergeAndSerialize() throws Exception {
+    BloomFilter first = new BloomFilter(100, 0.01);
+    BloomFilter second = new BloomFilter(100, 0.01);
+    first.add(1);
+    second.add(2);
+    first.merge(second);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    first.write(new DataOutputStream(bytes));
+    BloomFilter copy = new BloomFilter();
+    copy.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+    assertTrue(copy.mightContain(1));
+    assertTrue(copy.mightContain(2));
+  }
+}
@@ -0,0 +1,104 @@
+package com.squareup.cascading_helpers.util;
+
+import cascading.tuple.Tuple;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import org.apache.hadoop.io.Text;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ExternalSorterTest {
+  private static final Comparator<Tuple> BY_KEY = new Comparator<Tuple>() {
+    @Override public int compare(Tuple a, Tuple b) {
+      return a.getString(0).compareTo(b.getString(0));
+    }
+  };
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testSortsInMemory() throws Exception {
+    ExternalSorter sorter = new ExternalSorter(BY_KEY, 1 << 20, folder.getRoot());
+    sorter.add(new Tuple("b", 1));
+    sorter.add(new Tuple("a", 2));
+    sorter.add(new Tuple("b", 3));
+
+    assertEquals(0, sorter.getRunCount());
+    assertEquals(list(new Tuple("a", 2), new Tuple("b", 1), new Tuple("b", 3)),
+        list(sorter.sorted()));
+    sorter.close();
+  }
+
+  @Test
+  public void testSpillsAndMergesStably() throws Exception {
+    ExternalSorter sorter = new ExternalSorter(BY_KEY, 1000, folder.getRoot());
+    List<Tuple> expected = new ArrayList<Tuple>();
+    Random random = new Random(42);
+    for (int i = 0; i < 20000; i++) {
+      Tuple tuple = new Tuple("key" + random.nextInt(500), i);
+      expected.add(tuple);
+      sorter.add(tuple);
+    }
+    Collections.sort(expected, BY_KEY);
+
+    assertTrue(sorter.getRunCount() > ExternalSorter.MERGE_WIDTH);
+    assertEquals(expected, list(sorter.sorted()));
+    sorter.close();
+    assertEquals(0, folder.getRoot().listFiles().length);
+  }
+
+  @Test
+  public void testSpillsWritables() throws Exception {
+    ExternalSorter sorter = new ExternalSorter(BY_KEY, 100, folder.getRoot());
+    List<Tuple> expected = new ArrayList<Tuple>();
+    for (int i = 0; i < 10; i++) {
+      // Text isn't java.io.Serializable, so only Hadoop's serializations can write it
+      Tuple tuple = new Tuple("key" + i, new Text("value" + i));
+      expected.add(tuple);
+      sorter.add(tuple);
+    }
+
+    assertTrue(sorter.getRunCount() > 0);
+    assertEquals(expected, list(sorter.sorted()));
+    sorter.close();
+  }
+
+  @Test
+  public void testCloseWhileReading() throws Exception {
+    ExternalSorter sorter = new ExternalSorter(BY_KEY, 100, folder.getRoot());
+    for (int i = 0; i < 100; i++) {
+      sorter.add(new Tuple("key" + i, i));
+    }
+    Iterator<Tuple> sorted = sorter.sorted();
+    sorted.next();
+    sorter.close();
+
+    for (File file : folder.getRoot().listFiles()) {
+      assertFalse(file.getName(), file.getName().endsWith(".run"));
+    }
+  }
+
+  private static List<Tuple> list(Tuple... tuples) {
+    List<Tuple> list = new ArrayList<Tuple>();
+    Collections.addAll(list, tuples);
+    return list;
+  }
+
+  private static List<Tuple> list(Iterator<Tuple> tuples) {
+    List<Tuple> list = new ArrayList<Tuple>();
+    while (tuples.hasNext()) {
+      list.add(tuples.next());
+    }
+    return list;
+  }
+}
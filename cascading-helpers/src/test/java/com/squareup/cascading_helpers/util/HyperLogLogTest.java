@@ -0,0 +1,40 @@
+package com.squareup.cascading_helpers.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HyperLogLogTest {
+  @Test
+  public void testSmallCountsAreExact() {
+    HyperLogLog sketch = new HyperLogLog(12);
+    for (long i = 0; i < 10; i++) {
+      sketch.add(Hashing.mix(i));
+      sketch.add(Hashing.mix(i));
+    }
+    assertEquals(10, sketch.estimate());
+  }
+
+  @Test
+  public void testMergedEstimate() throws Exception {
+    HyperLogLog first = new HyperLogLog(12);
+    HyperLogLog second = new HyperLogLog(12);
+    for (long i = 0; i < 100000; i++) {
+      (i % 2 == 0 ? first : second).add(Hashing.mix(i));
+    }
+    first.merge(second);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    first.write(new DataOutputStream(bytes));
+    HyperLogLog copy = new HyperLogLog();
+    copy.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+    long estimate = copy.estimate();
+    assertTrue("estimate: " + estimate, Math.abs(estimate - 100000) < 5000);
+  }
+}
@@ -0,0 +1,47 @@
+package com.squareup.cascading_helpers.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class QuantileSketchTest {
+  @Test
+  public void testSmallStreamsAreExact() {
+    QuantileSketch sketch = new QuantileSketch(200);
+    for (int i = 1; i <= 99; i++) {
+      sketch.add(i);
+    }
+    assertEquals(1.0, sketch.quantile(0), 0);
+    assertEquals(50.0, sketch.quantile(0.5), 0);
+    assertEquals(99.0, sketch.quantile(1), 0);
+  }
+
+  @Test
+  public void testMergedQuantiles() throws Exception {
+    QuantileSketch first = new QuantileSketch(200);
+    QuantileSketch second = new QuantileSketch(200);
+    for (int i = 0; i < 1000000; i++) {
+      (i % 2 == 0 ? first : second).add(i);
+    }
+    first.merge(second);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    first.write(new DataOutputStream(bytes));
+    QuantileSketch copy = new QuantileSketch();
+    copy.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+    assertEquals(1000000, copy.getCount());
+    assertEquals(500000, copy.quantile(0.5), 20000);
+    assertEquals(900000, copy.quantile(0.9), 20000);
+  }
+
+  @Test
+  public void testEmpty() {
+    assertTrue(Double.isNaN(new QuantileSketch(200).quantile(0.5)));
+  }
+}
@@ -0,0 +1,52 @@
+package com.squareup.cascading_helpers.util;
+
+import cascading.tuple.Tuple;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SpillableTupleListTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testKeepsOrderInMemory() throws Exception {
+    SpillableTupleList list = new SpillableTupleList(1 << 20, folder.getRoot(), null);
+    list.add(new Tuple("b", 1));
+    list.add(new Tuple("a", 2));
+
+    assertEquals(0, list.getRunCount());
+    assertEquals(2, list.size());
+    assertEquals(new Tuple("b", 1), list.iterator().next());
+    list.close();
+  }
+
+  @Test
+  public void testSpillsInOrderAndRereads() throws Exception {
+    SpillableTupleList list = new SpillableTupleList(1000, folder.getRoot(), null);
+    List<Tuple> expected = new ArrayList<Tuple>();
+    for (int i = 0; i < 10000; i++) {
+      Tuple tuple = new Tuple("key" + (i % 7), i);
+      expected.add(tuple);
+      list.add(tuple);
+    }
+
+    assertTrue(list.getRunCount() > ExternalSorter.MERGE_WIDTH);
+    assertEquals(expected, read(list));
+    assertEquals(expected, read(list));
+    list.close();
+    assertEquals(0, folder.getRoot().listFiles().length);
+  }
+
+  private static List<Tuple> read(SpillableTupleList tuples) {
+    List<Tuple> list = new ArrayList<Tuple>();
+    for (Tuple tuple : tuples) {
+      list.add(tuple);
+    }
+    return list;
+  }
+}